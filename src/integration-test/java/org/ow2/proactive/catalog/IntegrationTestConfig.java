@@ -28,6 +28,8 @@ package org.ow2.proactive.catalog;
 import static org.mockito.Mockito.spy;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 
 import javax.sql.DataSource;
@@ -42,15 +44,26 @@ import org.ow2.proactive.catalog.graphql.handler.catalogobject.CatalogObjectMeta
 import org.ow2.proactive.catalog.graphql.handler.catalogobject.CatalogObjectNameFilterHandler;
 import org.ow2.proactive.catalog.mocks.RestApiAccessServiceMock;
 import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.ow2.proactive.catalog.repository.storage.LocalFileSystemRawObjectStore;
+import org.ow2.proactive.catalog.repository.storage.RawObjectStore;
+import org.ow2.proactive.catalog.service.BucketArchiveCache;
+import org.ow2.proactive.catalog.service.BucketCache;
+import org.ow2.proactive.catalog.service.BucketChangeCounter;
 import org.ow2.proactive.catalog.service.BucketService;
+import org.ow2.proactive.catalog.service.CatalogObjectParsingExecutor;
 import org.ow2.proactive.catalog.service.CatalogObjectService;
 import org.ow2.proactive.catalog.service.GenericInformationAdder;
 import org.ow2.proactive.catalog.service.GraphqlService;
 import org.ow2.proactive.catalog.service.KeyValueLabelMetadataHelper;
+import org.ow2.proactive.catalog.service.PreparedRawObjectCache;
+import org.ow2.proactive.catalog.service.RawObjectCache;
 import org.ow2.proactive.catalog.service.OwnerGroupStringHelper;
+import org.ow2.proactive.catalog.service.RawObjectStorageService;
+import org.ow2.proactive.catalog.service.RequestAccessContext;
 import org.ow2.proactive.catalog.service.RestApiAccessService;
 import org.ow2.proactive.catalog.service.WorkflowXmlManipulator;
 import org.ow2.proactive.catalog.util.ArchiveManagerHelper;
+import org.ow2.proactive.catalog.util.JsonArrayStreamWriter;
 import org.ow2.proactive.catalog.util.RawObjectResponseCreator;
 import org.ow2.proactive.catalog.util.RevisionCommitMessageBuilder;
 import org.ow2.proactive.catalog.util.SeparatorUtility;
@@ -137,16 +150,61 @@ public class IntegrationTestConfig {
         return new OwnerGroupStringHelper();
     }
 
+    @Bean
+    public RequestAccessContext requestAccessContext() {
+        return new RequestAccessContext();
+    }
+
+    @Bean
+    public BucketCache bucketCache() {
+        return new BucketCache(100, 60);
+    }
+
     @Bean
     public BucketService bucketService() {
         return new BucketService();
     }
 
+    @Bean
+    public RawObjectStore rawObjectStore() throws IOException {
+        return new LocalFileSystemRawObjectStore(Files.createTempDirectory("catalog-raw-objects"));
+    }
+
+    @Bean
+    public RawObjectStorageService rawObjectStorageService() {
+        return new RawObjectStorageService();
+    }
+
     @Bean
     public CatalogObjectService catalogObjectService() {
         return new CatalogObjectService();
     }
 
+    @Bean
+    public CatalogObjectParsingExecutor catalogObjectParsingExecutor() {
+        return new CatalogObjectParsingExecutor();
+    }
+
+    @Bean
+    public PreparedRawObjectCache preparedRawObjectCache() {
+        return new PreparedRawObjectCache(1024 * 1024);
+    }
+
+    @Bean
+    public RawObjectCache rawObjectCache() {
+        return new RawObjectCache(1024 * 1024, 1024 * 1024, 60);
+    }
+
+    @Bean
+    public BucketChangeCounter bucketChangeCounter() {
+        return new BucketChangeCounter();
+    }
+
+    @Bean
+    public BucketArchiveCache bucketArchiveCache() throws IOException {
+        return new BucketArchiveCache(true, Files.createTempDirectory("catalog-bucket-archives"));
+    }
+
     @Bean
     public GraphqlService graphqlService() {
         return new GraphqlService();
@@ -259,6 +317,11 @@ public class IntegrationTestConfig {
         return new RawObjectResponseCreator();
     }
 
+    @Bean
+    public JsonArrayStreamWriter jsonArrayStreamWriter() {
+        return new JsonArrayStreamWriter();
+    }
+
     @Bean
     public BucketNameValidator bucketNameValidator() {
         return new BucketNameValidator();
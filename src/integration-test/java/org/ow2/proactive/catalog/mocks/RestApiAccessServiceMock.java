@@ -37,7 +37,7 @@ import com.google.common.collect.Lists;
 public class RestApiAccessServiceMock extends RestApiAccessService {
 
     public RestApiAccessServiceMock() {
-        super(null, null, null);
+        super(null, null, null, null);
     }
 
     public RestApiAccessResponse getUserDataFromSessionidAndCheckAccess(String sessionId, String bucketName)
@@ -31,6 +31,8 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.equalToIgnoringWhiteSpace;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.ow2.proactive.catalog.util.LinkUtil.SPACE_ENCODED_AS_PERCENT_20;
 import static org.ow2.proactive.catalog.util.LinkUtil.SPACE_ENCODED_AS_PLUS;
 import static org.ow2.proactive.catalog.util.RawObjectResponseCreator.WORKFLOW_EXTENSION;
@@ -579,6 +581,38 @@ public class CatalogObjectControllerIntegrationTest extends AbstractRestAssuredT
         response.then().assertThat().statusCode(HttpStatus.SC_OK).contentType(MediaType.APPLICATION_XML.toString());
     }
 
+    @Test
+    public void testGetRawWithMatchingETagShouldReturnNotModified() {
+        Response response = given().pathParam("bucketName", bucket.getName())
+                                   .pathParam("name", "workflowname")
+                                   .when()
+                                   .get(CATALOG_OBJECT_RESOURCE + "/raw");
+        response.then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .header("ETag", notNullValue())
+                .header("Last-Modified", notNullValue());
+        String eTag = response.getHeader("ETag");
+
+        given().pathParam("bucketName", bucket.getName())
+               .pathParam("name", "workflowname")
+               .header("If-None-Match", eTag)
+               .when()
+               .get(CATALOG_OBJECT_RESOURCE + "/raw")
+               .then()
+               .assertThat()
+               .statusCode(HttpStatus.SC_NOT_MODIFIED);
+
+        given().pathParam("bucketName", bucket.getName())
+               .pathParam("name", "workflowname")
+               .header("If-None-Match", eTag)
+               .when()
+               .get(CATALOG_OBJECT_RESOURCE)
+               .then()
+               .assertThat()
+               .statusCode(HttpStatus.SC_OK);
+    }
+
     @Test
     public void testGetCatalogObjectsByObjectKindAndContentTypeAndName() {
         String pcaKind = "pca";
@@ -1012,6 +1046,49 @@ public class CatalogObjectControllerIntegrationTest extends AbstractRestAssuredT
                .contentType(ZIP_CONTENT_TYPE);
     }
 
+    @Test
+    public void testGetWholeBucketAsArchiveWithMatchingETagShouldReturnNotModified() {
+        Response response = given().pathParam("bucketName", bucket.getName())
+                                   .when()
+                                   .get(CATALOG_OBJECTS_RESOURCE + "?listObjectNamesForArchive=workflowname");
+        response.then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .contentType(ZIP_CONTENT_TYPE)
+                .header("ETag", notNullValue());
+        String eTag = response.getHeader("ETag");
+
+        given().pathParam("bucketName", bucket.getName())
+               .header("If-None-Match", eTag)
+               .when()
+               .get(CATALOG_OBJECTS_RESOURCE + "?listObjectNamesForArchive=workflowname")
+               .then()
+               .assertThat()
+               .statusCode(HttpStatus.SC_NOT_MODIFIED);
+
+        // Add an second object, which changes the bucket
+        given().header("sessionID", "12345")
+               .pathParam("bucketName", bucket.getName())
+               .queryParam("kind", "workflow")
+               .queryParam("name", "workflowname2")
+               .queryParam("commitMessage", "commit message")
+               .queryParam("objectContentType", MediaType.APPLICATION_XML.toString())
+               .multiPart(IntegrationTestUtil.getWorkflowFile("workflow.xml"))
+               .when()
+               .post(CATALOG_OBJECTS_RESOURCE)
+               .then()
+               .statusCode(HttpStatus.SC_CREATED);
+
+        given().pathParam("bucketName", bucket.getName())
+               .header("If-None-Match", eTag)
+               .when()
+               .get(CATALOG_OBJECTS_RESOURCE + "?listObjectNamesForArchive=workflowname,workflowname2")
+               .then()
+               .assertThat()
+               .statusCode(HttpStatus.SC_OK)
+               .header("ETag", not(equalTo(eTag)));
+    }
+
     @Test
     public void testGetCatalogObjectWithSpecialSymbolsNamesAsArchive() {
         String nameWithSpecialSymbols = "wf n:$ %ae.myextension";
@@ -28,6 +28,7 @@ package org.ow2.proactive.catalog;
 import static springfox.documentation.schema.AlternateTypeRules.newRule;
 
 import java.io.File;
+import java.io.IOException;
 
 import javax.sql.DataSource;
 
@@ -42,6 +43,7 @@ import org.springframework.boot.orm.jpa.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PagedResourcesAssembler;
@@ -49,7 +51,9 @@ import org.springframework.http.MediaType;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.multipart.commons.CommonsMultipartResolver;
@@ -75,6 +79,7 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 @EnableAutoConfiguration(exclude = { MultipartAutoConfiguration.class })
 @EnableSwagger2
 @EnableTransactionManagement
+@EnableScheduling
 @EnableEncryptableProperties
 @EntityScan(basePackages = "org.ow2.proactive.catalog.repository.entity")
 @PropertySource("classpath:application.properties")
@@ -92,6 +97,15 @@ public class Application extends WebMvcConfigurerAdapter {
     @Value("${spring.datasource.password:}")
     private String dataSourcePassword;
 
+    @Value("${pa.catalog.upload.spool.threshold.bytes:10240}")
+    private int uploadSpoolThreshold;
+
+    @Value("${pa.catalog.upload.spool.directory:}")
+    private String uploadSpoolDirectory;
+
+    @Value("${pa.catalog.upload.max.request.size.bytes:1073741824}")
+    private long uploadMaxRequestSize;
+
     public static void main(String[] args) {
         //Important notice when using PDFBox with Java 8  :  https://pdfbox.apache.org/2.0/getting-started.html
         System.setProperty("sun.java2d.cmm", "sun.java2d.cmm.kcms.KcmsServiceProvider");
@@ -155,8 +169,15 @@ public class Application extends WebMvcConfigurerAdapter {
     }
 
     @Bean
-    public MultipartResolver multipartResolver() {
-        return new CommonsMultipartResolver();
+    public MultipartResolver multipartResolver() throws IOException {
+        CommonsMultipartResolver multipartResolver = new CommonsMultipartResolver();
+        // parts above the threshold are written to disk while being received instead of being buffered in memory
+        multipartResolver.setMaxInMemorySize(uploadSpoolThreshold);
+        multipartResolver.setMaxUploadSize(uploadMaxRequestSize);
+        if (!uploadSpoolDirectory.isEmpty()) {
+            multipartResolver.setUploadTempDir(new FileSystemResource(uploadSpoolDirectory));
+        }
+        return multipartResolver;
     }
 
     @Autowired
@@ -167,7 +188,8 @@ public class Application extends WebMvcConfigurerAdapter {
         return new Docket(DocumentationType.SWAGGER_2).apiInfo(apiInfo())
                                                       .groupName("CatalogObjectEntity Catalog")
                                                       .ignoredParameterTypes(Pageable.class,
-                                                                             PagedResourcesAssembler.class)
+                                                                             PagedResourcesAssembler.class,
+                                                                             WebRequest.class)
                                                       .alternateTypeRules(newRule(typeResolver.resolve(InputStreamResource.class),
                                                                                   typeResolver.resolve(MultipartFile.class)))
                                                       .select()
@@ -0,0 +1,69 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+
+/**
+ * Outcome of the import of one entry of an archive, or of the upload of a new revision.
+ *
+ * @author ActiveEon Team
+ */
+@Data
+public class CatalogObjectImportResult {
+
+    public enum Status {
+        CREATED,
+        REVISED,
+        /**
+         * The content is the same as the one of the last revision, which was kept as is.
+         */
+        UNCHANGED
+    }
+
+    @JsonProperty("file_name")
+    private final String fileName;
+
+    @JsonProperty("name")
+    private final String name;
+
+    @JsonProperty("status")
+    private final Status status;
+
+    @JsonIgnore
+    private final CatalogObjectMetadata metadata;
+
+    public CatalogObjectImportResult(String fileName, Status status, CatalogObjectMetadata metadata) {
+        this.fileName = fileName;
+        this.name = metadata.getName();
+        this.status = status;
+        this.metadata = metadata;
+    }
+}
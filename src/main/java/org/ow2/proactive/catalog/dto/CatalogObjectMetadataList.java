@@ -27,7 +27,9 @@ package org.ow2.proactive.catalog.dto;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.Data;
@@ -42,12 +44,33 @@ public class CatalogObjectMetadataList {
     @JsonProperty("object")
     private final List<CatalogObjectMetadata> objectMetadataList;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty("imported")
+    private final List<CatalogObjectImportResult> importResults;
+
     public CatalogObjectMetadataList(List<CatalogObjectMetadata> objectMetadataList) {
         this.objectMetadataList = objectMetadataList;
+        this.importResults = null;
     }
 
     public CatalogObjectMetadataList(CatalogObjectMetadata objectMetadata) {
-        this.objectMetadataList = Collections.singletonList(objectMetadata);
+        this(Collections.singletonList(objectMetadata));
+    }
+
+    /**
+     * Lists the objects of an imported archive, with the outcome of the import of each entry.
+     */
+    public static CatalogObjectMetadataList ofImportResults(List<CatalogObjectImportResult> importResults) {
+        return new CatalogObjectMetadataList(importResults.stream()
+                                                          .map(CatalogObjectImportResult::getMetadata)
+                                                          .collect(Collectors.toList()),
+                                             importResults);
+    }
+
+    private CatalogObjectMetadataList(List<CatalogObjectMetadata> objectMetadataList,
+            List<CatalogObjectImportResult> importResults) {
+        this.objectMetadataList = objectMetadataList;
+        this.importResults = importResults;
     }
 
 }
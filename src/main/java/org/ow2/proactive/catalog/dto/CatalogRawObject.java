@@ -25,11 +25,14 @@
  */
 package org.ow2.proactive.catalog.dto;
 
+import java.nio.file.Path;
 import java.util.List;
 
 import org.ow2.proactive.catalog.repository.entity.CatalogObjectEntity;
 import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.EqualsAndHashCode;
 
 
@@ -42,23 +45,70 @@ public class CatalogRawObject extends CatalogObjectMetadata {
 
     private final byte[] rawObject;
 
+    /**
+     * File holding the content when it is served from the raw object store without being read in memory, in which
+     * case {@link #rawObject} is null.
+     */
+    private final Path rawObjectFile;
+
+    private final long contentLength;
+
     public CatalogRawObject(CatalogObjectEntity catalogObject) {
-        super(catalogObject);
-        this.rawObject = catalogObject.getRevisions().first().getRawObject();
+        this(catalogObject.getRevisions().first(), catalogObject.getRevisions().first().getRawObject());
     }
 
     public CatalogRawObject(CatalogObjectRevisionEntity catalogObject) {
+        this(catalogObject, catalogObject.getRawObject());
+    }
+
+    public CatalogRawObject(CatalogObjectRevisionEntity catalogObject, byte[] rawObject) {
+        super(catalogObject);
+        this.rawObject = rawObject;
+        this.rawObjectFile = null;
+        this.contentLength = rawObject == null ? 0 : rawObject.length;
+    }
+
+    public CatalogRawObject(CatalogObjectRevisionEntity catalogObject, Path rawObjectFile) {
         super(catalogObject);
-        this.rawObject = catalogObject.getRawObject();
+        this.rawObject = null;
+        this.rawObjectFile = rawObjectFile;
+        this.contentLength = catalogObject.getContentSize();
     }
 
     public CatalogRawObject(String bucketName, String name, String kind, String contentType, long createdAt,
             String commitMessage, String username, List<Metadata> metadataList, byte[] rawObject, String extension) {
         super(bucketName, name, kind, contentType, createdAt, commitMessage, username, metadataList, extension);
         this.rawObject = rawObject;
+        this.rawObjectFile = null;
+        this.contentLength = rawObject == null ? 0 : rawObject.length;
+    }
+
+    public CatalogRawObject(CatalogRawObject rawObject) {
+        super(rawObject.getBucketName(),
+              rawObject.getName(),
+              rawObject.getKind(),
+              rawObject.getContentType(),
+              Long.parseLong(rawObject.getCommitTimeRaw()),
+              rawObject.getCommitMessage(),
+              rawObject.getUsername(),
+              rawObject.getMetadataList(),
+              rawObject.getExtension());
+        this.rawObject = rawObject.rawObject;
+        this.rawObjectFile = rawObject.rawObjectFile;
+        this.contentLength = rawObject.contentLength;
     }
 
     public byte[] getRawObject() {
         return rawObject;
     }
+
+    @JsonIgnore
+    public Path getRawObjectFile() {
+        return rawObjectFile;
+    }
+
+    @JsonIgnore
+    public long getContentLength() {
+        return contentLength;
+    }
 }
@@ -26,18 +26,22 @@
 package org.ow2.proactive.catalog.repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.persistence.LockModeType;
 import javax.persistence.QueryHint;
 
 import org.ow2.proactive.catalog.repository.entity.BucketEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QueryDslPredicateExecutor;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 
 /**
@@ -52,6 +56,9 @@ public interface BucketRepository extends JpaRepository<BucketEntity, Long>, Jpa
 
     List<BucketEntity> findByOwnerIn(List<String> owners);
 
+    @Query(value = "SELECT bk.bucketName, bk.owner FROM BucketEntity bk ORDER BY bk.id")
+    List<Object[]> findAllBucketNamesAndOwners();
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @QueryHints({ @QueryHint(name = "javax.persistence.lock.timeout", value = "5000") })
     @Query(value = "SELECT bk FROM BucketEntity bk WHERE SIZE(bk.catalogObjects) = 0")
@@ -62,6 +69,14 @@ public interface BucketRepository extends JpaRepository<BucketEntity, Long>, Jpa
     @Query(value = "SELECT bk FROM BucketEntity bk WHERE bk.bucketName = ?1")
     BucketEntity findBucketForUpdate(String bucketName);
 
+    @Query(value = "SELECT bk.changeCount FROM BucketEntity bk WHERE bk.id = ?1")
+    Long findChangeCount(Long bucketId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE BucketEntity bk SET bk.changeCount = COALESCE(bk.changeCount, 0) + 1 WHERE bk.id = ?1")
+    int incrementChangeCount(Long bucketId);
+
     @Query(value = "SELECT DISTINCT bk, COUNT(cos.id.name) as objectCount FROM BucketEntity bk LEFT JOIN bk.catalogObjects cos" +
                    " WHERE lower(cos.kind) LIKE lower(concat(?1, '%')) AND lower(cos.contentType) LIKE lower(concat(?2, '%'))" +
                    " AND lower(cos.id.name) LIKE lower(concat('%', ?3, '%')) OR bk.catalogObjects IS EMPTY GROUP BY bk")
@@ -74,4 +89,39 @@ public interface BucketRepository extends JpaRepository<BucketEntity, Long>, Jpa
     List<Object[]> findByOwnerIsInContainingKindAndContentTypeAndObjectName(List<String> owners, String kind,
             String contentType, String objectName);
 
+    /**
+     * Bucket names, owners and object counts, ordered by bucket name. Rows are read from a database cursor while the
+     * stream is consumed, which requires a transaction and closing the stream.
+     */
+    @QueryHints({ @QueryHint(name = "org.hibernate.fetchSize", value = "500") })
+    @Query(value = "SELECT bk.bucketName, bk.owner, COUNT(cos.id.name) FROM BucketEntity bk LEFT JOIN bk.catalogObjects cos" +
+                   " GROUP BY bk.bucketName, bk.owner ORDER BY bk.bucketName")
+    Stream<Object[]> streamBucketNamesOwnersAndObjectCounts();
+
+    /**
+     * Same as {@link #streamBucketNamesOwnersAndObjectCounts()}, for the buckets of the given owners.
+     */
+    @QueryHints({ @QueryHint(name = "org.hibernate.fetchSize", value = "500") })
+    @Query(value = "SELECT bk.bucketName, bk.owner, COUNT(cos.id.name) FROM BucketEntity bk LEFT JOIN bk.catalogObjects cos" +
+                   " WHERE bk.owner in ?1 GROUP BY bk.bucketName, bk.owner ORDER BY bk.bucketName")
+    Stream<Object[]> streamBucketNamesOwnersAndObjectCountsByOwnerIn(List<String> owners);
+
+    List<BucketEntity> findByBucketNameGreaterThanOrderByBucketNameAsc(String afterBucketName, Pageable pageable);
+
+    List<BucketEntity> findByOwnerInAndBucketNameGreaterThanOrderByBucketNameAsc(List<String> owners,
+            String afterBucketName, Pageable pageable);
+
+    @Query(value = "SELECT bk, COUNT(cos.id.name) as objectCount FROM BucketEntity bk LEFT JOIN bk.catalogObjects cos" +
+                   " WHERE bk.bucketName > ?4 AND (lower(cos.kind) LIKE lower(concat(?1, '%')) AND lower(cos.contentType) LIKE lower(concat(?2, '%'))" +
+                   " AND lower(cos.id.name) LIKE lower(concat('%', ?3, '%')) OR bk.catalogObjects IS EMPTY) GROUP BY bk ORDER BY bk.bucketName")
+    List<Object[]> findContainingKindAndContentTypeAndObjectNameAfterBucketName(String kind, String contentType,
+            String objectName, String afterBucketName, Pageable pageable);
+
+    @Query(value = "SELECT bk, COUNT(cos.id.name) as objectCount FROM BucketEntity bk LEFT JOIN bk.catalogObjects cos" +
+                   " WHERE bk.owner in ?1 AND bk.bucketName > ?5 AND (lower(cos.kind) LIKE lower(concat(?2, '%'))" +
+                   " AND (lower(cos.contentType) LIKE lower(concat(?3, '%')) AND lower(cos.id.name) LIKE lower(concat('%', ?4, '%')))" +
+                   " OR bk.catalogObjects IS EMPTY) GROUP BY bk ORDER BY bk.bucketName")
+    List<Object[]> findByOwnerIsInContainingKindAndContentTypeAndObjectNameAfterBucketName(List<String> owners,
+            String kind, String contentType, String objectName, String afterBucketName, Pageable pageable);
+
 }
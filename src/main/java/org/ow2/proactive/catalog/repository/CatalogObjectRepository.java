@@ -25,6 +25,7 @@
  */
 package org.ow2.proactive.catalog.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -54,4 +55,13 @@ public interface CatalogObjectRepository
 
     @Query(value = "SELECT cos.bucket.bucketName, cos.id.name FROM CatalogObjectEntity cos WHERE lower(cos.kind) LIKE lower(concat('%', ?1, '%')) AND lower(cos.contentType) LIKE lower(concat('%', ?2, '%'))")
     List<Object[]> findCatalogObjectNameReferenceByKindAndContentType(String kind, String contentType);
+
+    /**
+     * The last revisions are fetched along with the objects, as they are compared with the imported contents.
+     */
+    @Query(value = "SELECT co FROM CatalogObjectEntity co LEFT JOIN FETCH co.lastRevision WHERE co.id.bucketId = ?1 AND co.id.name IN ?2")
+    List<CatalogObjectEntity> findByBucketIdAndNameIn(Long bucketId, Collection<String> names);
+
+    @Query(value = "SELECT co.id.name FROM CatalogObjectEntity co WHERE co.id.bucketId = ?1")
+    Set<String> findNamesByBucketId(Long bucketId);
 }
@@ -25,14 +25,21 @@
  */
 package org.ow2.proactive.catalog.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.ow2.proactive.catalog.service.model.RevisionValidators;
 import org.ow2.proactive.catalog.util.parser.WorkflowParser;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 
@@ -43,18 +50,138 @@ import org.springframework.data.repository.query.Param;
 public interface CatalogObjectRevisionRepository extends JpaRepository<CatalogObjectRevisionEntity, UUID>,
         JpaSpecificationExecutor<CatalogObjectRevisionEntity> {
 
-    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.catalogObject.bucket.bucketName in ?1 AND cor.catalogObject.lastCommitTime = cor.commitTime")
+    /**
+     * Last revisions are found through {@code CatalogObjectEntity.lastRevision}, so that they are joined on their
+     * primary key.
+     */
+    String LAST_REVISIONS = "FROM CatalogObjectEntity co INNER JOIN co.lastRevision cor";
+
+    String REVISION_VALIDATORS = "NEW org.ow2.proactive.catalog.service.model.RevisionValidators(cor.commitTime, cor.contentHash, co.kind, co.contentType, co.extension) ";
+
+    @Query("SELECT cor " + LAST_REVISIONS + " WHERE co.bucket.bucketName in ?1")
     List<CatalogObjectRevisionEntity> findDefaultCatalogObjectsInBucket(List<String> bucketNames);
 
-    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.catalogObject.bucket.bucketName in ?1" +
-           " AND lower(cor.catalogObject.kind) LIKE lower(concat(?2, '%')) AND lower(cor.catalogObject.contentType) LIKE lower(concat(?3, '%'))" +
-           " AND lower(cor.catalogObject.id.name) LIKE lower(concat('%', ?4, '%')) AND cor.catalogObject.lastCommitTime = cor.commitTime")
+    @Query("SELECT cor " + LAST_REVISIONS + " WHERE co.bucket.bucketName in ?1" +
+           " AND lower(co.kind) LIKE lower(concat(?2, '%')) AND lower(co.contentType) LIKE lower(concat(?3, '%'))" +
+           " AND lower(co.id.name) LIKE lower(concat('%', ?4, '%'))")
     List<CatalogObjectRevisionEntity> findDefaultCatalogObjectsOfKindAndContentTypeAndObjectNameInBucket(
             List<String> bucketNames, String kind, String contentType, String objectName);
 
-    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.catalogObject.bucket.bucketName in ?1 AND cor.catalogObject.id.name = ?2 AND cor.catalogObject.lastCommitTime = cor.commitTime")
+    @Query("SELECT cor " + LAST_REVISIONS + " WHERE co.bucket.bucketName in ?1 AND co.id.name = ?2")
     CatalogObjectRevisionEntity findDefaultCatalogObjectByNameInBucket(List<String> bucketNames, String name);
 
+    String METADATA_PROJECTION = "SELECT cor.id, co.bucket.bucketName, co.id.name, co.kind, co.contentType, co.extension," +
+                                 " cor.commitTime, cor.commitMessage, cor.username " + LAST_REVISIONS;
+
+    /**
+     * Same as {@link #findDefaultCatalogObjectsInBucket(List)}, selecting only the columns of the object metadata:
+     * revision id, bucket name, object name, kind, Content-Type, extension, commit time, commit message and username.
+     * Neither the content nor the key/value metadata of the revisions are loaded.
+     */
+    @Query(METADATA_PROJECTION + " WHERE co.bucket.bucketName in ?1")
+    List<Object[]> findDefaultCatalogObjectsMetadataInBucket(List<String> bucketNames);
+
+    /**
+     * Same as {@link #findDefaultCatalogObjectsOfKindAndContentTypeAndObjectNameInBucket(List, String, String, String)},
+     * with the columns of {@link #findDefaultCatalogObjectsMetadataInBucket(List)}.
+     */
+    @Query(METADATA_PROJECTION + " WHERE co.bucket.bucketName in ?1" +
+           " AND lower(co.kind) LIKE lower(concat(?2, '%')) AND lower(co.contentType) LIKE lower(concat(?3, '%'))" +
+           " AND lower(co.id.name) LIKE lower(concat('%', ?4, '%'))")
+    List<Object[]> findDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucket(List<String> bucketNames,
+            String kind, String contentType, String objectName);
+
+    /**
+     * Last revisions of the given objects of a bucket, with the columns of
+     * {@link #findDefaultCatalogObjectsMetadataInBucket(List)}.
+     */
+    @Query(METADATA_PROJECTION + " WHERE co.bucket.bucketName = ?1 AND co.id.name in ?2")
+    List<Object[]> findDefaultCatalogObjectsMetadataByNamesInBucket(String bucketName, Collection<String> names);
+
+    /**
+     * Page of the last revisions of a bucket, ordered by object name from the given one excluded, so that it is read
+     * from the primary key index of the objects. Columns are those of {@link #findDefaultCatalogObjectsMetadataInBucket(List)}.
+     */
+    @Query(METADATA_PROJECTION + " WHERE co.id.bucketId = ?1 AND co.id.name > ?2 ORDER BY co.id.name")
+    List<Object[]> findDefaultCatalogObjectsMetadataInBucketAfterName(Long bucketId, String afterName,
+            Pageable pageable);
+
+    /**
+     * Same as {@link #findDefaultCatalogObjectsMetadataInBucketAfterName(Long, String, Pageable)}, filtered as
+     * {@link #findDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucket(List, String, String, String)}.
+     */
+    @Query(METADATA_PROJECTION + " WHERE co.id.bucketId = ?1 AND co.id.name > ?5" +
+           " AND lower(co.kind) LIKE lower(concat(?2, '%')) AND lower(co.contentType) LIKE lower(concat(?3, '%'))" +
+           " AND lower(co.id.name) LIKE lower(concat('%', ?4, '%')) ORDER BY co.id.name")
+    List<Object[]> findDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucketAfterName(Long bucketId,
+            String kind, String contentType, String objectName, String afterName, Pageable pageable);
+
+    /**
+     * Last revisions of a bucket ordered by object name, with the columns of
+     * {@link #findDefaultCatalogObjectsMetadataInBucket(List)}. Rows are read from a database cursor while the
+     * stream is consumed, which requires a transaction and closing the stream.
+     */
+    @QueryHints({ @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+                  @QueryHint(name = "org.hibernate.readOnly", value = "true") })
+    @Query(METADATA_PROJECTION + " WHERE co.id.bucketId = ?1 ORDER BY co.id.name")
+    Stream<Object[]> streamDefaultCatalogObjectsMetadataInBucket(Long bucketId);
+
+    /**
+     * Same as {@link #streamDefaultCatalogObjectsMetadataInBucket(Long)}, filtered as
+     * {@link #findDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucket(List, String, String, String)}.
+     */
+    @QueryHints({ @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+                  @QueryHint(name = "org.hibernate.readOnly", value = "true") })
+    @Query(METADATA_PROJECTION + " WHERE co.id.bucketId = ?1" +
+           " AND lower(co.kind) LIKE lower(concat(?2, '%')) AND lower(co.contentType) LIKE lower(concat(?3, '%'))" +
+           " AND lower(co.id.name) LIKE lower(concat('%', ?4, '%')) ORDER BY co.id.name")
+    Stream<Object[]> streamDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucket(Long bucketId,
+            String kind, String contentType, String objectName);
+
+    String ARCHIVE_ENTRY_PROJECTION = "SELECT cor.id, co.id.name, co.kind, co.extension, cor.contentHash " +
+                                      LAST_REVISIONS;
+
+    /**
+     * Last revisions of the given objects of a bucket, selecting only the columns needed to write them to an archive:
+     * revision id, object name, kind, extension and content hash. The content is read by
+     * {@link #findRawObjectById(Long)} when the entry is written.
+     */
+    @Query(ARCHIVE_ENTRY_PROJECTION + " WHERE co.bucket.bucketName = ?1 AND co.id.name in ?2")
+    List<Object[]> findDefaultCatalogObjectsArchiveEntriesByNamesInBucket(String bucketName, Collection<String> names);
+
+    /**
+     * Last revisions of a bucket ordered by object name, with the columns of
+     * {@link #findDefaultCatalogObjectsArchiveEntriesByNamesInBucket(String, Collection)}.
+     */
+    @Query(ARCHIVE_ENTRY_PROJECTION + " WHERE co.id.bucketId = ?1 ORDER BY co.id.name")
+    List<Object[]> findDefaultCatalogObjectsArchiveEntriesInBucket(Long bucketId);
+
+    @Query("SELECT cor.rawObject FROM CatalogObjectRevisionEntity cor WHERE cor.id = ?1")
+    byte[] findRawObjectById(Long id);
+
+    /**
+     * @return the key/value metadata of the given revisions, as revision id, key, value and label, in insertion order
+     */
+    @Query("SELECT metadata.catalogObjectRevision.id, metadata.key, metadata.value, metadata.label FROM KeyValueLabelMetadataEntity metadata" +
+           " WHERE metadata.catalogObjectRevision.id in ?1 ORDER BY metadata.id")
+    List<Object[]> findKeyValueMetadataOfRevisions(Collection<Long> revisionIds);
+
+    /**
+     * Page of the revisions of an object, from the most recent one committed before the given time, read from the
+     * revision index.
+     */
+    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.catalogObject.id.bucketId = ?1 AND cor.catalogObject.id.name = ?2" +
+           " AND cor.commitTime < ?3 ORDER BY cor.commitTime DESC")
+    List<CatalogObjectRevisionEntity> findRevisionsCommittedBefore(Long bucketId, String name, long commitTime,
+            Pageable pageable);
+
+    @Query("SELECT " + REVISION_VALIDATORS + LAST_REVISIONS + " WHERE co.bucket.bucketName = ?1 AND co.id.name = ?2")
+    RevisionValidators findLastRevisionValidators(String bucketName, String name);
+
+    @Query("SELECT " + REVISION_VALIDATORS +
+           "FROM CatalogObjectRevisionEntity cor INNER JOIN cor.catalogObject co WHERE co.bucket.bucketName = ?1 AND co.id.name = ?2 AND cor.commitTime = ?3")
+    RevisionValidators findRevisionValidators(String bucketName, String name, long commitTime);
+
     @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.catalogObject.bucket.bucketName in ?1 AND cor.catalogObject.id.name = ?2 AND cor.commitTime = ?3")
     CatalogObjectRevisionEntity findCatalogObjectRevisionByCommitTime(List<String> bucketNames, String name,
             long commitTime);
@@ -79,10 +206,33 @@ public interface CatalogObjectRevisionRepository extends JpaRepository<CatalogOb
      * @param bucketObjectName
      * @return a list of objects (checking only the last revision) the depend on the passed bucketObjectName
      */
-    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor INNER JOIN cor.keyValueMetadataList metadata WHERE metadata.label = '" +
-           WorkflowParser.ATTRIBUTE_DEPENDS_ON_LABEL + "' AND metadata.key = :bucketObjectName" +
-           " AND cor.commitTime = cor.catalogObject.lastCommitTime")
+    @Query("SELECT cor " + LAST_REVISIONS + " INNER JOIN cor.keyValueMetadataList metadata WHERE metadata.label = '" +
+           WorkflowParser.ATTRIBUTE_DEPENDS_ON_LABEL + "' AND metadata.key = :bucketObjectName")
     List<CatalogObjectRevisionEntity>
             findCalledByCatalogObjectsFromKeyValueMetadata(@Param("bucketObjectName") String bucketObjectName);
 
+    @Query("SELECT DISTINCT cor.contentHash FROM CatalogObjectRevisionEntity cor WHERE cor.contentHash IS NOT NULL")
+    List<String> findAllContentHashes();
+
+    long countByContentHash(String contentHash);
+
+    /**
+     * @return revisions committed before the raw object store existed, whose content is only in the RAW_OBJECT column
+     */
+    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.contentHash IS NULL AND cor.rawObject IS NOT NULL" +
+           " AND cor.id > ?1 ORDER BY cor.id")
+    List<CatalogObjectRevisionEntity> findRevisionsWithoutContentHash(Long afterId, Pageable pageable);
+
+    /**
+     * @return revisions whose content is still in the RAW_OBJECT column
+     */
+    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.rawObject IS NOT NULL AND cor.id > ?1 ORDER BY cor.id")
+    List<CatalogObjectRevisionEntity> findRevisionsWithRawObject(Long afterId, Pageable pageable);
+
+    /**
+     * @return last revisions of the objects created before {@code CatalogObjectEntity.lastRevision} existed
+     */
+    @Query("SELECT cor FROM CatalogObjectRevisionEntity cor WHERE cor.catalogObject.lastRevision IS NULL AND cor.catalogObject.lastCommitTime = cor.commitTime")
+    List<CatalogObjectRevisionEntity> findLastRevisionsNotReferencedByTheirObject(Pageable pageable);
+
 }
@@ -77,6 +77,14 @@ public class BucketEntity implements Serializable {
     @Column(name = "OWNER", nullable = false)
     protected String owner;
 
+    /**
+     * Incremented by each transaction changing the objects of the bucket, see
+     * {@link org.ow2.proactive.catalog.repository.BucketRepository#incrementChangeCount(Long)}. Not updatable from the
+     * entity, so that saving a bucket read earlier does not overwrite it. Null for buckets created before it existed.
+     */
+    @Column(name = "CHANGE_COUNT", updatable = false)
+    protected Long changeCount = 0L;
+
     @OneToMany(mappedBy = "bucket", fetch = FetchType.LAZY, cascade = { CascadeType.PERSIST,
                                                                         CascadeType.REMOVE }, orphanRemoval = true)
     @Fetch(FetchMode.SELECT)
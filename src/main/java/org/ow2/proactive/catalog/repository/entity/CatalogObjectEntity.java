@@ -64,7 +64,8 @@ import lombok.NoArgsConstructor;
 @BatchSize(size = 25)
 @Entity
 @NamedEntityGraph(name = "catalogObject.withRevisions", attributeNodes = { @NamedAttributeNode("revisions") })
-@Table(name = "CATALOG_OBJECT", indexes = { @Index(columnList = "LAST_COMMIT_TIME") })
+@Table(name = "CATALOG_OBJECT", indexes = { @Index(columnList = "LAST_COMMIT_TIME"),
+                                            @Index(columnList = "LAST_REVISION_ID") })
 public class CatalogObjectEntity implements Serializable {
 
     @AllArgsConstructor
@@ -132,6 +133,14 @@ public class CatalogObjectEntity implements Serializable {
     @Column(name = "LAST_COMMIT_TIME")
     private long lastCommitTime;
 
+    /**
+     * Latest revision of the object, so that it is found by joining on its primary key. Set by
+     * {@link #addRevision(CatalogObjectRevisionEntity)}, along with {@link #lastCommitTime}.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "LAST_REVISION_ID")
+    private CatalogObjectRevisionEntity lastRevision;
+
     public CatalogObjectEntity() {
         revisions = new TreeSet<>();
     }
@@ -139,6 +148,7 @@ public class CatalogObjectEntity implements Serializable {
     public void addRevision(CatalogObjectRevisionEntity catalogObjectRevision) {
         this.revisions.add(catalogObjectRevision);
         this.lastCommitTime = catalogObjectRevision.getCommitTime();
+        this.lastRevision = catalogObjectRevision;
     }
 
     @Override
@@ -73,7 +73,8 @@ public class CatalogObjectRevisionEntity implements Comparable, Serializable {
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CATALOG_OBJECT_REVISION_SEQ")
     @GenericGenerator(name = "CATALOG_OBJECT_REVISION_SEQ", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = { @Parameter(name = "sequence_name", value = "CATALOG_OBJECT_REVISION_SEQ"),
                                                                                                                                           @Parameter(name = "initial_value", value = "1"),
-                                                                                                                                          @Parameter(name = "increment_size", value = "1") })
+                                                                                                                                          @Parameter(name = "increment_size", value = "50"),
+                                                                                                                                          @Parameter(name = "optimizer", value = "pooled-lo") })
     @Column(name = "ID")
     protected Long id;
 
@@ -97,10 +98,23 @@ public class CatalogObjectRevisionEntity implements Comparable, Serializable {
     @Builder.Default
     private List<KeyValueLabelMetadataEntity> keyValueMetadataList = new ArrayList<>();
 
+    /**
+     * Content of the revision, only set for revisions committed while the raw object store was disabled, or
+     * before it existed. Other revisions keep their content in the raw object store, under {@link #contentHash}.
+     */
     @Lob
     @Column(name = "RAW_OBJECT", length = Integer.MAX_VALUE)
     private byte[] rawObject;
 
+    /**
+     * SHA-256 digest of the content, in hexadecimal.
+     */
+    @Column(name = "CONTENT_HASH", length = 64)
+    private String contentHash;
+
+    @Column(name = "CONTENT_SIZE")
+    private Long contentSize;
+
     @Override
     public int compareTo(Object o) {
         return Long.valueOf(((CatalogObjectRevisionEntity) o).commitTime).compareTo(Long.valueOf(commitTime));
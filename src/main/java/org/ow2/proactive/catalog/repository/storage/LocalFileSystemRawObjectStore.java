@@ -0,0 +1,268 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.repository.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.ow2.proactive.catalog.service.exception.RawObjectStoreException;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.Striped;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * {@link RawObjectStore} keeping each content in its own file, named after its key, under a directory named after
+ * the first two characters of the key.
+ *
+ * Contents are first written to a temporary file, flushed to disk, then atomically renamed, so that a stored
+ * content is never seen partially written, even after a crash. Putting and deleting the content of a key are
+ * serialized by a lock of the key, so that a content put again is never deleted by a concurrent garbage collection.
+ *
+ * The directory must be set explicitly when the store is enabled: it must be durable, and shared by all the catalogs
+ * using the same database. When it is not set, the store holds no content.
+ *
+ * @author ActiveEon Team
+ */
+@Log4j2
+@Component
+public class LocalFileSystemRawObjectStore implements RawObjectStore {
+
+    private static final String TEMPORARY_DIRECTORY_NAME = "tmp";
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path rootDirectory;
+
+    private final Path temporaryDirectory;
+
+    private final Striped<Lock> locks = Striped.lock(64);
+
+    @Autowired
+    public LocalFileSystemRawObjectStore(@Value("${pa.catalog.raw.object.store.enabled:false}") boolean enabled,
+            @Value("${pa.catalog.raw.object.store.directory:}") String directory) {
+        this(getConfiguredDirectory(enabled, directory));
+    }
+
+    /**
+     * @param rootDirectory directory of the store, or null if the store is not configured
+     */
+    public LocalFileSystemRawObjectStore(Path rootDirectory) {
+        if (rootDirectory == null) {
+            this.rootDirectory = null;
+            this.temporaryDirectory = null;
+            return;
+        }
+        this.rootDirectory = rootDirectory.toAbsolutePath();
+        this.temporaryDirectory = this.rootDirectory.resolve(TEMPORARY_DIRECTORY_NAME);
+        try {
+            Files.createDirectories(temporaryDirectory);
+        } catch (IOException e) {
+            throw new RawObjectStoreException("Cannot create the raw object store directory " + rootDirectory, e);
+        }
+    }
+
+    @Override
+    public String put(byte[] content) {
+        String key = ContentHashUtil.sha256Hex(content);
+        Path target = getPath(key);
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            if (!touch(target)) {
+                write(key, target, content);
+            }
+            return key;
+        } catch (IOException e) {
+            throw new RawObjectStoreException("Cannot store raw object " + key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public byte[] get(String key) {
+        try {
+            return Files.readAllBytes(getPath(key));
+        } catch (NoSuchFileException e) {
+            throw new RawObjectStoreException("Raw object " + key + " is missing from " + rootDirectory);
+        } catch (IOException e) {
+            throw new RawObjectStoreException("Cannot read raw object " + key, e);
+        }
+    }
+
+    @Override
+    public Optional<Path> getFile(String key) {
+        Path file = getPath(key);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return rootDirectory != null && Files.exists(getPath(key));
+    }
+
+    @Override
+    public Set<String> listKeysWrittenBefore(long epochMilli) {
+        if (rootDirectory == null) {
+            return Collections.emptySet();
+        }
+        try (Stream<Path> files = Files.walk(rootDirectory, 2)) {
+            return files.filter(file -> !file.startsWith(temporaryDirectory))
+                        .filter(file -> KEY_PATTERN.matcher(file.getFileName().toString()).matches())
+                        .filter(file -> isWrittenBefore(file, epochMilli))
+                        .map(file -> file.getFileName().toString())
+                        .collect(Collectors.toSet());
+        } catch (IOException e) {
+            throw new RawObjectStoreException("Cannot list raw objects of " + rootDirectory, e);
+        }
+    }
+
+    @Override
+    public boolean deleteIfWrittenBefore(String key, long epochMilli, Predicate<String> isReferenced) {
+        Path file = getPath(key);
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            return isWrittenBefore(file, epochMilli) && !isReferenced.test(key) && Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new RawObjectStoreException("Cannot delete raw object " + key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path getPath(String key) {
+        if (rootDirectory == null) {
+            throw new RawObjectStoreException("Raw object " + key +
+                                              " cannot be accessed, pa.catalog.raw.object.store.directory is not set");
+        }
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new RawObjectStoreException("Invalid raw object key " + key);
+        }
+        return rootDirectory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * Marks the given file as written now.
+     *
+     * @return false if the file does not exist, e.g. because it has been deleted by another catalog
+     */
+    private boolean touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private void write(String key, Path target, byte[] content) throws IOException {
+        Path temporaryFile = Files.createTempFile(temporaryDirectory, key, null);
+        try {
+            writeAndSync(temporaryFile, content);
+            Files.createDirectories(target.getParent());
+            moveAtomically(temporaryFile, target);
+            syncDirectory(target.getParent());
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private boolean isWrittenBefore(Path file, long epochMilli) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < epochMilli;
+        } catch (IOException e) {
+            // deleted meanwhile
+            return false;
+        }
+    }
+
+    private void writeAndSync(Path file, byte[] content) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // the same content was stored concurrently
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Makes the rename durable. Not all platforms allow to open a directory, in which case this is skipped.
+     */
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot sync directory {}", directory, e);
+        }
+    }
+
+    private static Path getConfiguredDirectory(boolean enabled, String directory) {
+        if (!directory.trim().isEmpty()) {
+            return Paths.get(directory.trim());
+        }
+        if (enabled) {
+            throw new IllegalStateException("pa.catalog.raw.object.store.directory must be set when the raw object store is enabled");
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.repository.storage;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.ow2.proactive.catalog.service.exception.RawObjectStoreException;
+
+
+/**
+ * Storage of catalog object raw contents, addressed by the SHA-256 digest of the content.
+ * Identical contents are stored once, whatever the number of revisions, objects or buckets referring to them.
+ *
+ * @author ActiveEon Team
+ */
+public interface RawObjectStore {
+
+    /**
+     * Stores the given content, unless it is already stored. In both cases, the content is marked as written now,
+     * so that it is not garbage collected before the revision referring to it is committed.
+     *
+     * @return the key of the content, i.e. its SHA-256 digest in hexadecimal
+     */
+    String put(byte[] content);
+
+    /**
+     * @throws RawObjectStoreException if no content is stored under the given key
+     */
+    byte[] get(String key);
+
+    /**
+     * @return the file holding the content stored under the given key, so that it can be served without being read
+     * in memory, or empty if the store is not backed by files or holds no content under the given key
+     */
+    Optional<Path> getFile(String key);
+
+    boolean contains(String key);
+
+    /**
+     * @return the keys of the contents last written before the given time, in milliseconds since the epoch
+     */
+    Set<String> listKeysWrittenBefore(long epochMilli);
+
+    /**
+     * Deletes the content stored under the given key, unless it has been written again since the given time, or the
+     * given predicate tells it is referenced. The predicate is evaluated while the content cannot be put again, so
+     * that a revision committed meanwhile keeps its content.
+     *
+     * @return true if the content was deleted
+     */
+    boolean deleteIfWrittenBefore(String key, long epochMilli, Predicate<String> isReferenced);
+
+}
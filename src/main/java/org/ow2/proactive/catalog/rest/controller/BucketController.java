@@ -30,15 +30,21 @@ import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.ow2.proactive.catalog.dto.BucketMetadata;
 import org.ow2.proactive.catalog.service.BucketService;
 import org.ow2.proactive.catalog.service.RestApiAccessService;
 import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
 import org.ow2.proactive.catalog.service.exception.BucketAlreadyExistingException;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
 import org.ow2.proactive.catalog.service.model.RestApiAccessResponse;
+import org.ow2.proactive.catalog.util.JsonArrayStreamWriter;
+import org.ow2.proactive.catalog.util.LinkUtil;
 import org.ow2.proactive.microservices.common.exception.NotAuthenticatedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -70,6 +76,9 @@ public class BucketController {
     @Autowired
     private RestApiAccessService restApiAccessService;
 
+    @Autowired
+    private JsonArrayStreamWriter jsonArrayStreamWriter;
+
     @Value("${pa.catalog.security.required.sessionid}")
     private boolean sessionIdRequired;
 
@@ -132,7 +141,7 @@ public class BucketController {
         return bucketService.getBucketMetadata(bucketName);
     }
 
-    @ApiOperation(value = "Lists the buckets")
+    @ApiOperation(value = "Lists the buckets", notes = "When a limit is given, buckets are listed by pages ordered by name, the URL of the next page being given in the Link header. Otherwise, when stream is true, buckets are ordered by name and written while they are read.")
     @ApiResponses(value = { @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied"), })
     @RequestMapping(method = GET)
@@ -142,19 +151,64 @@ public class BucketController {
             @ApiParam(value = "The name of the user who owns the Bucket") @RequestParam(value = "owner", required = false) String ownerName,
             @ApiParam(value = "The kind of objects that buckets must contain") @RequestParam(value = "kind", required = false) Optional<String> kind,
             @ApiParam(value = "The Content-Type of objects that buckets must contain") @RequestParam(value = "contentType", required = false) Optional<String> contentType,
-            @ApiParam(value = "The name of objects that buckets must contain") @RequestParam(value = "objectName", required = false) Optional<String> objectName)
-            throws NotAuthenticatedException, AccessDeniedException {
+            @ApiParam(value = "The name of objects that buckets must contain") @RequestParam(value = "objectName", required = false) Optional<String> objectName,
+            @ApiParam(value = "The maximum number of buckets to return, at most " + KeysetPage.MAX_LIMIT) @RequestParam(value = "limit", required = false) Optional<Integer> limit,
+            @ApiParam(value = "The name of the last bucket of the previous page") @RequestParam(value = "after", required = false) Optional<String> after,
+            @ApiParam(value = "Write the buckets while they are read instead of listing them first") @RequestParam(value = "stream", required = false, defaultValue = "false") boolean stream,
+            HttpServletResponse response) throws NotAuthenticatedException, AccessDeniedException, IOException {
 
         if (sessionIdRequired) {
             RestApiAccessResponse restApiAccessResponse = restApiAccessService.checkAccessBySessionIdForOwnerOrGroupAndThrowIfDeclined(sessionId,
                                                                                                                                        ownerName);
 
+            if (limit.isPresent()) {
+                KeysetPage<BucketMetadata> page = bucketService.getBucketsByGroups(ownerName,
+                                                                                   kind,
+                                                                                   contentType,
+                                                                                   objectName,
+                                                                                   after,
+                                                                                   limit.get(),
+                                                                                   () -> restApiAccessResponse.getAuthenticatedUser()
+                                                                                                              .getGroups());
+                LinkUtil.addNextPageLink(response, page);
+                return page.getItems();
+            }
+
+            if (stream) {
+                jsonArrayStreamWriter.<BucketMetadata> write(response,
+                                                             consumer -> bucketService.streamBucketsByGroups(ownerName,
+                                                                                                             kind,
+                                                                                                             contentType,
+                                                                                                             objectName,
+                                                                                                             () -> restApiAccessResponse.getAuthenticatedUser()
+                                                                                                                                        .getGroups(),
+                                                                                                             consumer));
+                return null;
+            }
+
             return bucketService.getBucketsByGroups(ownerName,
                                                     kind,
                                                     contentType,
                                                     objectName,
                                                     () -> restApiAccessResponse.getAuthenticatedUser().getGroups());
 
+        } else if (limit.isPresent()) {
+            KeysetPage<BucketMetadata> page = bucketService.listBuckets(ownerName,
+                                                                        kind,
+                                                                        contentType,
+                                                                        objectName,
+                                                                        after,
+                                                                        limit.get());
+            LinkUtil.addNextPageLink(response, page);
+            return page.getItems();
+        } else if (stream) {
+            jsonArrayStreamWriter.<BucketMetadata> write(response,
+                                                         consumer -> bucketService.streamBuckets(ownerName,
+                                                                                                 kind,
+                                                                                                 contentType,
+                                                                                                 objectName,
+                                                                                                 consumer));
+            return null;
         } else {
             return bucketService.listBuckets(ownerName, kind, contentType, objectName);
         }
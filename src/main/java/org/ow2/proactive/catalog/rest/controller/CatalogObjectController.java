@@ -30,18 +30,24 @@ import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.FilenameUtils;
+import org.ow2.proactive.catalog.dto.CatalogObjectBatchItem;
 import org.ow2.proactive.catalog.dto.CatalogObjectDependencies;
+import org.ow2.proactive.catalog.dto.CatalogObjectImportResult;
 import org.ow2.proactive.catalog.dto.CatalogObjectMetadata;
 import org.ow2.proactive.catalog.dto.CatalogObjectMetadataList;
 import org.ow2.proactive.catalog.dto.CatalogObjectNameReference;
@@ -49,10 +55,17 @@ import org.ow2.proactive.catalog.dto.CatalogRawObject;
 import org.ow2.proactive.catalog.service.CatalogObjectService;
 import org.ow2.proactive.catalog.service.RestApiAccessService;
 import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
+import org.ow2.proactive.catalog.service.exception.WrongParametersException;
+import org.ow2.proactive.catalog.service.model.BucketArchive;
+import org.ow2.proactive.catalog.service.model.CatalogObjectUpload;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
 import org.ow2.proactive.catalog.service.model.RestApiAccessResponse;
-import org.ow2.proactive.catalog.util.ArchiveManagerHelper.ZipArchiveContent;
+import org.ow2.proactive.catalog.service.model.RevisionValidators;
+import org.ow2.proactive.catalog.util.ArchiveManagerHelper.StreamedZipArchive;
+import org.ow2.proactive.catalog.util.JsonArrayStreamWriter;
 import org.ow2.proactive.catalog.util.LinkUtil;
 import org.ow2.proactive.catalog.util.RawObjectResponseCreator;
+import org.ow2.proactive.catalog.util.UploadedContentReader;
 import org.ow2.proactive.microservices.common.exception.NotAuthenticatedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -67,7 +80,13 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
 
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -95,13 +114,23 @@ public class CatalogObjectController {
     @Autowired
     private RawObjectResponseCreator rawObjectResponseCreator;
 
+    @Autowired
+    private JsonArrayStreamWriter jsonArrayStreamWriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private static final String ZIP_CONTENT_TYPE = "application/zip";
 
+    @Autowired
+    private UploadedContentReader uploadedContentReader;
+
     @Value("${pa.catalog.security.required.sessionid}")
     private boolean sessionIdRequired;
 
     @ApiOperation(value = "Creates a new catalog object")
     @ApiResponses(value = { @ApiResponse(code = 404, message = "Bucket not found"),
+                            @ApiResponse(code = 413, message = "Object exceeding the maximum size or archive exceeding the extraction limits"),
                             @ApiResponse(code = 422, message = "Invalid file content supplied") })
     @RequestMapping(value = REQUEST_API_QUERY, consumes = { MediaType.MULTIPART_FORM_DATA_VALUE }, method = POST)
     @ResponseStatus(HttpStatus.CREATED)
@@ -112,7 +141,8 @@ public class CatalogObjectController {
             @ApiParam(value = "Kind of the new object", required = true) @RequestParam String kind,
             @ApiParam(value = "Commit message", required = true) @RequestParam String commitMessage,
             @ApiParam(value = "The Content-Type of CatalogRawObject - MIME type", required = true) @RequestParam String objectContentType,
-            @ApiParam(value = "The content of CatalogRawObject", required = true) @RequestPart(value = "file") MultipartFile file)
+            @ApiParam(value = "The content of CatalogRawObject", required = true) @RequestPart(value = "file") MultipartFile file,
+            @ApiParam(value = "When a ZIP archive is uploaded, whether the entries having the same content as the last revision of their object are skipped") @RequestParam(value = "skipIfUnchanged", required = false, defaultValue = "false") boolean skipIfUnchanged)
             throws IOException, NotAuthenticatedException, AccessDeniedException {
         RestApiAccessResponse restApiAccessResponse = restApiAccessService.getUserDataFromSessionidAndCheckAccess(sessionIdRequired,
                                                                                                                   sessionId,
@@ -125,25 +155,90 @@ public class CatalogObjectController {
                                                                                            restApiAccessResponse.getAuthenticatedUser()
                                                                                                                 .getName(),
                                                                                            objectContentType,
-                                                                                           file.getBytes(),
+                                                                                           uploadedContentReader.read(file),
                                                                                            FilenameUtils.getExtension(file.getOriginalFilename()));
 
             catalogObject.add(LinkUtil.createLink(bucketName, catalogObject.getName()));
 
             return new CatalogObjectMetadataList(catalogObject);
         } else {
-            List<CatalogObjectMetadata> catalogObjects = catalogObjectService.createCatalogObjects(bucketName,
-                                                                                                   kind,
-                                                                                                   commitMessage,
-                                                                                                   restApiAccessResponse.getAuthenticatedUser()
-                                                                                                                        .getName(),
-                                                                                                   file.getBytes());
-
-            for (CatalogObjectMetadata catalogObject : catalogObjects) {
-                catalogObject.add(LinkUtil.createLink(bucketName, catalogObject.getName()));
+            // The upload is spooled to a file so that the archive is never held in memory as a whole
+            File archive = File.createTempFile("catalog-archive-", ".zip");
+            List<CatalogObjectImportResult> importResults;
+            try {
+                file.transferTo(archive);
+                importResults = catalogObjectService.createCatalogObjects(bucketName,
+                                                                          kind,
+                                                                          commitMessage,
+                                                                          restApiAccessResponse.getAuthenticatedUser()
+                                                                                               .getName(),
+                                                                          archive,
+                                                                          skipIfUnchanged);
+            } finally {
+                Files.deleteIfExists(archive.toPath());
+            }
+
+            for (CatalogObjectImportResult importResult : importResults) {
+                importResult.getMetadata().add(LinkUtil.createLink(bucketName, importResult.getName()));
+            }
+
+            return CatalogObjectMetadataList.ofImportResults(importResults);
+        }
+    }
+
+    @ApiOperation(value = "Creates or revises several catalog objects at once", notes = "The manifest part is a JSON array of entries having a name, the name of the part holding the content (file) and, for new objects, a kind and optionally a content_type. An entry may have its own commit_message. Objects are created, or revised when they exist, in a single transaction.")
+    @ApiResponses(value = { @ApiResponse(code = 400, message = "Invalid manifest"),
+                            @ApiResponse(code = 404, message = "Bucket not found"),
+                            @ApiResponse(code = 401, message = "User not authenticated"),
+                            @ApiResponse(code = 403, message = "Permission denied") })
+    @RequestMapping(value = REQUEST_API_QUERY +
+                            "/batch", consumes = { MediaType.MULTIPART_FORM_DATA_VALUE }, method = POST)
+    @ResponseStatus(HttpStatus.CREATED)
+    public CatalogObjectMetadataList createOrReviseBatch(
+            @ApiParam(value = "sessionID", required = true) @RequestHeader(value = "sessionID", required = true) String sessionId,
+            @PathVariable String bucketName,
+            @ApiParam(value = "Commit message of the entries having none", required = true) @RequestParam String commitMessage,
+            @ApiParam(value = "JSON array describing the objects", required = true) @RequestPart(value = "manifest") String manifest,
+            @ApiParam(value = "Whether the entries having the same content as the last revision of their object are skipped") @RequestParam(value = "skipIfUnchanged", required = false, defaultValue = "false") boolean skipIfUnchanged,
+            MultipartHttpServletRequest request) throws IOException, NotAuthenticatedException, AccessDeniedException {
+        RestApiAccessResponse restApiAccessResponse = restApiAccessService.getUserDataFromSessionidAndCheckAccess(sessionIdRequired,
+                                                                                                                  sessionId,
+                                                                                                                  bucketName);
+        List<CatalogObjectUpload> uploads = new ArrayList<>();
+        for (CatalogObjectBatchItem item : parseManifest(manifest)) {
+            if (item.getName() == null || item.getName().isEmpty()) {
+                throw new WrongParametersException("Every entry of the manifest must have a name");
+            }
+            MultipartFile file = item.getFile() == null ? null : request.getFile(item.getFile());
+            if (file == null) {
+                throw new WrongParametersException("No part holds the content of " + item.getName());
             }
+            uploads.add(new CatalogObjectUpload(item.getName(),
+                                                file.getOriginalFilename(),
+                                                item.getKind(),
+                                                item.getContentType(),
+                                                item.getCommitMessage() != null ? item.getCommitMessage()
+                                                                                : commitMessage,
+                                                uploadedContentReader.read(file)));
+        }
+
+        List<CatalogObjectImportResult> results = catalogObjectService.createOrReviseCatalogObjects(bucketName,
+                                                                                                    uploads,
+                                                                                                    restApiAccessResponse.getAuthenticatedUser()
+                                                                                                                         .getName(),
+                                                                                                    skipIfUnchanged);
+        for (CatalogObjectImportResult result : results) {
+            result.getMetadata().add(LinkUtil.createLink(bucketName, result.getName()));
+        }
+        return CatalogObjectMetadataList.ofImportResults(results);
+    }
 
-            return new CatalogObjectMetadataList(catalogObjects);
+    private List<CatalogObjectBatchItem> parseManifest(String manifest) {
+        try {
+            return objectMapper.readValue(manifest, new TypeReference<List<CatalogObjectBatchItem>>() {
+            });
+        } catch (IOException e) {
+            throw new WrongParametersException("Invalid manifest: " + e.getMessage());
         }
     }
 
@@ -196,19 +291,26 @@ public class CatalogObjectController {
     }
 
     @ApiOperation(value = "Gets a catalog object's metadata by IDs", notes = "Returns metadata associated to the latest revision of the catalog object.")
-    @ApiResponses(value = { @ApiResponse(code = 404, message = "Bucket or catalog object not found"),
+    @ApiResponses(value = { @ApiResponse(code = 304, message = "Not modified since the given ETag or date"),
+                            @ApiResponse(code = 404, message = "Bucket or catalog object not found"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied") })
-    @ResponseStatus(HttpStatus.OK)
     @RequestMapping(value = REQUEST_API_QUERY + "/{name:.+}", method = GET)
     public CatalogObjectMetadata get(
             @ApiParam(value = "sessionID", required = false) @RequestHeader(value = "sessionID", required = false) String sessionId,
-            @PathVariable String bucketName, @PathVariable String name) throws MalformedURLException,
-            UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
+            @PathVariable String bucketName, @PathVariable String name, WebRequest webRequest)
+            throws MalformedURLException, UnsupportedEncodingException, NotAuthenticatedException,
+            AccessDeniedException {
         restApiAccessService.checkAccessBySessionIdForBucketAndThrowIfDeclined(sessionIdRequired,
                                                                                sessionId,
                                                                                bucketName);
 
+        // the ETag and Last-Modified headers are set on the response, which is a 304 when they match the request
+        RevisionValidators validators = catalogObjectService.getCatalogObjectValidators(bucketName, name);
+        if (webRequest.checkNotModified(validators.getMetadataETag(), validators.getCommitTime())) {
+            return null;
+        }
+
         CatalogObjectMetadata metadata = catalogObjectService.getCatalogObjectMetadata(bucketName, name);
         metadata.add(LinkUtil.createLink(bucketName, metadata.getName()));
         metadata.add(LinkUtil.createRelativeLink(bucketName, metadata.getName()));
@@ -217,21 +319,32 @@ public class CatalogObjectController {
 
     @ApiOperation(value = "Gets the raw content of the last revision of a catalog object")
     @ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"),
+                            @ApiResponse(code = 206, message = "Part of the content selected by the Range header"),
+                            @ApiResponse(code = 304, message = "Not modified since the given ETag or date"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied"),
-                            @ApiResponse(code = 404, message = "Bucket, catalog object or catalog object revision not found") })
+                            @ApiResponse(code = 404, message = "Bucket, catalog object or catalog object revision not found"),
+                            @ApiResponse(code = 416, message = "Range not satisfiable") })
 
     @RequestMapping(value = REQUEST_API_QUERY + "/{name:.+}/raw", method = GET, produces = MediaType.ALL_VALUE)
     public ResponseEntity<String> getRaw(
             @ApiParam(value = "sessionID", required = false) @RequestHeader(value = "sessionID", required = false) String sessionId,
-            @PathVariable String bucketName, @PathVariable String name)
+            @PathVariable String bucketName, @PathVariable String name, WebRequest webRequest)
             throws UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
         restApiAccessService.checkAccessBySessionIdForBucketAndThrowIfDeclined(sessionIdRequired,
                                                                                sessionId,
                                                                                bucketName);
 
+        // checked before the content is loaded, the ETag and Last-Modified headers being set on the response
+        RevisionValidators validators = catalogObjectService.getCatalogObjectValidators(bucketName, name);
+        if (webRequest.checkNotModified(validators.getRawObjectETag(), validators.getCommitTime())) {
+            return null;
+        }
+
         CatalogRawObject rawObject = catalogObjectService.getCatalogRawObject(bucketName, name);
-        return rawObjectResponseCreator.createRawObjectResponse(rawObject);
+        return rawObjectResponseCreator.createRawObjectResponse(rawObject,
+                                                         webRequest,
+                                                         validators.getRawObjectETag());
 
     }
 
@@ -253,9 +366,10 @@ public class CatalogObjectController {
         return catalogObjectService.getObjectDependencies(bucketName, name);
     }
 
-    @ApiOperation(value = "Lists catalog objects metadata", notes = "Returns catalog objects metadata associated to the latest revision.")
+    @ApiOperation(value = "Lists catalog objects metadata", notes = "Returns catalog objects metadata associated to the latest revision. When a limit is given, objects are listed by pages ordered by name, the URL of the next page being given in the Link header. Otherwise, when stream is true, objects are ordered by name and written while they are read.")
     @ApiResponses(value = { @ApiResponse(code = 404, message = "Bucket not found"),
                             @ApiResponse(code = 206, message = "Missing object"),
+                            @ApiResponse(code = 304, message = "Archive of the whole bucket not modified since the given ETag"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied") })
     @RequestMapping(value = REQUEST_API_QUERY, method = GET)
@@ -266,19 +380,42 @@ public class CatalogObjectController {
             @ApiParam(value = "Filter according to Content-Type.") @RequestParam(required = false) Optional<String> contentType,
             @ApiParam(value = "Filter according to Object Name.") @RequestParam(value = "objectName", required = false) Optional<String> objectNameFilter,
             @ApiParam(value = "Give a list of name separated by comma to get them in an archive", allowMultiple = true, type = "string") @RequestParam(value = "listObjectNamesForArchive", required = false) Optional<List<String>> names,
-            HttpServletResponse response)
-            throws UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
+            @ApiParam(value = "The maximum number of objects to return, at most " + KeysetPage.MAX_LIMIT) @RequestParam(value = "limit", required = false) Optional<Integer> limit,
+            @ApiParam(value = "The name of the last object of the previous page") @RequestParam(value = "after", required = false) Optional<String> after,
+            @ApiParam(value = "Write the objects while they are read instead of listing them first") @RequestParam(value = "stream", required = false, defaultValue = "false") boolean stream,
+            HttpServletResponse response, WebRequest webRequest)
+            throws IOException, NotAuthenticatedException, AccessDeniedException {
 
         restApiAccessService.checkAccessBySessionIdForBucketAndThrowIfDeclined(sessionIdRequired,
                                                                                sessionId,
                                                                                bucketName);
         if (names.isPresent()) {
 
-            ZipArchiveContent zipArchiveContent = catalogObjectService.getCatalogObjectsAsZipArchive(bucketName,
-                                                                                                     names.get());
+            // archives of whole buckets are served from the cache, and identified by the version of the bucket
+            Optional<BucketArchive> openedBucketArchive = catalogObjectService.openBucketArchive(bucketName,
+                                                                                                names.get());
+            if (openedBucketArchive.isPresent()) {
+                try (BucketArchive bucketArchive = openedBucketArchive.get()) {
+                    if (webRequest.checkNotModified(bucketArchive.getETag())) {
+                        return null;
+                    }
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.setContentType(ZIP_CONTENT_TYPE);
+                    response.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"archive.zip\"");
+                    response.addHeader(HttpHeaders.CONTENT_ENCODING, "binary");
+                    ByteStreams.copy(bucketArchive.getContent(), response.getOutputStream());
+                    response.getOutputStream().flush();
+                } catch (IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+                return new ResponseEntity<>(HttpStatus.OK);
+            }
+
+            StreamedZipArchive zipArchive = catalogObjectService.getCatalogObjectsAsZipArchive(bucketName,
+                                                                                               names.get());
 
             HttpStatus status;
-            if (zipArchiveContent.isPartial()) {
+            if (zipArchive.isPartial()) {
                 status = HttpStatus.PARTIAL_CONTENT;
                 response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
             } else {
@@ -290,27 +427,53 @@ public class CatalogObjectController {
             response.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"archive.zip\"");
             response.addHeader(HttpHeaders.CONTENT_ENCODING, "binary");
             try {
-                response.getOutputStream().write(zipArchiveContent.getContent());
+                // the archive is written while the contents are loaded and compressed
+                zipArchive.writeTo(response.getOutputStream());
                 response.getOutputStream().flush();
             } catch (IOException ioe) {
                 throw new RuntimeException(ioe);
             }
             return new ResponseEntity<>(status);
         } else {
-            List<CatalogObjectMetadata> metadataList = catalogObjectService.listCatalogObjects(Arrays.asList(bucketName),
-                                                                                               kind,
-                                                                                               contentType,
-                                                                                               objectNameFilter);
+            List<CatalogObjectMetadata> metadataList;
+            if (limit.isPresent()) {
+                KeysetPage<CatalogObjectMetadata> page = catalogObjectService.listCatalogObjects(bucketName,
+                                                                                                 kind,
+                                                                                                 contentType,
+                                                                                                 objectNameFilter,
+                                                                                                 after,
+                                                                                                 limit.get());
+                LinkUtil.addNextPageLink(response, page);
+                metadataList = page.getItems();
+            } else if (stream) {
+                Consumer<CatalogObjectMetadata> linksAdder = catalogObject -> addLinks(bucketName, catalogObject);
+                jsonArrayStreamWriter.<CatalogObjectMetadata> write(response,
+                                                                    consumer -> catalogObjectService.streamCatalogObjects(bucketName,
+                                                                                                                          kind,
+                                                                                                                          contentType,
+                                                                                                                          objectNameFilter,
+                                                                                                                          linksAdder.andThen(consumer)));
+                return new ResponseEntity<>(HttpStatus.OK);
+            } else {
+                metadataList = catalogObjectService.listCatalogObjects(Arrays.asList(bucketName),
+                                                                       kind,
+                                                                       contentType,
+                                                                       objectNameFilter);
+            }
 
             for (CatalogObjectMetadata catalogObject : metadataList) {
-                catalogObject.add(LinkUtil.createLink(bucketName, catalogObject.getName()));
-                catalogObject.add(LinkUtil.createRelativeLink(bucketName, catalogObject.getName()));
+                addLinks(bucketName, catalogObject);
             }
 
             return ResponseEntity.ok(metadataList);
         }
     }
 
+    private void addLinks(String bucketName, CatalogObjectMetadata catalogObject) {
+        catalogObject.add(LinkUtil.createLink(bucketName, catalogObject.getName()));
+        catalogObject.add(LinkUtil.createRelativeLink(bucketName, catalogObject.getName()));
+    }
+
     @ApiOperation(value = "Delete a catalog object", notes = "Delete the entire catalog object as well as its revisions. Returns the deleted CatalogObject's metadata.")
     @ApiResponses(value = { @ApiResponse(code = 404, message = "Bucket or object not found"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
@@ -32,15 +32,22 @@ import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
+import java.util.Optional;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.ow2.proactive.catalog.dto.CatalogObjectImportResult;
 import org.ow2.proactive.catalog.dto.CatalogObjectMetadata;
 import org.ow2.proactive.catalog.dto.CatalogRawObject;
 import org.ow2.proactive.catalog.service.CatalogObjectService;
 import org.ow2.proactive.catalog.service.RestApiAccessService;
 import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
 import org.ow2.proactive.catalog.service.model.RestApiAccessResponse;
+import org.ow2.proactive.catalog.service.model.RevisionValidators;
 import org.ow2.proactive.catalog.util.LinkUtil;
 import org.ow2.proactive.catalog.util.RawObjectResponseCreator;
+import org.ow2.proactive.catalog.util.UploadedContentReader;
 import org.ow2.proactive.microservices.common.exception.NotAuthenticatedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -54,6 +61,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import io.swagger.annotations.ApiOperation;
@@ -80,51 +88,69 @@ public class CatalogObjectRevisionController {
     @Autowired
     private RawObjectResponseCreator rawObjectResponseCreator;
 
+    @Autowired
+    private UploadedContentReader uploadedContentReader;
+
     @Value("${pa.catalog.security.required.sessionid}")
     private boolean sessionIdRequired;
 
-    @ApiOperation(value = "Creates a new catalog object revision")
-    @ApiResponses(value = { @ApiResponse(code = 404, message = "Bucket not found"),
+    @ApiOperation(value = "Creates a new catalog object revision", notes = "When skipIfUnchanged is set and the content is the same as the one of the last revision, no revision is created and the last one is returned with the 200 status.")
+    @ApiResponses(value = { @ApiResponse(code = 200, message = "Content unchanged, last revision returned"),
+                            @ApiResponse(code = 201, message = "Revision created"),
+                            @ApiResponse(code = 404, message = "Bucket not found"),
+                            @ApiResponse(code = 413, message = "Object exceeding the maximum size"),
                             @ApiResponse(code = 422, message = "Invalid catalog object JSON content supplied"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied") })
     @RequestMapping(consumes = { MediaType.MULTIPART_FORM_DATA_VALUE }, method = POST)
-    @ResponseStatus(HttpStatus.CREATED)
-    public CatalogObjectMetadata create(
+    public ResponseEntity<CatalogObjectMetadata> create(
             @ApiParam(value = "sessionID", required = true) @RequestHeader(value = "sessionID", required = true) String sessionId,
             @PathVariable String bucketName, @PathVariable String name,
             @ApiParam(value = "The commit message of the CatalogRawObject Revision", required = true) @RequestParam String commitMessage,
-            @RequestPart(value = "file") MultipartFile file)
+            @RequestPart(value = "file") MultipartFile file,
+            @ApiParam(value = "Whether no revision is created when the content is the same as the one of the last revision") @RequestParam(value = "skipIfUnchanged", required = false, defaultValue = "false") boolean skipIfUnchanged)
             throws IOException, NotAuthenticatedException, AccessDeniedException {
         RestApiAccessResponse restApiAccessResponse = restApiAccessService.getUserDataFromSessionidAndCheckAccess(sessionIdRequired,
                                                                                                                   sessionId,
                                                                                                                   bucketName);
-        CatalogObjectMetadata catalogObjectRevision = catalogObjectService.createCatalogObjectRevision(bucketName,
-                                                                                                       name,
-                                                                                                       commitMessage,
-                                                                                                       restApiAccessResponse.getAuthenticatedUser()
-                                                                                                                            .getName(),
-                                                                                                       file.getBytes());
+        CatalogObjectImportResult result = catalogObjectService.createCatalogObjectRevision(bucketName,
+                                                                                            name,
+                                                                                            commitMessage,
+                                                                                            restApiAccessResponse.getAuthenticatedUser()
+                                                                                                                 .getName(),
+                                                                                            uploadedContentReader.read(file),
+                                                                                            skipIfUnchanged);
+        CatalogObjectMetadata catalogObjectRevision = result.getMetadata();
         catalogObjectRevision.add(LinkUtil.createLink(bucketName,
                                                       catalogObjectRevision.getName(),
                                                       catalogObjectRevision.getCommitDateTime()));
-        return catalogObjectRevision;
+        HttpStatus status = result.getStatus() == CatalogObjectImportResult.Status.UNCHANGED ? HttpStatus.OK
+                                                                                               : HttpStatus.CREATED;
+        return new ResponseEntity<>(catalogObjectRevision, status);
     }
 
     @ApiOperation(value = "Gets a specific revision")
-    @ApiResponses(value = { @ApiResponse(code = 404, message = "Bucket, catalog object or catalog object revision not found"),
+    @ApiResponses(value = { @ApiResponse(code = 304, message = "Not modified since the given ETag or date"),
+                            @ApiResponse(code = 404, message = "Bucket, catalog object or catalog object revision not found"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied") })
     @RequestMapping(value = "/{commitTimeRaw}", method = GET)
-    @ResponseStatus(HttpStatus.OK)
     public CatalogObjectMetadata get(
             @ApiParam(value = "sessionID", required = false) @RequestHeader(value = "sessionID", required = false) String sessionId,
-            @PathVariable String bucketName, @PathVariable String name, @PathVariable long commitTimeRaw)
-            throws UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
+            @PathVariable String bucketName, @PathVariable String name, @PathVariable long commitTimeRaw,
+            WebRequest webRequest) throws UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
         restApiAccessService.checkAccessBySessionIdForBucketAndThrowIfDeclined(sessionIdRequired,
                                                                                sessionId,
                                                                                bucketName);
 
+        // the ETag and Last-Modified headers are set on the response, which is a 304 when they match the request
+        RevisionValidators validators = catalogObjectService.getCatalogObjectRevisionValidators(bucketName,
+                                                                                              name,
+                                                                                              commitTimeRaw);
+        if (webRequest.checkNotModified(validators.getMetadataETag(), validators.getCommitTime())) {
+            return null;
+        }
+
         CatalogObjectMetadata metadata = catalogObjectService.getCatalogObjectRevision(bucketName, name, commitTimeRaw);
         metadata.add(LinkUtil.createLink(bucketName, metadata.getName(), metadata.getCommitDateTime()));
         metadata.add(LinkUtil.createRelativeLink(bucketName, metadata.getName(), metadata.getCommitDateTime()));
@@ -134,27 +160,39 @@ public class CatalogObjectRevisionController {
 
     @ApiOperation(value = "Gets the raw content of a specific revision")
     @ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"),
+                            @ApiResponse(code = 206, message = "Part of the content selected by the Range header"),
+                            @ApiResponse(code = 304, message = "Not modified since the given ETag or date"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied"),
-                            @ApiResponse(code = 404, message = "Bucket, catalog object or catalog object revision not found") })
+                            @ApiResponse(code = 404, message = "Bucket, catalog object or catalog object revision not found"),
+                            @ApiResponse(code = 416, message = "Range not satisfiable") })
     @RequestMapping(value = "/{commitTimeRaw}/raw", method = GET, produces = MediaType.ALL_VALUE)
-    @ResponseStatus(HttpStatus.OK)
     public ResponseEntity<String> getRaw(
             @ApiParam(value = "sessionID", required = false) @RequestHeader(value = "sessionID", required = false) String sessionId,
-            @PathVariable String bucketName, @PathVariable String name, @PathVariable long commitTimeRaw)
-            throws UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
+            @PathVariable String bucketName, @PathVariable String name, @PathVariable long commitTimeRaw,
+            WebRequest webRequest) throws UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
         restApiAccessService.checkAccessBySessionIdForBucketAndThrowIfDeclined(sessionIdRequired,
                                                                                sessionId,
                                                                                bucketName);
 
+        // checked before the content is loaded, the ETag and Last-Modified headers being set on the response
+        RevisionValidators validators = catalogObjectService.getCatalogObjectRevisionValidators(bucketName,
+                                                                                              name,
+                                                                                              commitTimeRaw);
+        if (webRequest.checkNotModified(validators.getRawObjectETag(), validators.getCommitTime())) {
+            return null;
+        }
+
         CatalogRawObject objectRevisionRaw = catalogObjectService.getCatalogObjectRevisionRaw(bucketName,
                                                                                               name,
                                                                                               commitTimeRaw);
 
-        return rawObjectResponseCreator.createRawObjectResponse(objectRevisionRaw);
+        return rawObjectResponseCreator.createRawObjectResponse(objectRevisionRaw,
+                                                         webRequest,
+                                                         validators.getRawObjectETag());
     }
 
-    @ApiOperation(value = "Lists a catalog object revisions")
+    @ApiOperation(value = "Lists a catalog object revisions", notes = "When a limit is given, revisions are listed by pages from the most recent one, the URL of the next page being given in the Link header.")
     @ApiResponses(value = { @ApiResponse(code = 404, message = "Bucket or catalog object not found"),
                             @ApiResponse(code = 401, message = "User not authenticated"),
                             @ApiResponse(code = 403, message = "Permission denied") })
@@ -162,13 +200,25 @@ public class CatalogObjectRevisionController {
     @ResponseStatus(HttpStatus.OK)
     public List<CatalogObjectMetadata> list(
             @ApiParam(value = "sessionID", required = false) @RequestHeader(value = "sessionID", required = false) String sessionId,
-            @PathVariable String bucketName, @PathVariable String name)
+            @PathVariable String bucketName, @PathVariable String name,
+            @ApiParam(value = "The maximum number of revisions to return, at most " + KeysetPage.MAX_LIMIT) @RequestParam(value = "limit", required = false) Optional<Integer> limit,
+            @ApiParam(value = "The commit time of the last revision of the previous page") @RequestParam(value = "after", required = false) Optional<Long> after,
+            HttpServletResponse response)
             throws UnsupportedEncodingException, NotAuthenticatedException, AccessDeniedException {
         restApiAccessService.checkAccessBySessionIdForBucketAndThrowIfDeclined(sessionIdRequired,
                                                                                sessionId,
                                                                                bucketName);
-        List<CatalogObjectMetadata> catalogObjectMetadataList = catalogObjectService.listCatalogObjectRevisions(bucketName,
-                                                                                                                name);
+        List<CatalogObjectMetadata> catalogObjectMetadataList;
+        if (limit.isPresent()) {
+            KeysetPage<CatalogObjectMetadata> page = catalogObjectService.listCatalogObjectRevisions(bucketName,
+                                                                                                     name,
+                                                                                                     after,
+                                                                                                     limit.get());
+            LinkUtil.addNextPageLink(response, page);
+            catalogObjectMetadataList = page.getItems();
+        } else {
+            catalogObjectMetadataList = catalogObjectService.listCatalogObjectRevisions(bucketName, name);
+        }
 
         for (CatalogObjectMetadata catalogObjectMetadata : catalogObjectMetadataList) {
             catalogObjectMetadata.add(LinkUtil.createLink(bucketName,
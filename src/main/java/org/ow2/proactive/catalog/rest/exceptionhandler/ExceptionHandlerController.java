@@ -25,12 +25,14 @@
  */
 package org.ow2.proactive.catalog.rest.exceptionhandler;
 
+import org.ow2.proactive.catalog.service.exception.CatalogObjectTooLargeException;
 import org.ow2.proactive.microservices.common.exception.ExceptionHandlerAdvice;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import lombok.extern.log4j.Log4j2;
 
@@ -52,4 +54,11 @@ public class ExceptionHandlerController extends ExceptionHandlerAdvice {
             throws Exception {
         return clientErrorHandler(e);
     }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public @ResponseBody ResponseEntity<Object> maxUploadSizeExceededExceptionHandler(MaxUploadSizeExceededException e)
+            throws Exception {
+        return clientErrorHandler(new CatalogObjectTooLargeException("The upload exceeds the maximum of " +
+                                                                     e.getMaxUploadSize() + " bytes"));
+    }
 }
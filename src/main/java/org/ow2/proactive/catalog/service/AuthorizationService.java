@@ -25,6 +25,8 @@
  */
 package org.ow2.proactive.catalog.service;
 
+import java.util.Collection;
+
 import org.ow2.proactive.catalog.service.model.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -48,11 +50,19 @@ public class AuthorizationService {
         if (authenticatedUser == null) {
             return false;
         }
+        return askUserGroupsAuthorizationByBucketOwner(authenticatedUser.getGroups(), bucketOwnerOrGroup);
+    }
+
+    /**
+     * Same check as {@link #askUserAuthorizationByBucketOwner(AuthenticatedUser, String)}, but against groups
+     * already resolved by the caller, e.g. a hash set reused to check many buckets.
+     */
+    public boolean askUserGroupsAuthorizationByBucketOwner(Collection<String> userGroups, String bucketOwnerOrGroup) {
         if (bucketOwnerOrGroup == null || bucketOwnerOrGroup.equals(BucketService.DEFAULT_BUCKET_OWNER)) {
             return true;
         }
 
         String groupName = ownerGroupStringHelper.extractGroupFromBucketOwnerOrGroupString(bucketOwnerOrGroup);
-        return authenticatedUser.getGroups().contains(groupName);
+        return userGroups.contains(groupName);
     }
 }
@@ -0,0 +1,203 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.locks.Lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.Striped;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Archives of whole buckets kept on the local disk, named after the identifier and the change count of the bucket,
+ * see {@link BucketChangeCounter}. An archive is built on the first request after the bucket changed, and the
+ * archives of the previous versions of the bucket are then deleted. Archives of a bucket are built and opened under
+ * the same lock, so that an archive is not deleted before being opened.
+ *
+ * @author ActiveEon Team
+ */
+@Log4j2
+@Component
+public class BucketArchiveCache {
+
+    private static final String ARCHIVE_EXTENSION = ".zip";
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private final boolean enabled;
+
+    private final Path directory;
+
+    private final Striped<Lock> locks = Striped.lock(64);
+
+    /**
+     * Writes the archive of a bucket.
+     */
+    @FunctionalInterface
+    public interface ArchiveWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    @Autowired
+    public BucketArchiveCache(@Value("${pa.catalog.bucket.archive.cache.enabled:true}") boolean enabled,
+            @Value("${pa.catalog.bucket.archive.cache.directory:}") String directory) {
+        this(enabled, Paths.get(directory.isEmpty() ? getDefaultDirectory() : directory));
+    }
+
+    public BucketArchiveCache(boolean enabled, Path directory) {
+        this.enabled = enabled;
+        this.directory = directory.toAbsolutePath();
+        if (enabled) {
+            try {
+                Files.createDirectories(this.directory);
+                deleteFiles("*" + TEMPORARY_EXTENSION, null);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create the bucket archive directory " + directory, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the ETag of the archive of the given version of a bucket
+     */
+    public static String getETag(Long bucketId, long changeCount) {
+        return "\"" + bucketId + "-" + changeCount + "\"";
+    }
+
+    /**
+     * @return the archive of the given version of the bucket, written with the given writer if it is not cached yet
+     */
+    public InputStream openArchive(Long bucketId, long changeCount, ArchiveWriter writer) throws IOException {
+        Path archive = directory.resolve(bucketId + "-" + changeCount + ARCHIVE_EXTENSION);
+        Lock lock = locks.get(bucketId);
+        lock.lock();
+        try {
+            if (!Files.exists(archive)) {
+                build(archive, writer);
+                deleteFiles(bucketId + "-*" + ARCHIVE_EXTENSION, archive);
+            }
+            return Files.newInputStream(archive);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the archives of a bucket, to be called when the bucket is deleted.
+     */
+    public void invalidate(Long bucketId) {
+        if (!enabled) {
+            return;
+        }
+        Lock lock = locks.get(bucketId);
+        lock.lock();
+        try {
+            deleteFiles(bucketId + "-*" + ARCHIVE_EXTENSION, null);
+        } catch (IOException e) {
+            log.warn("Cannot delete the archives of bucket {} from {}", bucketId, directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes all the archives, to be called when all the buckets are deleted.
+     */
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            deleteFiles("*" + ARCHIVE_EXTENSION, null);
+        } catch (IOException e) {
+            log.warn("Cannot delete the bucket archives of {}", directory, e);
+        }
+    }
+
+    private void build(Path archive, ArchiveWriter writer) throws IOException {
+        Path temporaryFile = Files.createTempFile(directory, archive.getFileName().toString(), TEMPORARY_EXTENSION);
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temporaryFile))) {
+                writer.write(outputStream);
+            }
+            try {
+                Files.move(temporaryFile, archive, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, archive, StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.debug("Bucket archive {} built", archive);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private void deleteFiles(String glob, Path kept) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : files) {
+                if (!file.equals(kept)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // still open on platforms which do not allow to delete open files
+                        log.debug("Cannot delete bucket archive {}", file, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String getDefaultDirectory() {
+        String proactiveHome = System.getProperty("proactive.home");
+
+        if (proactiveHome == null) {
+            return System.getProperty("java.io.tmpdir") + File.separator + "proactive" + File.separator + "catalog" +
+                   File.separator + "bucket-archives";
+        }
+
+        return proactiveHome + File.separator + "data" + File.separator + "catalog" + File.separator +
+               "bucket-archives";
+    }
+}
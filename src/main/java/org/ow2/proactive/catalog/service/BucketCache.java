@@ -0,0 +1,117 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.ow2.proactive.catalog.repository.entity.BucketEntity;
+import org.ow2.proactive.catalog.service.model.BucketIdentity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+
+/**
+ * Read-through cache of bucket name to bucket id and owner. Buckets are looked up by name by almost every
+ * endpoint while they rarely change, so this avoids a database round trip just to check that a bucket exists
+ * or who owns it.
+ *
+ * Unknown bucket names are not cached. Entries are invalidated by the bucket writes of {@link BucketService},
+ * once immediately and once more after the transaction completes, so that a value read concurrently before
+ * the commit does not survive it. The expiration delay bounds staleness for changes made by other means.
+ *
+ * @author ActiveEon Team
+ */
+@Component
+public class BucketCache {
+
+    private final Cache<String, BucketIdentity> bucketsByName;
+
+    @Autowired
+    public BucketCache(@Value("${pa.catalog.bucket.cache.size:10000}") long bucketCacheSize,
+            @Value("${pa.catalog.bucket.cache.ttl.seconds:300}") long bucketCacheTtlSeconds) {
+        this.bucketsByName = Caffeine.newBuilder()
+                                     .maximumSize(bucketCacheSize)
+                                     .expireAfterWrite(bucketCacheTtlSeconds, TimeUnit.SECONDS)
+                                     .recordStats()
+                                     .build();
+    }
+
+    /**
+     * @return the id and owner of the bucket with the given name, loaded with the given function on a cache miss,
+     * or empty if there is no such bucket
+     */
+    public Optional<BucketIdentity> getBucket(String bucketName, Function<String, BucketEntity> bucketLoader) {
+        if (bucketName == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(bucketsByName.get(bucketName, name -> toBucketIdentity(bucketLoader.apply(name))));
+    }
+
+    public void invalidate(String bucketName) {
+        bucketsByName.invalidate(bucketName);
+        afterTransactionCompletion(() -> bucketsByName.invalidate(bucketName));
+    }
+
+    public void invalidateAll() {
+        bucketsByName.invalidateAll();
+        afterTransactionCompletion(bucketsByName::invalidateAll);
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the bucket cache
+     */
+    public CacheStats getStats() {
+        return bucketsByName.stats();
+    }
+
+    private BucketIdentity toBucketIdentity(BucketEntity bucketEntity) {
+        if (bucketEntity == null) {
+            return null;
+        }
+        return new BucketIdentity(bucketEntity.getId(), bucketEntity.getBucketName(), bucketEntity.getOwner());
+    }
+
+    private void afterTransactionCompletion(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.ow2.proactive.catalog.repository.BucketRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+
+/**
+ * Counts the changes of the objects of each bucket, so that data derived from a whole bucket, such as its archive,
+ * can be identified by the bucket and its change count. The counter of a bucket is incremented once per
+ * transaction, just before it commits, whatever the number of objects it changes.
+ *
+ * @author ActiveEon Team
+ */
+@Component
+public class BucketChangeCounter {
+
+    @Autowired
+    private BucketRepository bucketRepository;
+
+    /**
+     * To be called when an object of the given bucket is added, revised, updated or deleted.
+     */
+    @SuppressWarnings("unchecked")
+    public void markChanged(Long bucketId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bucketRepository.incrementChangeCount(bucketId);
+            return;
+        }
+        Set<Long> changedBucketIds = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (changedBucketIds == null) {
+            Set<Long> bucketIds = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, bucketIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    bucketIds.forEach(bucketRepository::incrementChangeCount);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BucketChangeCounter.this);
+                }
+            });
+            changedBucketIds = bucketIds;
+        }
+        changedBucketIds.add(bucketId);
+    }
+
+    public long getChangeCount(Long bucketId) {
+        Long changeCount = bucketRepository.findChangeCount(bucketId);
+        return changeCount == null ? 0 : changeCount;
+    }
+}
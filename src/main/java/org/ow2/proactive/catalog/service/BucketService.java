@@ -29,8 +29,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ow2.proactive.catalog.dto.BucketMetadata;
@@ -41,10 +43,13 @@ import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
 import org.ow2.proactive.catalog.service.exception.BucketNameIsNotValidException;
 import org.ow2.proactive.catalog.service.exception.BucketNotFoundException;
 import org.ow2.proactive.catalog.service.exception.DeleteNonEmptyBucketException;
+import org.ow2.proactive.catalog.service.model.BucketIdentity;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
 import org.ow2.proactive.catalog.util.name.validator.BucketNameValidator;
 import org.ow2.proactive.microservices.common.exception.NotAuthenticatedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -75,6 +80,18 @@ public class BucketService {
     @Autowired
     CatalogObjectService catalogObjectService;
 
+    @Autowired
+    private RequestAccessContext requestAccessContext;
+
+    @Autowired
+    private BucketCache bucketCache;
+
+    @Autowired
+    private RawObjectCache rawObjectCache;
+
+    @Autowired
+    private BucketArchiveCache bucketArchiveCache;
+
     public BucketMetadata createBucket(String name) {
         return createBucket(name, DEFAULT_BUCKET_OWNER);
     }
@@ -87,6 +104,8 @@ public class BucketService {
         BucketEntity bucketEntity = new BucketEntity(name, owner);
 
         bucketEntity = bucketRepository.save(bucketEntity);
+        requestAccessContext.putBucket(bucketEntity);
+        bucketCache.invalidate(name);
         return new BucketMetadata(bucketEntity, 0);
     }
 
@@ -96,6 +115,7 @@ public class BucketService {
         bucketEntity.setOwner(owner);
 
         bucketEntity = bucketRepository.save(bucketEntity);
+        bucketCache.invalidate(bucketName);
 
         createRevisionForObjects(bucketName, COMMIT_MESSAGE_UPDATE_BUCKET);
 
@@ -110,8 +130,9 @@ public class BucketService {
     }
 
     public BucketMetadata getBucketMetadata(String bucketName) {
-        BucketEntity bucketEntity = findBucketByNameAndCheck(bucketName);
-        return new BucketMetadata(bucketEntity);
+        BucketIdentity bucket = bucketCache.getBucket(bucketName, this::findBucketInRequest)
+                                           .orElseThrow(() -> new BucketNotFoundException(bucketName));
+        return new BucketMetadata(bucket.getBucketName(), bucket.getOwner());
     }
 
     public List<BucketMetadata> listBuckets(List<String> owners, Optional<String> kind, Optional<String> contentType,
@@ -181,13 +202,99 @@ public class BucketService {
         return entities;
     }
 
+    /**
+     * Lists the buckets as {@link #listBuckets(String, Optional, Optional, Optional)}, by pages ordered by bucket name.
+     *
+     * @param after name of the last bucket of the previous page, if any
+     */
+    public KeysetPage<BucketMetadata> listBuckets(String ownerName, Optional<String> kind,
+            Optional<String> contentType, Optional<String> objectName, Optional<String> after, int limit) {
+        List<String> owners = StringUtils.isEmpty(ownerName) ? null : Collections.singletonList(ownerName);
+        return listBucketsPage(owners, kind, contentType, objectName, after, limit);
+    }
+
+    /**
+     * @param owners the owners of the listed buckets, null to list the buckets of all owners
+     */
+    private KeysetPage<BucketMetadata> listBucketsPage(List<String> owners, Optional<String> kind,
+            Optional<String> contentType, Optional<String> objectName, Optional<String> after, int limit) {
+        Pageable pageable = KeysetPage.pageRequest(limit);
+        String afterBucketName = after.orElse("");
+        List<BucketMetadata> entities;
+
+        if (kind.isPresent() || contentType.isPresent() || objectName.isPresent()) {
+            List<Object[]> bucketEntityWithContentCountList = owners == null ? bucketRepository.findContainingKindAndContentTypeAndObjectNameAfterBucketName(kind.orElse(""),
+                                                                                                                                                            contentType.orElse(""),
+                                                                                                                                                            objectName.orElse(""),
+                                                                                                                                                            afterBucketName,
+                                                                                                                                                            pageable)
+                                                                             : bucketRepository.findByOwnerIsInContainingKindAndContentTypeAndObjectNameAfterBucketName(owners,
+                                                                                                                                                                        kind.orElse(""),
+                                                                                                                                                                        contentType.orElse(""),
+                                                                                                                                                                        objectName.orElse(""),
+                                                                                                                                                                        afterBucketName,
+                                                                                                                                                                        pageable);
+            entities = generateBucketMetadataListFromObject(bucketEntityWithContentCountList);
+        } else {
+            entities = generateBucketMetadataList(owners == null ? bucketRepository.findByBucketNameGreaterThanOrderByBucketNameAsc(afterBucketName,
+                                                                                                                                     pageable)
+                                                                 : bucketRepository.findByOwnerInAndBucketNameGreaterThanOrderByBucketNameAsc(owners,
+                                                                                                                                              afterBucketName,
+                                                                                                                                              pageable));
+        }
+        return KeysetPage.of(entities, limit, BucketMetadata::getName);
+    }
+
+    /**
+     * Passes the buckets listed by {@link #listBuckets(String, Optional, Optional, Optional)}, ordered by name, to the
+     * given consumer while they are read from the database.
+     */
+    @Transactional(readOnly = true)
+    public void streamBuckets(String ownerName, Optional<String> kind, Optional<String> contentType,
+            Optional<String> objectName, Consumer<BucketMetadata> consumer) {
+        List<String> owners = StringUtils.isEmpty(ownerName) ? null : Collections.singletonList(ownerName);
+        streamBucketsOfOwners(owners, kind, contentType, objectName, consumer);
+    }
+
+    /**
+     * @param owners the owners of the streamed buckets, null to stream the buckets of all owners
+     */
+    private void streamBucketsOfOwners(List<String> owners, Optional<String> kind, Optional<String> contentType,
+            Optional<String> objectName, Consumer<BucketMetadata> consumer) {
+        if (kind.isPresent() || contentType.isPresent() || objectName.isPresent()) {
+            // buckets filtered on their objects are counted in a single grouped query, as when they are listed
+            List<Object[]> bucketEntityWithContentCountList = owners == null ? bucketRepository.findContainingKindAndContentTypeAndObjectName(kind.orElse(""),
+                                                                                                                                            contentType.orElse(""),
+                                                                                                                                            objectName.orElse(""))
+                                                                             : bucketRepository.findByOwnerIsInContainingKindAndContentTypeAndObjectName(owners,
+                                                                                                                                                        kind.orElse(""),
+                                                                                                                                                        contentType.orElse(""),
+                                                                                                                                                        objectName.orElse(""));
+            generateBucketMetadataListFromObject(bucketEntityWithContentCountList).forEach(consumer);
+            return;
+        }
+
+        try (Stream<Object[]> rows = owners == null ? bucketRepository.streamBucketNamesOwnersAndObjectCounts()
+                                                    : bucketRepository.streamBucketNamesOwnersAndObjectCountsByOwnerIn(owners)) {
+            rows.map(row -> new BucketMetadata((String) row[0], (String) row[1], ((Long) row[2]).intValue()))
+                .forEach(consumer);
+        }
+    }
+
     public void cleanAllEmptyBuckets() {
         List<BucketEntity> emptyBucketsForUpdate = bucketRepository.findEmptyBucketsForUpdate();
         bucketRepository.deleteInBatch(emptyBucketsForUpdate);
+        requestAccessContext.evictAllBuckets();
+        bucketCache.invalidateAll();
+        emptyBucketsForUpdate.forEach(bucketEntity -> bucketArchiveCache.invalidate(bucketEntity.getId()));
     }
 
     public void cleanAll() {
         bucketRepository.deleteAll();
+        requestAccessContext.evictAllBuckets();
+        bucketCache.invalidateAll();
+        rawObjectCache.invalidateAll();
+        bucketArchiveCache.invalidateAll();
     }
 
     public BucketMetadata deleteEmptyBucket(String bucketName) {
@@ -201,17 +308,24 @@ public class BucketService {
             throw new DeleteNonEmptyBucketException(bucketName);
         }
         bucketRepository.delete(bucketEntity.getId());
+        requestAccessContext.evictBucket(bucketName);
+        bucketCache.invalidate(bucketName);
+        bucketArchiveCache.invalidate(bucketEntity.getId());
         return new BucketMetadata(bucketEntity);
     }
 
     private BucketEntity findBucketByNameAndCheck(String bucketName) {
-        BucketEntity bucketEntity = bucketRepository.findOneByBucketName(bucketName);
+        BucketEntity bucketEntity = findBucketInRequest(bucketName);
         if (bucketEntity == null) {
             throw new BucketNotFoundException(bucketName);
         }
         return bucketEntity;
     }
 
+    private BucketEntity findBucketInRequest(String bucketName) {
+        return requestAccessContext.getBucket(bucketName, bucketRepository::findOneByBucketName);
+    }
+
     public List<BucketMetadata> getBucketsByGroups(String ownerName, Optional<String> kind,
             Optional<String> contentType, Supplier<List<String>> authenticatedUserGroupsSupplier) {
         return getBucketsByGroups(ownerName, kind, contentType, Optional.empty(), authenticatedUserGroupsSupplier);
@@ -221,6 +335,42 @@ public class BucketService {
             Optional<String> contentType, Optional<String> objectName,
             Supplier<List<String>> authenticatedUserGroupsSupplier)
             throws NotAuthenticatedException, AccessDeniedException {
+        return listBuckets(getOwnerGroups(ownerName, authenticatedUserGroupsSupplier), kind, contentType, objectName);
+    }
+
+    /**
+     * Lists the buckets as {@link #getBucketsByGroups(String, Optional, Optional, Optional, Supplier)}, by pages
+     * ordered by bucket name.
+     *
+     * @param after name of the last bucket of the previous page, if any
+     */
+    public KeysetPage<BucketMetadata> getBucketsByGroups(String ownerName, Optional<String> kind,
+            Optional<String> contentType, Optional<String> objectName, Optional<String> after, int limit,
+            Supplier<List<String>> authenticatedUserGroupsSupplier) {
+        return listBucketsPage(getOwnerGroups(ownerName, authenticatedUserGroupsSupplier),
+                               kind,
+                               contentType,
+                               objectName,
+                               after,
+                               limit);
+    }
+
+    /**
+     * Passes the buckets listed by {@link #getBucketsByGroups(String, Optional, Optional, Optional, Supplier)},
+     * ordered by name, to the given consumer while they are read from the database.
+     */
+    @Transactional(readOnly = true)
+    public void streamBucketsByGroups(String ownerName, Optional<String> kind, Optional<String> contentType,
+            Optional<String> objectName, Supplier<List<String>> authenticatedUserGroupsSupplier,
+            Consumer<BucketMetadata> consumer) {
+        streamBucketsOfOwners(getOwnerGroups(ownerName, authenticatedUserGroupsSupplier),
+                              kind,
+                              contentType,
+                              objectName,
+                              consumer);
+    }
+
+    private List<String> getOwnerGroups(String ownerName, Supplier<List<String>> authenticatedUserGroupsSupplier) {
         List<String> groups;
 
         if (ownerName == null) {
@@ -229,7 +379,6 @@ public class BucketService {
         } else {
             groups = Collections.singletonList(ownerName);
         }
-
-        return listBuckets(groups, kind, contentType, objectName);
+        return groups;
     }
 }
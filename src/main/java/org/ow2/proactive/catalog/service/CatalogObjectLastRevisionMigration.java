@@ -0,0 +1,81 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.List;
+
+import org.ow2.proactive.catalog.repository.CatalogObjectRevisionRepository;
+import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Sets the latest revision of the catalog objects created before {@code CatalogObjectEntity.lastRevision} existed,
+ * from their last commit time. It runs once the context is refreshed, before the embedded server accepts requests,
+ * as objects without latest revision are not returned by the queries on last revisions.
+ *
+ * @author ActiveEon Team
+ */
+@Log4j2
+@Component
+public class CatalogObjectLastRevisionMigration {
+
+    private static final int MIGRATION_BATCH_SIZE = 100;
+
+    @Autowired
+    private CatalogObjectRevisionRepository catalogObjectRevisionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void migrateCatalogObjectsWithoutLastRevision() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int migratedCount = 0;
+        int batchCount;
+        do {
+            batchCount = transactionTemplate.execute(status -> {
+                List<CatalogObjectRevisionEntity> lastRevisions = catalogObjectRevisionRepository.findLastRevisionsNotReferencedByTheirObject(new PageRequest(0,
+                                                                                                                                                            MIGRATION_BATCH_SIZE));
+                lastRevisions.forEach(revision -> revision.getCatalogObject().setLastRevision(revision));
+                return lastRevisions.size();
+            });
+            migratedCount += batchCount;
+        } while (batchCount == MIGRATION_BATCH_SIZE);
+
+        if (migratedCount > 0) {
+            log.info("Latest revision set for {} existing catalog objects", migratedCount);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Bounded pool parsing and rewriting the contents of catalog objects, which is CPU bound and independent from one
+ * object to another. When the queue is full, tasks run in the submitting thread, which slows down the submitters
+ * instead of rejecting their tasks.
+ *
+ * @author ActiveEon Team
+ */
+@Log4j2
+@Component
+public class CatalogObjectParsingExecutor {
+
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Number of threads of the pool, the number of available processors when 0 or less.
+     */
+    @Value("${pa.catalog.parsing.threads:0}")
+    private int threadCount = 0;
+
+    @Value("${pa.catalog.parsing.queue.size:" + DEFAULT_QUEUE_SIZE + "}")
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Applies a function to each item in the pool.
+     *
+     * @return the results in the order of the items
+     * @throws RuntimeException the exception thrown by the function for the first item which failed, the other tasks
+     * being cancelled
+     */
+    public <T, R> List<R> map(List<T> items, Function<T, R> function) {
+        if (items.size() < 2) {
+            List<R> results = new ArrayList<>(items.size());
+            items.forEach(item -> results.add(function.apply(item)));
+            return results;
+        }
+
+        ThreadPoolExecutor pool = getExecutor();
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        try {
+            for (T item : items) {
+                futures.add(pool.submit(() -> function.apply(item)));
+            }
+            List<R> results = new ArrayList<>(items.size());
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing catalog objects", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * @return the number of threads of the pool
+     */
+    public int getThreadCount() {
+        return threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            int poolSize = getThreadCount();
+            executor = new ThreadPoolExecutor(poolSize,
+                                              poolSize,
+                                              KEEP_ALIVE_SECONDS,
+                                              TimeUnit.SECONDS,
+                                              new ArrayBlockingQueue<>(queueSize),
+                                              new ParsingThreadFactory(),
+                                              new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            log.debug("Catalog object parsing pool created with {} threads", poolSize);
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private static class ParsingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "catalog-parsing-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -27,27 +27,39 @@ package org.ow2.proactive.catalog.service;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.tika.detect.Detector;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.AutoDetectParser;
 import org.ow2.proactive.catalog.dto.CatalogObjectDependencies;
+import org.ow2.proactive.catalog.dto.CatalogObjectImportResult;
 import org.ow2.proactive.catalog.dto.CatalogObjectMetadata;
 import org.ow2.proactive.catalog.dto.CatalogObjectNameReference;
 import org.ow2.proactive.catalog.dto.CatalogRawObject;
@@ -67,10 +79,18 @@ import org.ow2.proactive.catalog.service.exception.KindOrContentTypeIsNotValidEx
 import org.ow2.proactive.catalog.service.exception.RevisionNotFoundException;
 import org.ow2.proactive.catalog.service.exception.UnprocessableEntityException;
 import org.ow2.proactive.catalog.service.exception.WrongParametersException;
+import org.ow2.proactive.catalog.service.model.BucketArchive;
+import org.ow2.proactive.catalog.service.model.BucketIdentity;
+import org.ow2.proactive.catalog.service.model.CatalogObjectUpload;
 import org.ow2.proactive.catalog.service.model.GenericInfoBucketData;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
+import org.ow2.proactive.catalog.service.model.PreparedRawObject;
+import org.ow2.proactive.catalog.service.model.RevisionArchiveEntry;
+import org.ow2.proactive.catalog.service.model.RevisionValidators;
 import org.ow2.proactive.catalog.util.ArchiveManagerHelper;
 import org.ow2.proactive.catalog.util.ArchiveManagerHelper.FileNameAndContent;
-import org.ow2.proactive.catalog.util.ArchiveManagerHelper.ZipArchiveContent;
+import org.ow2.proactive.catalog.util.ArchiveManagerHelper.StreamedZipArchive;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
 import org.ow2.proactive.catalog.util.RevisionCommitMessageBuilder;
 import org.ow2.proactive.catalog.util.SeparatorUtility;
 import org.ow2.proactive.catalog.util.name.validator.KindAndContentTypeValidator;
@@ -78,11 +98,14 @@ import org.ow2.proactive.catalog.util.parser.WorkflowParser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 import lombok.extern.log4j.Log4j2;
 
@@ -124,12 +147,46 @@ public class CatalogObjectService {
     @Autowired
     private SeparatorUtility separatorUtility;
 
+    @Autowired
+    private RequestAccessContext requestAccessContext;
+
+    @Autowired
+    private BucketCache bucketCache;
+
+    @Autowired
+    private RawObjectStorageService rawObjectStorageService;
+
+    @Autowired
+    private CatalogObjectParsingExecutor catalogObjectParsingExecutor;
+
+    @Autowired
+    private PreparedRawObjectCache preparedRawObjectCache;
+
+    @Autowired
+    private RawObjectCache rawObjectCache;
+
+    @Autowired
+    private BucketChangeCounter bucketChangeCounter;
+
+    @Autowired
+    private BucketArchiveCache bucketArchiveCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Value("${kind.separator}")
     protected String kindSeparator;
 
     @VisibleForTesting
     static final String KIND_NOT_FOUND = "N/A";
 
+    /**
+     * Maximum number of values bound to a single IN clause, Oracle rejecting more than 1000.
+     */
+    private static final int MAX_IN_CLAUSE_SIZE = 1000;
+
+    private static final int BUCKET_ARCHIVE_ATTEMPTS = 3;
+
     private AutoDetectParser mediaTypeFileParser = new AutoDetectParser();
 
     public CatalogObjectMetadata createCatalogObject(String bucketName, String name, String kind, String commitMessage,
@@ -145,39 +202,156 @@ public class CatalogObjectService {
                                         extension);
     }
 
-    public List<CatalogObjectMetadata> createCatalogObjects(String bucketName, String kind, String commitMessage,
-            String username, byte[] zipArchive) {
+    /**
+     * Imports the entries of a ZIP archive in a bucket, as new objects or as new revisions of the objects having the
+     * same name. Entries are read, parsed in parallel and persisted in batches of as many entries as parsing threads.
+     * For each batch, the existing objects are resolved with one query and the rows are written by a single flush, in
+     * JDBC batches, after which the persistence context is cleared so that at most one batch of contents is in memory.
+     *
+     * @param skipIfUnchanged whether entries having the same content as the last revision of their object are skipped
+     */
+    public List<CatalogObjectImportResult> createCatalogObjects(String bucketName, String kind, String commitMessage,
+            String username, File zipArchive, boolean skipIfUnchanged) {
 
-        List<FileNameAndContent> filesContainedInArchive = archiveManager.extractZIP(zipArchive);
+        if (!kindAndContentTypeValidator.isValid(kind)) {
+            throw new KindOrContentTypeIsNotValidException(kind, "kind");
+        }
+        Long bucketId = findBucketByNameAndCheck(bucketName).getId();
+
+        List<CatalogObjectImportResult> results = new ArrayList<>();
+        archiveManager.extractZIPFile(zipArchive, catalogObjectParsingExecutor.getThreadCount(), files -> {
+            List<CatalogObjectUpload> uploads = files.stream()
+                                                     .map(file -> new CatalogObjectUpload(file.getName(),
+                                                                                          file.getFileNameWithExtension(),
+                                                                                          kind,
+                                                                                          null,
+                                                                                          commitMessage,
+                                                                                          file.getContent()))
+                                                     .collect(Collectors.toList());
+            // the entities of the previous batch were cleared, the bucket and the objects are resolved again
+            results.addAll(createOrReviseCatalogObjects(bucketRepository.findOne(bucketId),
+                                                        uploads,
+                                                        username,
+                                                        skipIfUnchanged));
+            catalogObjectRevisionRepository.flush();
+            entityManager.clear();
+        });
 
-        if (filesContainedInArchive.isEmpty()) {
+        if (results.isEmpty()) {
             throw new UnprocessableEntityException("Malformed archive");
         }
-        BucketEntity bucketEntity = findBucketByNameAndCheck(bucketName);
+        return results;
+    }
 
-        return filesContainedInArchive.stream().map(file -> {
-            String objectName = file.getName();
-            CatalogObjectEntity catalogObject = catalogObjectRepository.findOne(new CatalogObjectEntity.CatalogObjectEntityKey(bucketEntity.getId(),
-                                                                                                                               objectName));
+    /**
+     * Creates or revises several objects of a bucket at once, in the transaction of the call: an upload creates a new
+     * object, with its kind and Content-Type, unless an object of the same name exists, in which case it creates a new
+     * revision of it. As for archives, the rows of all the uploads are written by a single flush.
+     *
+     * @param skipIfUnchanged whether uploads having the same content as the last revision of their object are skipped
+     * @return the outcome of each upload, in the order of the uploads
+     */
+    public List<CatalogObjectImportResult> createOrReviseCatalogObjects(String bucketName,
+            List<CatalogObjectUpload> uploads, String username, boolean skipIfUnchanged) {
+        if (uploads.isEmpty()) {
+            throw new WrongParametersException("No catalog object to upload");
+        }
+        return createOrReviseCatalogObjects(findBucketByNameAndCheck(bucketName), uploads, username, skipIfUnchanged);
+    }
+
+    /**
+     * The existing objects are resolved with one query and nothing is queried per upload, so that the rows of all the
+     * uploads are written by a single flush, in JDBC batches.
+     */
+    private List<CatalogObjectImportResult> createOrReviseCatalogObjects(BucketEntity bucketEntity,
+            List<CatalogObjectUpload> uploads, String username, boolean skipIfUnchanged) {
+
+        Map<String, CatalogObjectEntity> catalogObjectsByName = findCatalogObjectsByName(bucketEntity.getId(),
+                                                                                         uploads.stream()
+                                                                                                .map(CatalogObjectUpload::getName)
+                                                                                                .collect(Collectors.toSet()));
+
+        // Parsing and rewriting the uploads is CPU bound and done in parallel, only their persistence being serialized
+        GenericInfoBucketData genericInfoBucketData = createGenericInfoBucketData(bucketEntity);
+        List<PreparedRawObject> preparedRawObjects = catalogObjectParsingExecutor.map(uploads,
+                                                                                      upload -> prepareRawObject(kindOfUpload(catalogObjectsByName,
+                                                                                                                              upload),
+                                                                                                                 genericInfoBucketData,
+                                                                                                                 Collections.emptyList(),
+                                                                                                                 upload.getContent()));
+
+        List<CatalogObjectImportResult> results = new ArrayList<>(uploads.size());
+        for (int index = 0; index < uploads.size(); index++) {
+            CatalogObjectUpload upload = uploads.get(index);
+            CatalogObjectEntity catalogObject = catalogObjectsByName.get(upload.getName());
+            CatalogObjectImportResult.Status status = CatalogObjectImportResult.Status.REVISED;
             if (catalogObject == null) {
-                String contentTypeOfFile = getFileMimeType(file);
-                return this.createCatalogObject(bucketName,
-                                                objectName,
-                                                kind,
-                                                commitMessage,
-                                                username,
-                                                contentTypeOfFile,
-                                                Collections.emptyList(),
-                                                file.getContent(),
-                                                FilenameUtils.getExtension(file.getFileNameWithExtension()));
-            } else {
-                return this.createCatalogObjectRevision(bucketName,
-                                                        objectName,
-                                                        commitMessage,
-                                                        username,
-                                                        file.getContent());
+                if (!kindAndContentTypeValidator.isValid(upload.getKind())) {
+                    throw new KindOrContentTypeIsNotValidException(upload.getKind(), "kind");
+                }
+                String contentType = upload.getContentType() != null ? upload.getContentType()
+                                                                     : getFileMimeType(upload.getFileName(),
+                                                                                       upload.getContent());
+                if (!kindAndContentTypeValidator.isValid(contentType)) {
+                    throw new KindOrContentTypeIsNotValidException(contentType, "Content-Type");
+                }
+                catalogObject = CatalogObjectEntity.builder()
+                                                   .bucket(bucketEntity)
+                                                   .contentType(contentType)
+                                                   .kind(upload.getKind())
+                                                   .extension(FilenameUtils.getExtension(upload.getFileName()))
+                                                   .id(new CatalogObjectEntity.CatalogObjectEntityKey(bucketEntity.getId(),
+                                                                                                      upload.getName()))
+                                                   .build();
+                bucketEntity.getCatalogObjects().add(catalogObject);
+                catalogObjectsByName.put(upload.getName(), catalogObject);
+                status = CatalogObjectImportResult.Status.CREATED;
+            } else if (skipIfUnchanged) {
+                CatalogObjectRevisionEntity lastRevision = findUnchangedLastRevision(catalogObject,
+                                                                                     preparedRawObjects.get(index));
+                if (lastRevision != null) {
+                    results.add(new CatalogObjectImportResult(upload.getFileName(),
+                                                              CatalogObjectImportResult.Status.UNCHANGED,
+                                                              new CatalogObjectMetadata(lastRevision)));
+                    continue;
+                }
             }
-        }).collect(Collectors.toList());
+            CatalogObjectRevisionEntity revision = buildCatalogObjectRevisionEntity(upload.getCommitMessage(),
+                                                                                    username,
+                                                                                    preparedRawObjects.get(index),
+                                                                                    catalogObject);
+            results.add(new CatalogObjectImportResult(upload.getFileName(), status, new CatalogObjectMetadata(revision)));
+        }
+        return results;
+    }
+
+    /**
+     * @return the last revision of the given object if its content is the same as the prepared one, null otherwise
+     */
+    private CatalogObjectRevisionEntity findUnchangedLastRevision(CatalogObjectEntity catalogObject,
+            PreparedRawObject preparedRawObject) {
+        CatalogObjectRevisionEntity lastRevision = catalogObject.getLastRevision();
+        if (lastRevision != null && lastRevision.getContentHash() != null &&
+            lastRevision.getContentHash().equals(ContentHashUtil.sha256Hex(preparedRawObject.getRawObject()))) {
+            return lastRevision;
+        }
+        return null;
+    }
+
+    private static String kindOfUpload(Map<String, CatalogObjectEntity> existingCatalogObjectsByName,
+            CatalogObjectUpload upload) {
+        CatalogObjectEntity existingCatalogObject = existingCatalogObjectsByName.get(upload.getName());
+        return existingCatalogObject == null ? upload.getKind() : existingCatalogObject.getKind();
+    }
+
+    private Map<String, CatalogObjectEntity> findCatalogObjectsByName(Long bucketId, Set<String> names) {
+        Map<String, CatalogObjectEntity> catalogObjectsByName = new HashMap<>();
+        for (List<String> namesChunk : Lists.partition(new ArrayList<>(names), MAX_IN_CLAUSE_SIZE)) {
+            catalogObjectRepository.findByBucketIdAndNameIn(bucketId, namesChunk)
+                                   .forEach(catalogObject -> catalogObjectsByName.put(catalogObject.getId().getName(),
+                                                                                      catalogObject));
+        }
+        return catalogObjectsByName;
     }
 
     public CatalogObjectMetadata createCatalogObject(String bucketName, String name, String kind, String commitMessage,
@@ -216,23 +390,23 @@ public class CatalogObjectService {
         return new CatalogObjectMetadata(result);
     }
 
-    private String getFileMimeType(FileNameAndContent file) {
-        InputStream is = new BufferedInputStream(new ByteArrayInputStream(file.getContent()));
+    private String getFileMimeType(String fileName, byte[] content) {
+        InputStream is = new BufferedInputStream(new ByteArrayInputStream(content));
         Detector detector = mediaTypeFileParser.getDetector();
         org.apache.tika.metadata.Metadata md = new org.apache.tika.metadata.Metadata();
-        md.set(org.apache.tika.metadata.Metadata.RESOURCE_NAME_KEY, file.getFileNameWithExtension());
+        md.set(org.apache.tika.metadata.Metadata.RESOURCE_NAME_KEY, fileName);
         MediaType mediaType = MediaType.OCTET_STREAM;
         try {
             mediaType = detector.detect(is, md);
         } catch (IOException e) {
-            log.warn("there is a problem of identifying mime type for the file from archive : " + file.getName(), e);
+            log.warn("there is a problem of identifying mime type for the file : " + fileName, e);
         }
         return mediaType.toString();
     }
 
     public CatalogObjectMetadata updateObjectMetadata(String bucketName, String name, Optional<String> kind,
             Optional<String> contentType) {
-        findBucketByNameAndCheck(bucketName);
+        findBucketIdentityByNameAndCheck(bucketName);
         CatalogObjectRevisionEntity catalogObjectRevisionEntity = findCatalogObjectByNameAndBucketAndCheck(bucketName,
                                                                                                            name);
         if (!kind.isPresent() && !contentType.isPresent()) {
@@ -248,6 +422,8 @@ public class CatalogObjectService {
         kind.ifPresent(catalogObjectEntity::setKind);
         contentType.ifPresent(catalogObjectEntity::setContentType);
         catalogObjectRepository.save(catalogObjectEntity);
+        rawObjectCache.invalidate(bucketName, name);
+        bucketChangeCounter.markChanged(catalogObjectEntity.getId().getBucketId());
         return new CatalogObjectMetadata(catalogObjectEntity);
     }
 
@@ -339,13 +515,22 @@ public class CatalogObjectService {
     }
 
     private BucketEntity findBucketByNameAndCheck(String bucketName) {
-        BucketEntity bucketEntity = bucketRepository.findOneByBucketName(bucketName);
+        BucketEntity bucketEntity = findBucketInRequest(bucketName);
         if (bucketEntity == null) {
             throw new BucketNotFoundException(bucketName);
         }
         return bucketEntity;
     }
 
+    private BucketIdentity findBucketIdentityByNameAndCheck(String bucketName) {
+        return bucketCache.getBucket(bucketName, this::findBucketInRequest)
+                          .orElseThrow(() -> new BucketNotFoundException(bucketName));
+    }
+
+    private BucketEntity findBucketInRequest(String bucketName) {
+        return requestAccessContext.getBucket(bucketName, bucketRepository::findOneByBucketName);
+    }
+
     private CatalogObjectRevisionEntity findCatalogObjectByNameAndBucketAndCheck(String bucketName, String name) {
         CatalogObjectRevisionEntity catalogObject = catalogObjectRevisionRepository.findDefaultCatalogObjectByNameInBucket(Collections.singletonList(bucketName),
                                                                                                                            name);
@@ -359,28 +544,72 @@ public class CatalogObjectService {
             final String username, final List<org.ow2.proactive.catalog.dto.Metadata> metadataList,
             final byte[] rawObject, final CatalogObjectEntity catalogObjectEntity) {
 
-        List<KeyValueLabelMetadataEntity> keyValueMetadataEntities = KeyValueLabelMetadataHelper.convertToEntity(metadataList);
+        GenericInfoBucketData genericInfoBucketData = createGenericInfoBucketData(catalogObjectEntity.getBucket());
 
-        if (keyValueMetadataEntities == null) {
+        if (genericInfoBucketData == null) {
             throw new NullPointerException("Cannot build catalog object!");
         }
 
-        List<KeyValueLabelMetadataEntity> keyValues = CollectionUtils.isEmpty(metadataList) ? keyValueLabelMetadataHelper.extractKeyValuesFromRaw(catalogObjectEntity.getKind(),
-                                                                                                                                                  rawObject)
-                                                                                            : keyValueMetadataEntities;
+        return buildCatalogObjectRevisionEntity(commitMessage,
+                                                username,
+                                                prepareRawObject(catalogObjectEntity.getKind(),
+                                                                 genericInfoBucketData,
+                                                                 metadataList,
+                                                                 rawObject),
+                                                catalogObjectEntity);
+    }
 
-        GenericInfoBucketData genericInfoBucketData = createGenericInfoBucketData(catalogObjectEntity.getBucket());
+    /**
+     * Parses the key values of a raw object, unless they are given, and replaces its generic information. It neither
+     * reads nor writes the database, so that it can run outside of the transaction thread. Contents which were
+     * already prepared with the same bucket data are taken from {@link PreparedRawObjectCache}.
+     */
+    private PreparedRawObject prepareRawObject(final String kind, final GenericInfoBucketData genericInfoBucketData,
+            final List<org.ow2.proactive.catalog.dto.Metadata> metadataList, final byte[] rawObject) {
+        return preparedRawObjectCache.get(kind,
+                                          genericInfoBucketData,
+                                          metadataList,
+                                          rawObject,
+                                          () -> parseRawObject(kind, genericInfoBucketData, metadataList, rawObject));
+    }
 
-        if (genericInfoBucketData == null) {
+    private PreparedRawObject parseRawObject(final String kind, final GenericInfoBucketData genericInfoBucketData,
+            final List<org.ow2.proactive.catalog.dto.Metadata> metadataList, final byte[] rawObject) {
+
+        List<KeyValueLabelMetadataEntity> keyValueMetadataEntities = KeyValueLabelMetadataHelper.convertToEntity(metadataList);
+
+        if (keyValueMetadataEntities == null) {
             throw new NullPointerException("Cannot build catalog object!");
         }
 
+        if (CollectionUtils.isEmpty(metadataList)) {
+            PreparedRawObject preparedWorkflow = keyValueLabelMetadataHelper.extractKeyValuesAndReplaceGenericInfoIfWorkflow(kind,
+                                                                                                                            rawObject,
+                                                                                                                            genericInfoBucketData);
+            if (preparedWorkflow != null) {
+                return preparedWorkflow;
+            }
+        }
+
+        List<KeyValueLabelMetadataEntity> keyValues = CollectionUtils.isEmpty(metadataList) ? keyValueLabelMetadataHelper.extractKeyValuesFromRaw(kind,
+                                                                                                                                                  rawObject)
+                                                                                            : keyValueMetadataEntities;
+
         List<KeyValueLabelMetadataEntity> genericInformationWithBucketDataList = keyValueLabelMetadataHelper.replaceMetadataRelatedGenericInfoAndKeepOthers(keyValues,
                                                                                                                                                             genericInfoBucketData);
         byte[] workflowWithReplacedGenericInfo = genericInformationAdder.addGenericInformationToRawObjectIfWorkflow(rawObject,
-                                                                                                                    catalogObjectEntity.getKind(),
+                                                                                                                    kind,
                                                                                                                     keyValueLabelMetadataHelper.toMap(keyValueLabelMetadataHelper.getOnlyGenericInformation(genericInformationWithBucketDataList)));
 
+        return new PreparedRawObject(genericInformationWithBucketDataList, workflowWithReplacedGenericInfo);
+    }
+
+    private CatalogObjectRevisionEntity buildCatalogObjectRevisionEntity(final String commitMessage,
+            final String username, final PreparedRawObject preparedRawObject,
+            final CatalogObjectEntity catalogObjectEntity) {
+
+        List<KeyValueLabelMetadataEntity> keyValues = preparedRawObject.getKeyValues();
+
         CatalogObjectRevisionEntity catalogObjectRevisionEntity = CatalogObjectRevisionEntity.builder()
                                                                                              .commitMessage(commitMessage)
                                                                                              .username(username)
@@ -388,14 +617,19 @@ public class CatalogObjectService {
                                                                                                                       .atZone(ZoneId.systemDefault())
                                                                                                                       .toInstant()
                                                                                                                       .toEpochMilli())
-                                                                                             .keyValueMetadataList(genericInformationWithBucketDataList)
-                                                                                             .rawObject(workflowWithReplacedGenericInfo)
+                                                                                             .keyValueMetadataList(keyValues)
                                                                                              .catalogObject(catalogObjectEntity)
                                                                                              .build();
+        rawObjectStorageService.setRawObject(catalogObjectRevisionEntity, preparedRawObject.getRawObject());
 
-        genericInformationWithBucketDataList.forEach(keyValue -> keyValue.setCatalogObjectRevision(catalogObjectRevisionEntity));
+        keyValues.forEach(keyValue -> keyValue.setCatalogObjectRevision(catalogObjectRevisionEntity));
 
         catalogObjectEntity.addRevision(catalogObjectRevisionEntity);
+        if (catalogObjectEntity.getBucket() != null) {
+            rawObjectCache.invalidateLastRevision(catalogObjectEntity.getBucket().getBucketName(),
+                                                  catalogObjectEntity.getId().getName());
+            bucketChangeCounter.markChanged(catalogObjectEntity.getBucket().getId());
+        }
 
         return catalogObjectRevisionRepository.save(catalogObjectRevisionEntity);
     }
@@ -408,10 +642,8 @@ public class CatalogObjectService {
     }
 
     public List<CatalogObjectMetadata> listCatalogObjects(List<String> bucketNames) {
-        bucketNames.forEach(this::findBucketByNameAndCheck);
-        List<CatalogObjectRevisionEntity> result = listCatalogObjectsEntities(bucketNames);
-
-        return buildMetadataWithLink(result);
+        bucketNames.forEach(this::findBucketIdentityByNameAndCheck);
+        return buildMetadataFromProjection(catalogObjectRevisionRepository.findDefaultCatalogObjectsMetadataInBucket(bucketNames));
     }
 
     public List<CatalogObjectRevisionEntity> listCatalogObjectsEntities(List<String> bucketNames) {
@@ -441,46 +673,233 @@ public class CatalogObjectService {
         return metadataList;
     }
 
-    private List<CatalogObjectMetadata> buildMetadataWithLink(List<CatalogObjectRevisionEntity> result) {
-        return result.stream().map(CatalogObjectMetadata::new).collect(Collectors.toList());
+    /**
+     * Lists the catalog objects of a bucket as {@link #listCatalogObjects(List, Optional, Optional, Optional)}, by
+     * pages ordered by object name.
+     *
+     * @param after name of the last object of the previous page, if any
+     */
+    public KeysetPage<CatalogObjectMetadata> listCatalogObjects(String bucketName, Optional<String> kind,
+            Optional<String> contentType, Optional<String> objectNameFilter, Optional<String> after, int limit) {
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
+        Pageable pageable = KeysetPage.pageRequest(limit);
+        List<Object[]> result;
+
+        if (kind.isPresent() || contentType.isPresent() || objectNameFilter.isPresent()) {
+            result = catalogObjectRevisionRepository.findDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucketAfterName(bucket.getId(),
+                                                                                                                                          kind.orElse(""),
+                                                                                                                                          contentType.orElse(""),
+                                                                                                                                          objectNameFilter.orElse(""),
+                                                                                                                                          after.orElse(""),
+                                                                                                                                          pageable);
+        } else {
+            result = catalogObjectRevisionRepository.findDefaultCatalogObjectsMetadataInBucketAfterName(bucket.getId(),
+                                                                                                       after.orElse(""),
+                                                                                                       pageable);
+        }
+        return KeysetPage.of(buildMetadataFromProjection(result), limit, CatalogObjectMetadata::getName);
+    }
+
+    /**
+     * Passes the catalog objects of a bucket, as listed by {@link #listCatalogObjects(List, Optional, Optional, Optional)}
+     * but ordered by name, to the given consumer while they are read from the database. Their key/value metadata are
+     * fetched by chunks of objects, so that a single chunk is held in memory.
+     */
+    @Transactional(readOnly = true)
+    public void streamCatalogObjects(String bucketName, Optional<String> kind, Optional<String> contentType,
+            Optional<String> objectNameFilter, Consumer<CatalogObjectMetadata> consumer) {
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
+
+        try (Stream<Object[]> rows = streamDefaultCatalogObjectsMetadata(bucket.getId(),
+                                                                      kind,
+                                                                      contentType,
+                                                                      objectNameFilter)) {
+            Iterators.partition(rows.iterator(), MAX_IN_CLAUSE_SIZE)
+                     .forEachRemaining(chunk -> buildMetadataFromProjection(chunk).forEach(consumer));
+        }
+    }
+
+    private Stream<Object[]> streamDefaultCatalogObjectsMetadata(Long bucketId, Optional<String> kind,
+            Optional<String> contentType, Optional<String> objectNameFilter) {
+        if (kind.isPresent() || contentType.isPresent() || objectNameFilter.isPresent()) {
+            return catalogObjectRevisionRepository.streamDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucket(bucketId,
+                                                                                                                                 kind.orElse(""),
+                                                                                                                                 contentType.orElse(""),
+                                                                                                                                 objectNameFilter.orElse(""));
+        }
+        return catalogObjectRevisionRepository.streamDefaultCatalogObjectsMetadataInBucket(bucketId);
+    }
+
+    /**
+     * Builds the metadata of catalog objects from the columns selected by
+     * {@link CatalogObjectRevisionRepository#findDefaultCatalogObjectsMetadataInBucket(List)}, fetching the key/value
+     * metadata of all the revisions at once, so that neither the raw objects nor the revision entities are loaded.
+     */
+    private List<CatalogObjectMetadata> buildMetadataFromProjection(List<Object[]> revisionsColumns) {
+        List<Long> revisionIds = revisionsColumns.stream()
+                                                 .map(columns -> (Long) columns[0])
+                                                 .collect(Collectors.toList());
+        Map<Long, List<Metadata>> keyValueMetadataByRevision = findKeyValueMetadataOfRevisions(revisionIds);
+
+        return revisionsColumns.stream()
+                               .map(columns -> new CatalogObjectMetadata((String) columns[1],
+                                                                         (String) columns[2],
+                                                                         (String) columns[3],
+                                                                         (String) columns[4],
+                                                                         (Long) columns[6],
+                                                                         (String) columns[7],
+                                                                         (String) columns[8],
+                                                                         keyValueMetadataByRevision.get(columns[0]),
+                                                                         (String) columns[5]))
+                               .collect(Collectors.toList());
+    }
+
+    private Map<Long, List<Metadata>> findKeyValueMetadataOfRevisions(List<Long> revisionIds) {
+        Map<Long, List<Metadata>> keyValueMetadataByRevision = new HashMap<>();
+        Lists.partition(revisionIds, MAX_IN_CLAUSE_SIZE)
+             .forEach(revisionIdsChunk -> catalogObjectRevisionRepository.findKeyValueMetadataOfRevisions(revisionIdsChunk)
+                                                                          .forEach(columns -> keyValueMetadataByRevision.computeIfAbsent((Long) columns[0],
+                                                                                                                                         revisionId -> new ArrayList<>())
+                                                                                                                        .add(new Metadata((String) columns[1],
+                                                                                                                                          (String) columns[2],
+                                                                                                                                          (String) columns[3]))));
+        return keyValueMetadataByRevision;
     }
 
     // find catalog objects by kind and Content-Type and objectName
     public List<CatalogObjectMetadata> listCatalogObjectsByKindAndContentTypeAndObjectName(List<String> bucketNames,
             String kind, String contentType, String objectName) {
-        bucketNames.forEach(this::findBucketByNameAndCheck);
-        List<CatalogObjectRevisionEntity> result = catalogObjectRevisionRepository.findDefaultCatalogObjectsOfKindAndContentTypeAndObjectNameInBucket(bucketNames,
-                                                                                                                                                      kind,
-                                                                                                                                                      contentType,
-                                                                                                                                                      objectName);
-        return buildMetadataWithLink(result);
+        bucketNames.forEach(this::findBucketIdentityByNameAndCheck);
+        List<Object[]> result = catalogObjectRevisionRepository.findDefaultCatalogObjectsMetadataOfKindAndContentTypeAndObjectNameInBucket(bucketNames,
+                                                                                                                                            kind,
+                                                                                                                                            contentType,
+                                                                                                                                            objectName);
+        return buildMetadataFromProjection(result);
     }
 
-    public ZipArchiveContent getCatalogObjectsAsZipArchive(String bucketName, List<String> catalogObjectsNames) {
-        List<CatalogObjectRevisionEntity> revisions = getCatalogObjects(bucketName, catalogObjectsNames);
+    /**
+     * Opens the cached archive of the whole bucket when the given names are those of all the objects of the bucket.
+     * The change count of the bucket is read once, and is read again after the names and after the entries of the
+     * archive are listed, so that the archive always matches its ETag. When the bucket keeps changing, the archive
+     * is given up and the objects are to be archived as any selection.
+     *
+     * @return the archive and its ETag, empty when the names are not those of all the objects of the bucket
+     */
+    public Optional<BucketArchive> openBucketArchive(String bucketName, List<String> catalogObjectsNames)
+            throws IOException {
+        if (!bucketArchiveCache.isEnabled()) {
+            return Optional.empty();
+        }
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
+        for (int attempt = 0; attempt < BUCKET_ARCHIVE_ATTEMPTS; attempt++) {
+            long changeCount = bucketChangeCounter.getChangeCount(bucket.getId());
+            Set<String> names = catalogObjectRepository.findNamesByBucketId(bucket.getId());
+            if (names.isEmpty() || !names.equals(new HashSet<>(catalogObjectsNames))) {
+                return Optional.empty();
+            }
+            if (bucketChangeCounter.getChangeCount(bucket.getId()) != changeCount) {
+                continue;
+            }
+            try {
+                InputStream content = bucketArchiveCache.openArchive(bucket.getId(),
+                                                                     changeCount,
+                                                                     outputStream -> writeBucketArchive(bucket.getId(),
+                                                                                                        changeCount,
+                                                                                                        outputStream));
+                return Optional.of(new BucketArchive(BucketArchiveCache.getETag(bucket.getId(), changeCount),
+                                                     content));
+            } catch (BucketChangedException e) {
+                log.debug("Bucket {} changed while its archive was built", bucketName);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Writes the archive of the given version of a bucket, failing with {@link BucketChangedException} when the
+     * objects of the bucket are no longer those of this version.
+     */
+    private void writeBucketArchive(Long bucketId, long changeCount, OutputStream outputStream) throws IOException {
+        List<RevisionArchiveEntry> revisions = findCatalogObjectsArchiveEntries(bucketId);
+        if (bucketChangeCounter.getChangeCount(bucketId) != changeCount) {
+            throw new BucketChangedException();
+        }
+        archiveManager.writeZIP(revisions, revision -> {
+            byte[] rawObject = loadRawObject(revision);
+            if (rawObject == null) {
+                // deleted since the entries were listed
+                throw new BucketChangedException();
+            }
+            return rawObject;
+        }, outputStream);
+    }
+
+    /**
+     * @return the archive of the given objects of a bucket, their contents being loaded while it is written
+     */
+    public StreamedZipArchive getCatalogObjectsAsZipArchive(String bucketName, List<String> catalogObjectsNames) {
+        List<RevisionArchiveEntry> revisions = getCatalogObjectsArchiveEntries(bucketName, catalogObjectsNames);
 
-        return archiveManager.compressZIP(revisions);
+        return archiveManager.streamZIP(revisions, this::loadRawObject);
     }
 
+    /**
+     * @return the metadata of the given objects of a bucket, in the order of the given names, skipping unknown names
+     */
     public List<CatalogObjectMetadata> listSelectedCatalogObjects(String bucketName, List<String> catalogObjectsNames) {
-        List<CatalogObjectRevisionEntity> result = getCatalogObjects(bucketName, catalogObjectsNames);
-        return buildMetadataWithLink(result);
+        findBucketIdentityByNameAndCheck(bucketName);
+        List<Object[]> revisionsColumns = new ArrayList<>(catalogObjectsNames.size());
+        Lists.partition(new ArrayList<>(new LinkedHashSet<>(catalogObjectsNames)), MAX_IN_CLAUSE_SIZE)
+             .forEach(namesChunk -> revisionsColumns.addAll(catalogObjectRevisionRepository.findDefaultCatalogObjectsMetadataByNamesInBucket(bucketName,
+                                                                                                                                             namesChunk)));
+        Map<String, Object[]> revisionColumnsByName = revisionsColumns.stream()
+                                                                      .collect(Collectors.toMap(columns -> (String) columns[2],
+                                                                                                columns -> columns));
+        return buildMetadataFromProjection(catalogObjectsNames.stream()
+                                                              .map(revisionColumnsByName::get)
+                                                              .filter(Objects::nonNull)
+                                                              .collect(Collectors.toList()));
     }
 
-    private List<CatalogObjectRevisionEntity> getCatalogObjects(String bucketName, List<String> catalogObjectsNames) {
-        findBucketByNameAndCheck(bucketName);
-        List<CatalogObjectRevisionEntity> revisions = catalogObjectsNames.stream()
-                                                                         .map(name -> catalogObjectRevisionRepository.findDefaultCatalogObjectByNameInBucket(Collections.singletonList(bucketName),
-                                                                                                                                                             name))
-                                                                         .collect(Collectors.toList());
-        return revisions;
+    /**
+     * @return the last revisions of the given objects of a bucket, in the order of the given names, null for unknown
+     * names, read without their content
+     */
+    private List<RevisionArchiveEntry> getCatalogObjectsArchiveEntries(String bucketName,
+            List<String> catalogObjectsNames) {
+        findBucketIdentityByNameAndCheck(bucketName);
+        Map<String, RevisionArchiveEntry> revisionsByName = new HashMap<>();
+        Lists.partition(new ArrayList<>(new LinkedHashSet<>(catalogObjectsNames)), MAX_IN_CLAUSE_SIZE)
+             .forEach(namesChunk -> catalogObjectRevisionRepository.findDefaultCatalogObjectsArchiveEntriesByNamesInBucket(bucketName,
+                                                                                                                            namesChunk)
+                                                                   .stream()
+                                                                   .map(RevisionArchiveEntry::new)
+                                                                   .forEach(revision -> revisionsByName.put(revision.getName(),
+                                                                                                            revision)));
+        return catalogObjectsNames.stream().map(revisionsByName::get).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the last revisions of all the objects of a bucket, read without their content
+     */
+    private List<RevisionArchiveEntry> findCatalogObjectsArchiveEntries(Long bucketId) {
+        return catalogObjectRevisionRepository.findDefaultCatalogObjectsArchiveEntriesInBucket(bucketId)
+                                              .stream()
+                                              .map(RevisionArchiveEntry::new)
+                                              .collect(Collectors.toList());
+    }
+
+    private byte[] loadRawObject(RevisionArchiveEntry revision) {
+        return rawObjectStorageService.getRawObject(revision.getRevisionId(), revision.getContentHash());
     }
 
     public CatalogObjectMetadata delete(String bucketName, String name) throws CatalogObjectNotFoundException {
-        BucketEntity bucketEntity = findBucketByNameAndCheck(bucketName);
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
         CatalogObjectMetadata catalogObjectMetadata = getCatalogObjectMetadata(bucketName, name);
         try {
-            catalogObjectRepository.delete(new CatalogObjectEntity.CatalogObjectEntityKey(bucketEntity.getId(), name));
+            catalogObjectRepository.delete(new CatalogObjectEntity.CatalogObjectEntityKey(bucket.getId(), name));
+            rawObjectCache.invalidate(bucketName, name);
+            bucketChangeCounter.markChanged(bucket.getId());
         } catch (EmptyResultDataAccessException emptyResultDataAccessException) {
             log.warn("CatalogObject {} does not exist in bucket {}", name, bucketName);
             throw new CatalogObjectNotFoundException(bucketName, name);
@@ -492,8 +911,23 @@ public class CatalogObjectService {
         return new CatalogObjectMetadata(findCatalogObjectByNameAndBucketAndCheck(bucketName, name));
     }
 
+    /**
+     * @return the validators of the last revision of the object, read without its content
+     */
+    public RevisionValidators getCatalogObjectValidators(String bucketName, String name) {
+        findBucketIdentityByNameAndCheck(bucketName);
+        RevisionValidators validators = catalogObjectRevisionRepository.findLastRevisionValidators(bucketName, name);
+        if (validators == null) {
+            throw new CatalogObjectNotFoundException(bucketName, name);
+        }
+        return validators;
+    }
+
     public CatalogRawObject getCatalogRawObject(String bucketName, String name) {
-        return new CatalogRawObject(findCatalogObjectByNameAndBucketAndCheck(bucketName, name));
+        return rawObjectCache.getLastRevision(bucketName, name, () -> {
+            CatalogObjectRevisionEntity revisionEntity = findCatalogObjectByNameAndBucketAndCheck(bucketName, name);
+            return toCatalogRawObject(revisionEntity);
+        });
     }
 
     /**
@@ -513,8 +947,8 @@ public class CatalogObjectService {
     public CatalogObjectMetadata createCatalogObjectRevision(String bucketName, String name, String commitMessage,
             String username, List<Metadata> metadataListParsed, byte[] rawObject) {
 
-        BucketEntity bucketEntity = findBucketByNameAndCheck(bucketName);
-        CatalogObjectEntity catalogObject = catalogObjectRepository.findOne(new CatalogObjectEntity.CatalogObjectEntityKey(bucketEntity.getId(),
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
+        CatalogObjectEntity catalogObject = catalogObjectRepository.findOne(new CatalogObjectEntity.CatalogObjectEntityKey(bucket.getId(),
                                                                                                                            name));
 
         if (catalogObject == null) {
@@ -530,6 +964,51 @@ public class CatalogObjectService {
         return new CatalogObjectMetadata(revisionEntity);
     }
 
+    /**
+     * Creates a new revision of an object, unless asked to skip it when the content is the same as the one of its
+     * last revision, which is then returned with the {@link CatalogObjectImportResult.Status#UNCHANGED} status.
+     * Contents are compared once their generic information is replaced, using the digest stored in the revision.
+     */
+    public CatalogObjectImportResult createCatalogObjectRevision(String bucketName, String name, String commitMessage,
+            String username, byte[] rawObject, boolean skipIfUnchanged) {
+        if (!skipIfUnchanged) {
+            return new CatalogObjectImportResult(null,
+                                                 CatalogObjectImportResult.Status.REVISED,
+                                                 createCatalogObjectRevision(bucketName,
+                                                                             name,
+                                                                             commitMessage,
+                                                                             username,
+                                                                             rawObject));
+        }
+
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
+        CatalogObjectEntity catalogObject = catalogObjectRepository.findOne(new CatalogObjectEntity.CatalogObjectEntityKey(bucket.getId(),
+                                                                                                                           name));
+
+        if (catalogObject == null) {
+            throw new CatalogObjectNotFoundException(bucketName, name);
+        }
+
+        PreparedRawObject preparedRawObject = prepareRawObject(catalogObject.getKind(),
+                                                               createGenericInfoBucketData(catalogObject.getBucket()),
+                                                               Collections.emptyList(),
+                                                               rawObject);
+        CatalogObjectRevisionEntity lastRevision = findUnchangedLastRevision(catalogObject, preparedRawObject);
+        if (lastRevision != null) {
+            return new CatalogObjectImportResult(null,
+                                                 CatalogObjectImportResult.Status.UNCHANGED,
+                                                 new CatalogObjectMetadata(lastRevision));
+        }
+
+        CatalogObjectRevisionEntity revisionEntity = buildCatalogObjectRevisionEntity(commitMessage,
+                                                                                      username,
+                                                                                      preparedRawObject,
+                                                                                      catalogObject);
+        return new CatalogObjectImportResult(null,
+                                             CatalogObjectImportResult.Status.REVISED,
+                                             new CatalogObjectMetadata(revisionEntity));
+    }
+
     public CatalogObjectMetadata createCatalogObjectRevision(CatalogObjectRevisionEntity catalogObjectRevision,
             String commitMessage) {
         return createCatalogObjectRevision(catalogObjectRevision.getCatalogObject().getBucket().getBucketName(),
@@ -537,18 +1016,38 @@ public class CatalogObjectService {
                                            commitMessage,
                                            catalogObjectRevision.getUsername(),
                                            keyValueLabelMetadataHelper.convertFromEntity(catalogObjectRevision.getKeyValueMetadataList()),
-                                           catalogObjectRevision.getRawObject());
+                                           rawObjectStorageService.getRawObject(catalogObjectRevision));
     }
 
     public List<CatalogObjectMetadata> listCatalogObjectRevisions(String bucketName, String name) {
-        BucketEntity bucketEntity = findBucketByNameAndCheck(bucketName);
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
         findCatalogObjectByNameAndBucketAndCheck(bucketName, name);
-        CatalogObjectEntity list = catalogObjectRepository.readCatalogObjectRevisionsById(new CatalogObjectEntity.CatalogObjectEntityKey(bucketEntity.getId(),
+        CatalogObjectEntity list = catalogObjectRepository.readCatalogObjectRevisionsById(new CatalogObjectEntity.CatalogObjectEntityKey(bucket.getId(),
                                                                                                                                          name));
 
         return list.getRevisions().stream().map(CatalogObjectMetadata::new).collect(Collectors.toList());
     }
 
+    /**
+     * Lists the revisions of a catalog object as {@link #listCatalogObjectRevisions(String, String)}, by pages from
+     * the most recent one.
+     *
+     * @param after commit time of the last revision of the previous page, if any
+     */
+    public KeysetPage<CatalogObjectMetadata> listCatalogObjectRevisions(String bucketName, String name,
+            Optional<Long> after, int limit) {
+        BucketIdentity bucket = findBucketIdentityByNameAndCheck(bucketName);
+        findCatalogObjectByNameAndBucketAndCheck(bucketName, name);
+        List<CatalogObjectRevisionEntity> revisions = catalogObjectRevisionRepository.findRevisionsCommittedBefore(bucket.getId(),
+                                                                                                                   name,
+                                                                                                                   after.orElse(Long.MAX_VALUE),
+                                                                                                                   KeysetPage.pageRequest(limit));
+
+        return KeysetPage.of(revisions.stream().map(CatalogObjectMetadata::new).collect(Collectors.toList()),
+                             limit,
+                             CatalogObjectMetadata::getCommitTimeRaw);
+    }
+
     public CatalogObjectMetadata getCatalogObjectRevision(String bucketName, String name, long commitTime)
             throws UnsupportedEncodingException {
         CatalogObjectRevisionEntity revisionEntity = getCatalogObjectRevisionEntityByCommitTime(bucketName,
@@ -558,14 +1057,35 @@ public class CatalogObjectService {
         return new CatalogObjectMetadata(revisionEntity);
     }
 
+    /**
+     * @return the validators of the revision, read without its content
+     */
+    public RevisionValidators getCatalogObjectRevisionValidators(String bucketName, String name, long commitTime) {
+        RevisionValidators validators = catalogObjectRevisionRepository.findRevisionValidators(bucketName,
+                                                                                             name,
+                                                                                             commitTime);
+        if (validators == null) {
+            throw new RevisionNotFoundException(bucketName, name, commitTime);
+        }
+        return validators;
+    }
+
     public CatalogRawObject getCatalogObjectRevisionRaw(String bucketName, String name, long commitTime)
             throws UnsupportedEncodingException {
-        CatalogObjectRevisionEntity revisionEntity = getCatalogObjectRevisionEntityByCommitTime(bucketName,
-                                                                                                name,
-                                                                                                commitTime);
+        return rawObjectCache.getRevision(bucketName, name, commitTime, () -> {
+            CatalogObjectRevisionEntity revisionEntity = getCatalogObjectRevisionEntityByCommitTime(bucketName,
+                                                                                                    name,
+                                                                                                    commitTime);
+            return toCatalogRawObject(revisionEntity);
+        });
 
-        return new CatalogRawObject(revisionEntity);
+    }
 
+    private CatalogRawObject toCatalogRawObject(CatalogObjectRevisionEntity revisionEntity) {
+        return rawObjectStorageService.getRawObjectFileToStream(revisionEntity)
+                                      .map(file -> new CatalogRawObject(revisionEntity, file))
+                                      .orElseGet(() -> new CatalogRawObject(revisionEntity,
+                                                                            rawObjectStorageService.getRawObject(revisionEntity)));
     }
 
     public CatalogObjectMetadata restore(String bucketName, String name, Long commitTime) {
@@ -583,7 +1103,7 @@ public class CatalogObjectService {
         CatalogObjectRevisionEntity restoredRevision = buildCatalogObjectRevisionEntity(restoreCommitMessage,
                                                                                         catalogObjectRevision.getUsername(),
                                                                                         keyValueLabelMetadataHelper.convertFromEntity(catalogObjectRevision.getKeyValueMetadataList()),
-                                                                                        catalogObjectRevision.getRawObject(),
+                                                                                        rawObjectStorageService.getRawObject(catalogObjectRevision),
                                                                                         catalogObjectRevision.getCatalogObject());
 
         return new CatalogObjectMetadata(restoredRevision);
@@ -626,16 +1146,16 @@ public class CatalogObjectService {
                                                                                                                                                                                                                 contentType.orElse("")));
 
         Map<String, List<CatalogObjectNameReference>> catalogObjectsGroupedByBucket = groupCatalogObjectsNameReferencePerBucket(catalogObjectsNameReferenceByKindAndContentType);
-        List<BucketEntity> buckets = bucketRepository.findAll();
-
-        return buckets.stream()
-                      .filter(bucketEntity -> restApiAccessService.isBucketAccessibleByUser(sessionIdRequired,
-                                                                                            sessionId,
-                                                                                            bucketEntity.getBucketName()))
-                      .map(bucketEntity -> catalogObjectsGroupedByBucket.get(bucketEntity.getBucketName()))
-                      .filter(Objects::nonNull)
-                      .flatMap(Collection::stream)
-                      .collect(Collectors.toList());
+        Predicate<String> isBucketOwnerAccessible = restApiAccessService.getBucketOwnerAccessPredicate(sessionIdRequired,
+                                                                                                       sessionId);
+
+        return bucketRepository.findAllBucketNamesAndOwners()
+                               .stream()
+                               .filter(bucketNameAndOwner -> catalogObjectsGroupedByBucket.containsKey(String.valueOf(bucketNameAndOwner[0])))
+                               .filter(bucketNameAndOwner -> isBucketOwnerAccessible.test(String.valueOf(bucketNameAndOwner[1])))
+                               .map(bucketNameAndOwner -> catalogObjectsGroupedByBucket.get(String.valueOf(bucketNameAndOwner[0])))
+                               .flatMap(Collection::stream)
+                               .collect(Collectors.toList());
     }
 
     private Map<String, List<CatalogObjectNameReference>>
@@ -666,4 +1186,9 @@ public class CatalogObjectService {
         return revisionEntity;
     }
 
+    /**
+     * The objects of a bucket changed while the archive of one of its versions was built.
+     */
+    private static class BucketChangedException extends RuntimeException {
+    }
 }
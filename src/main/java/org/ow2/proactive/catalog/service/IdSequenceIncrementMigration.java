@@ -0,0 +1,99 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Aligns the increment of the database sequences on the allocation size of the pooled-lo optimizer used by
+ * {@code CatalogObjectRevisionEntity} and {@code KeyValueLabelMetadataEntity}. Sequences created with an increment of
+ * 1 are not altered by the schema update, and Hibernate would then hand out identifiers already allocated to another
+ * pool. Databases emulating sequences with a table are left untouched, the increment being applied by Hibernate.
+ *
+ * @author ActiveEon Team
+ */
+@Log4j2
+@Component
+public class IdSequenceIncrementMigration {
+
+    /**
+     * Must match the {@code increment_size} of the generators of the entities.
+     */
+    static final int SEQUENCE_INCREMENT = 50;
+
+    static final List<String> POOLED_SEQUENCES = Arrays.asList("CATALOG_OBJECT_REVISION_SEQ",
+                                                               "METADATA_KEY_VALUE_SEQUENCE");
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ContextRefreshedEvent.class)
+    public void alignSequenceIncrements() {
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (!dialect.supportsSequences()) {
+            return;
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (String sequenceName : POOLED_SEQUENCES) {
+            try {
+                transactionTemplate.execute(status -> entityManager.createNativeQuery("ALTER SEQUENCE " + sequenceName +
+                                                                                      " INCREMENT BY " +
+                                                                                      SEQUENCE_INCREMENT)
+                                                                   .executeUpdate());
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Cannot set the increment of sequence " + sequenceName + " to " +
+                                                SEQUENCE_INCREMENT, e);
+            }
+        }
+        log.debug("Increment of sequences {} set to {}", POOLED_SEQUENCES, SEQUENCE_INCREMENT);
+    }
+}
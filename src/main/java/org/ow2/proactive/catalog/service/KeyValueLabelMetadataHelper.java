@@ -37,8 +37,10 @@ import java.util.stream.Collectors;
 import org.ow2.proactive.catalog.dto.Metadata;
 import org.ow2.proactive.catalog.repository.entity.KeyValueLabelMetadataEntity;
 import org.ow2.proactive.catalog.service.model.GenericInfoBucketData;
+import org.ow2.proactive.catalog.service.model.PreparedRawObject;
 import org.ow2.proactive.catalog.util.parser.AbstractCatalogObjectParser;
 import org.ow2.proactive.catalog.util.parser.DefaultCatalogObjectParser;
+import org.ow2.proactive.catalog.util.parser.ParsedWorkflow;
 import org.ow2.proactive.catalog.util.parser.WorkflowParser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -101,6 +103,28 @@ public class KeyValueLabelMetadataHelper {
 
     }
 
+    /**
+     * Parses a workflow once to both extract its key values and replace its generic information with the bucket data.
+     *
+     * @return the key values and the rewritten workflow, or null if the kind is not handled by the workflow parser
+     */
+    public PreparedRawObject extractKeyValuesAndReplaceGenericInfoIfWorkflow(String kind, byte[] rawObject,
+            GenericInfoBucketData genericInfoBucketData) {
+        AbstractCatalogObjectParser catalogObjectParser = parsers.stream()
+                                                                 .filter(parser -> parser.isMyKind(kind))
+                                                                 .findFirst()
+                                                                 .orElse(null);
+        if (!(catalogObjectParser instanceof WorkflowParser)) {
+            return null;
+        }
+        WorkflowParser workflowParser = (WorkflowParser) catalogObjectParser;
+        ParsedWorkflow parsedWorkflow = workflowParser.parseWorkflow(rawObject);
+        List<KeyValueLabelMetadataEntity> keyValues = replaceMetadataRelatedGenericInfoAndKeepOthers(workflowParser.getKeyValues(parsedWorkflow),
+                                                                                                     genericInfoBucketData);
+        return new PreparedRawObject(keyValues,
+                                     parsedWorkflow.replaceGenericInformation(toMap(getOnlyGenericInformation(keyValues))));
+    }
+
     public List<Metadata> convertFromEntity(List<KeyValueLabelMetadataEntity> source) {
         return source.stream().map(Metadata::new).collect(Collectors.toList());
     }
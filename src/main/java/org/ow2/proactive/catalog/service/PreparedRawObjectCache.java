@@ -0,0 +1,196 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.ow2.proactive.catalog.dto.Metadata;
+import org.ow2.proactive.catalog.repository.entity.KeyValueLabelMetadataEntity;
+import org.ow2.proactive.catalog.service.model.GenericInfoBucketData;
+import org.ow2.proactive.catalog.service.model.PreparedRawObject;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Memoizes the preparation of raw objects, i.e. the extraction of their key values and the replacement of their
+ * generic information. Restoring a revision, changing the owner of a bucket or uploading the same content again
+ * prepare contents which were already prepared, with the same bucket data.
+ *
+ * Entries are keyed by the kind, the SHA-256 digest of the raw object, the bucket data and the given metadata, and
+ * the cache is bounded by the number of bytes it holds. Cached key values are copied for every use, since they become
+ * part of the revision which is persisted.
+ *
+ * @author ActiveEon Team
+ */
+@Log4j2
+@Component
+public class PreparedRawObjectCache {
+
+    /**
+     * Estimated number of bytes used by a key value besides its strings.
+     */
+    private static final int KEY_VALUE_OVERHEAD = 64;
+
+    private final Cache<Key, Entry> preparedRawObjects;
+
+    private final boolean enabled;
+
+    @Autowired
+    public PreparedRawObjectCache(@Value("${pa.catalog.parsing.cache.size.bytes:67108864}") long cacheSizeBytes) {
+        this.enabled = cacheSizeBytes > 0;
+        this.preparedRawObjects = Caffeine.newBuilder()
+                                          .maximumWeight(Math.max(cacheSizeBytes, 0))
+                                          .weigher((Key key, Entry entry) -> key.weight() + entry.weight())
+                                          .recordStats()
+                                          .build();
+    }
+
+    /**
+     * @return the prepared raw object cached for the given inputs, or the result of the given preparation which is
+     * then cached
+     */
+    public PreparedRawObject get(String kind, GenericInfoBucketData genericInfoBucketData,
+            List<Metadata> metadataList, byte[] rawObject, Supplier<PreparedRawObject> preparation) {
+        if (!enabled || rawObject == null) {
+            return preparation.get();
+        }
+        Key key = new Key(kind,
+                          ContentHashUtil.sha256Hex(rawObject),
+                          genericInfoBucketData.getBucketName(),
+                          genericInfoBucketData.getGroup(),
+                          toKeyValues(metadataList));
+        // The preparation runs outside of the cache, so that it does not block the other entries of the map
+        Entry entry = preparedRawObjects.getIfPresent(key);
+        if (entry == null) {
+            PreparedRawObject preparedRawObject = preparation.get();
+            entry = new Entry(toKeyValues(preparedRawObject.getKeyValues()), preparedRawObject.getRawObject());
+            preparedRawObjects.put(key, entry);
+            log.debug("Prepared raw object cached, {}", preparedRawObjects.stats());
+            return preparedRawObject;
+        }
+        return new PreparedRawObject(entry.toEntities(), entry.rawObject);
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache, the hit count being the number of parsings saved
+     */
+    public CacheStats getStats() {
+        return preparedRawObjects.stats();
+    }
+
+    private static List<KeyValue> toKeyValues(List<?> keyValues) {
+        if (keyValues == null || keyValues.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return keyValues.stream().map(KeyValue::of).collect(Collectors.toList());
+    }
+
+    private static int sizeOf(List<KeyValue> keyValues) {
+        return keyValues.stream().mapToInt(KeyValue::weight).sum();
+    }
+
+    private static int sizeOf(String value) {
+        return value == null ? 0 : 2 * value.length();
+    }
+
+    /**
+     * Key, value and label of a metadata, compared on the three of them unlike {@link Metadata}.
+     */
+    @lombok.Value
+    private static class KeyValue {
+
+        private final String key;
+
+        private final String value;
+
+        private final String label;
+
+        static KeyValue of(Object metadata) {
+            if (metadata instanceof KeyValueLabelMetadataEntity) {
+                KeyValueLabelMetadataEntity entity = (KeyValueLabelMetadataEntity) metadata;
+                return new KeyValue(entity.getKey(), entity.getValue(), entity.getLabel());
+            }
+            Metadata dto = (Metadata) metadata;
+            return new KeyValue(dto.getKey(), dto.getValue(), dto.getLabel());
+        }
+
+        int weight() {
+            return KEY_VALUE_OVERHEAD + sizeOf(key) + sizeOf(value) + sizeOf(label);
+        }
+    }
+
+    @lombok.Value
+    private static class Key {
+
+        private final String kind;
+
+        private final String contentHash;
+
+        private final String bucketName;
+
+        private final String group;
+
+        private final List<KeyValue> metadata;
+
+        int weight() {
+            return KEY_VALUE_OVERHEAD + sizeOf(kind) + sizeOf(contentHash) + sizeOf(bucketName) + sizeOf(group) +
+                   sizeOf(metadata);
+        }
+    }
+
+    @lombok.AllArgsConstructor
+    private static class Entry {
+
+        private final List<KeyValue> keyValues;
+
+        private final byte[] rawObject;
+
+        int weight() {
+            return rawObject.length + sizeOf(keyValues);
+        }
+
+        List<KeyValueLabelMetadataEntity> toEntities() {
+            return keyValues.stream()
+                            .map(keyValue -> new KeyValueLabelMetadataEntity(keyValue.getKey(),
+                                                                             keyValue.getValue(),
+                                                                             keyValue.getLabel()))
+                            .collect(Collectors.toList());
+        }
+    }
+
+}
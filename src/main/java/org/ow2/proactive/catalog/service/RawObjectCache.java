@@ -0,0 +1,214 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.ow2.proactive.catalog.dto.CatalogRawObject;
+import org.ow2.proactive.catalog.dto.Metadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+
+/**
+ * Read-through caches of the raw objects served by the raw endpoints: the last revision of each object, by bucket and
+ * object name, and the revisions fetched by commit time. Scheduler jobs fetch the same scripts and workflows over and
+ * over, so this avoids a query and the read of their content each time.
+ *
+ * Both caches are bounded by the number of bytes of the contents they hold. Concurrent misses of an entry load it
+ * once, the other callers waiting for it, and unknown objects are not cached. Entries are copied for every use, as
+ * their links may be modified.
+ *
+ * The last revision of an object is invalidated when a revision is added to it, and all the entries of an object when
+ * its kind or Content-Type change or when it is deleted. As for {@link BucketCache}, this is done once immediately and
+ * once more after the transaction completes, and the expiration delay bounds staleness for changes made by other
+ * means, such as another catalog sharing the database.
+ *
+ * @author ActiveEon Team
+ */
+@Component
+public class RawObjectCache {
+
+    /**
+     * Estimated number of bytes used by an entry besides its content and metadata.
+     */
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private final Cache<ObjectKey, CatalogRawObject> lastRevisions;
+
+    private final Cache<RevisionKey, CatalogRawObject> revisions;
+
+    private final boolean lastRevisionsEnabled;
+
+    private final boolean revisionsEnabled;
+
+    @Autowired
+    public RawObjectCache(@Value("${pa.catalog.raw.object.cache.size.bytes:67108864}") long lastRevisionsSizeBytes,
+            @Value("${pa.catalog.raw.object.revision.cache.size.bytes:33554432}") long revisionsSizeBytes,
+            @Value("${pa.catalog.raw.object.cache.ttl.seconds:300}") long ttlSeconds) {
+        this.lastRevisionsEnabled = lastRevisionsSizeBytes > 0;
+        this.revisionsEnabled = revisionsSizeBytes > 0;
+        this.lastRevisions = Caffeine.newBuilder()
+                                     .maximumWeight(Math.max(lastRevisionsSizeBytes, 0))
+                                     .weigher((ObjectKey key, CatalogRawObject rawObject) -> sizeOf(rawObject))
+                                     .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                                     .recordStats()
+                                     .build();
+        this.revisions = Caffeine.newBuilder()
+                                 .maximumWeight(Math.max(revisionsSizeBytes, 0))
+                                 .weigher((RevisionKey key, CatalogRawObject rawObject) -> sizeOf(rawObject))
+                                 .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                                 .recordStats()
+                                 .build();
+    }
+
+    /**
+     * @return the last revision of the given object, loaded with the given supplier on a cache miss
+     */
+    public CatalogRawObject getLastRevision(String bucketName, String name, Supplier<CatalogRawObject> loader) {
+        if (!lastRevisionsEnabled) {
+            return loader.get();
+        }
+        return copyOf(lastRevisions.get(new ObjectKey(bucketName, name), key -> loader.get()));
+    }
+
+    /**
+     * @return the given revision of the given object, loaded with the given supplier on a cache miss
+     */
+    public CatalogRawObject getRevision(String bucketName, String name, long commitTime,
+            Supplier<CatalogRawObject> loader) {
+        if (!revisionsEnabled) {
+            return loader.get();
+        }
+        return copyOf(revisions.get(new RevisionKey(bucketName, name, commitTime), key -> loader.get()));
+    }
+
+    /**
+     * To be called when a revision is added to the given object.
+     */
+    public void invalidateLastRevision(String bucketName, String name) {
+        ObjectKey key = new ObjectKey(bucketName, name);
+        lastRevisions.invalidate(key);
+        afterTransactionCompletion(() -> lastRevisions.invalidate(key));
+    }
+
+    /**
+     * To be called when the given object is deleted or when its kind or Content-Type, which are part of the raw
+     * objects of all its revisions, change.
+     */
+    public void invalidate(String bucketName, String name) {
+        Runnable invalidation = () -> {
+            lastRevisions.invalidate(new ObjectKey(bucketName, name));
+            revisions.asMap().keySet().removeIf(key -> key.isRevisionOf(bucketName, name));
+        };
+        invalidation.run();
+        afterTransactionCompletion(invalidation);
+    }
+
+    public void invalidateAll() {
+        Runnable invalidation = () -> {
+            lastRevisions.invalidateAll();
+            revisions.invalidateAll();
+        };
+        invalidation.run();
+        afterTransactionCompletion(invalidation);
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache of last revisions
+     */
+    public CacheStats getLastRevisionStats() {
+        return lastRevisions.stats();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache of revisions fetched by commit time
+     */
+    public CacheStats getRevisionStats() {
+        return revisions.stats();
+    }
+
+    private static CatalogRawObject copyOf(CatalogRawObject rawObject) {
+        return new CatalogRawObject(rawObject);
+    }
+
+    private static int sizeOf(CatalogRawObject rawObject) {
+        int size = ENTRY_OVERHEAD + sizeOf(rawObject.getCommitMessage());
+        if (rawObject.getRawObject() != null) {
+            size += rawObject.getRawObject().length;
+        }
+        for (Metadata metadata : rawObject.getMetadataList()) {
+            size += sizeOf(metadata.getKey()) + sizeOf(metadata.getValue()) + sizeOf(metadata.getLabel());
+        }
+        return size;
+    }
+
+    private static int sizeOf(String value) {
+        return value == null ? 0 : 2 * value.length();
+    }
+
+    private void afterTransactionCompletion(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    @lombok.Value
+    private static class ObjectKey {
+
+        private final String bucketName;
+
+        private final String name;
+    }
+
+    @lombok.Value
+    private static class RevisionKey {
+
+        private final String bucketName;
+
+        private final String name;
+
+        private final long commitTime;
+
+        boolean isRevisionOf(String bucketName, String name) {
+            return this.bucketName.equals(bucketName) && this.name.equals(name);
+        }
+    }
+
+}
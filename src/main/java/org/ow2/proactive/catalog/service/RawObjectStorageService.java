@@ -0,0 +1,244 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import org.ow2.proactive.catalog.repository.CatalogObjectRevisionRepository;
+import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.ow2.proactive.catalog.repository.storage.RawObjectStore;
+import org.ow2.proactive.catalog.service.exception.RawObjectStoreException;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Stores and reads the raw content of catalog object revisions. When the raw object store is enabled, a revision
+ * only keeps the SHA-256 digest and the size of its content, the content itself being written once in the
+ * {@link RawObjectStore} for all revisions sharing it. Otherwise, the content stays in the revision row.
+ *
+ * Contents no longer referenced by any revision are periodically garbage collected. At startup, the digest of the
+ * revisions committed before the store existed is computed, their content being only moved to the store when
+ * explicitly requested.
+ *
+ * @author ActiveEon Team
+ */
+@Log4j2
+@Service
+public class RawObjectStorageService {
+
+    private static final int MIGRATION_BATCH_SIZE = 50;
+
+    @Autowired
+    private RawObjectStore rawObjectStore;
+
+    @Autowired
+    private CatalogObjectRevisionRepository catalogObjectRevisionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${pa.catalog.raw.object.store.enabled:false}")
+    protected boolean rawObjectStoreEnabled;
+
+    @Value("${pa.catalog.raw.object.store.migrate.existing:false}")
+    protected boolean migrateExistingRawObjects;
+
+    @Value("${pa.catalog.raw.object.store.gc.grace.period.seconds:3600}")
+    protected long garbageCollectionGracePeriodSeconds;
+
+    @Value("${pa.catalog.raw.object.stream.threshold.bytes:1048576}")
+    protected long streamThresholdBytes;
+
+    /**
+     * Sets the content of the given revision, writing it to the raw object store if enabled.
+     */
+    public void setRawObject(CatalogObjectRevisionEntity revision, byte[] rawObject) {
+        revision.setContentSize((long) rawObject.length);
+        if (rawObjectStoreEnabled) {
+            revision.setContentHash(rawObjectStore.put(rawObject));
+            revision.setRawObject(null);
+        } else {
+            revision.setContentHash(ContentHashUtil.sha256Hex(rawObject));
+            revision.setRawObject(rawObject);
+        }
+    }
+
+    public byte[] getRawObject(CatalogObjectRevisionEntity revision) {
+        if (revision.getRawObject() != null || revision.getContentHash() == null) {
+            return revision.getRawObject();
+        }
+        return rawObjectStore.get(revision.getContentHash());
+    }
+
+    /**
+     * Same as {@link #getRawObject(CatalogObjectRevisionEntity)} for a revision which has not been loaded, its content
+     * being read alone from the database when it is not in the raw object store.
+     */
+    public byte[] getRawObject(long revisionId, String contentHash) {
+        byte[] rawObject = catalogObjectRevisionRepository.findRawObjectById(revisionId);
+        if (rawObject != null || contentHash == null) {
+            return rawObject;
+        }
+        return rawObjectStore.get(contentHash);
+    }
+
+    /**
+     * @return the file of the raw object store holding the content of the given revision, when the content is at
+     * least as large as the stream threshold and is better streamed from the file than read in memory
+     */
+    public Optional<Path> getRawObjectFileToStream(CatalogObjectRevisionEntity revision) {
+        if (revision.getRawObject() != null || revision.getContentHash() == null ||
+            revision.getContentSize() == null || revision.getContentSize() < streamThresholdBytes) {
+            return Optional.empty();
+        }
+        return rawObjectStore.getFile(revision.getContentHash());
+    }
+
+    /**
+     * Deletes the stored contents which are not referenced by any revision. Contents written during the grace
+     * period are kept, as they may belong to revisions not committed yet.
+     *
+     * @return the number of deleted contents
+     */
+    @Scheduled(initialDelayString = "${pa.catalog.raw.object.store.gc.period.ms:3600000}", fixedDelayString = "${pa.catalog.raw.object.store.gc.period.ms:3600000}")
+    public int collectGarbage() {
+        if (!rawObjectStoreEnabled) {
+            return 0;
+        }
+        long writtenBefore = System.currentTimeMillis() -
+                             TimeUnit.SECONDS.toMillis(garbageCollectionGracePeriodSeconds);
+        Set<String> unreferencedKeys = rawObjectStore.listKeysWrittenBefore(writtenBefore);
+        if (unreferencedKeys.isEmpty()) {
+            return 0;
+        }
+        unreferencedKeys.removeAll(new HashSet<>(catalogObjectRevisionRepository.findAllContentHashes()));
+
+        int deletedCount = (int) unreferencedKeys.stream()
+                                                 .filter(key -> rawObjectStore.deleteIfWrittenBefore(key,
+                                                                                                      writtenBefore,
+                                                                                                      this::isReferenced))
+                                                 .count();
+        log.info("Raw object store garbage collection deleted {} unreferenced contents", deletedCount);
+        return deletedCount;
+    }
+
+    private boolean isReferenced(String contentHash) {
+        return catalogObjectRevisionRepository.countByContentHash(contentHash) > 0;
+    }
+
+    /**
+     * Computes the digest of the revisions committed before the raw object store existed, keeping their content in
+     * the database. When enabled, then moves the contents still in the database to the store.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateExistingRevisions() {
+        int hashedCount = migrateInBatches(catalogObjectRevisionRepository::findRevisionsWithoutContentHash,
+                                           revision -> {
+                                               revision.setContentHash(ContentHashUtil.sha256Hex(revision.getRawObject()));
+                                               revision.setContentSize((long) revision.getRawObject().length);
+                                           });
+        if (hashedCount > 0) {
+            log.info("Content hash computed for {} existing revisions", hashedCount);
+        }
+
+        if (rawObjectStoreEnabled && migrateExistingRawObjects) {
+            int movedCount = migrateInBatches(catalogObjectRevisionRepository::findRevisionsWithRawObject,
+                                              this::moveRawObjectToStore);
+            log.info("{} existing revisions with content in the database processed by the raw object store migration",
+                     movedCount);
+        }
+    }
+
+    private void moveRawObjectToStore(CatalogObjectRevisionEntity revision) {
+        try {
+            revision.setContentHash(putAndReadBack(revision.getRawObject()));
+            revision.setRawObject(null);
+        } catch (RawObjectStoreException e) {
+            log.warn("Content of revision {} kept in the database: {}", revision.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the given migration to the revisions returned by the given finder, one transaction per batch, and
+     * walking the revisions by increasing id so that revisions left unchanged are not fetched again.
+     *
+     * @return the number of migrated revisions
+     */
+    private int migrateInBatches(BiFunction<Long, Pageable, List<CatalogObjectRevisionEntity>> finder,
+            Consumer<CatalogObjectRevisionEntity> migration) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger migratedCount = new AtomicInteger();
+        Long afterId = 0L;
+        while (afterId != null) {
+            Long batchAfterId = afterId;
+            afterId = transactionTemplate.execute(status -> {
+                List<CatalogObjectRevisionEntity> revisions = finder.apply(batchAfterId,
+                                                                           new PageRequest(0, MIGRATION_BATCH_SIZE));
+                revisions.forEach(migration);
+                catalogObjectRevisionRepository.save(revisions);
+                migratedCount.addAndGet(revisions.size());
+                return revisions.size() < MIGRATION_BATCH_SIZE ? null : revisions.get(revisions.size() - 1).getId();
+            });
+        }
+        return migratedCount.get();
+    }
+
+    /**
+     * Writes the given content to the store, then reads it back, so that the database copy of an existing content is
+     * only dropped once the store is known to hold it. New contents have no database copy to lose and are only
+     * written.
+     *
+     * @return the key of the content
+     */
+    private String putAndReadBack(byte[] rawObject) {
+        String key = rawObjectStore.put(rawObject);
+        if (!key.equals(ContentHashUtil.sha256Hex(rawObjectStore.get(key)))) {
+            throw new RawObjectStoreException("Raw object " + key + " read back from the store differs from the written one");
+        }
+        return key;
+    }
+
+}
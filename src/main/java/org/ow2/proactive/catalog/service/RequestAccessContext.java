@@ -0,0 +1,127 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.ow2.proactive.catalog.repository.entity.BucketEntity;
+import org.ow2.proactive.catalog.service.model.AuthenticatedUser;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+
+/**
+ * Keeps what is resolved to check and serve a single HTTP request: the authenticated user of each session,
+ * its groups as a hash set, and the bucket entities already loaded by name. Controllers, through
+ * {@link RestApiAccessService}, and services thus share one lookup per request instead of querying
+ * the scheduler and the database again at each layer.
+ *
+ * The state is attached to the current request attributes. Outside of a request (startup, background threads),
+ * every call simply delegates to the given loader.
+ *
+ * Cached bucket entities belong to the persistence context opened for the whole request (open entity manager
+ * in view), so they are the same instances a new query would return.
+ *
+ * @author ActiveEon Team
+ */
+@Component
+public class RequestAccessContext {
+
+    private static final String REQUEST_ATTRIBUTE_NAME = RequestAccessContext.class.getName() + ".STATE";
+
+    public AuthenticatedUser getAuthenticatedUser(String sessionId,
+            Function<String, AuthenticatedUser> authenticator) {
+        Optional<State> state = currentState();
+        if (!state.isPresent()) {
+            return authenticator.apply(sessionId);
+        }
+        return state.get().authenticatedUsers.computeIfAbsent(sessionId, authenticator);
+    }
+
+    public Set<String> getUserGroups(String sessionId, Function<String, AuthenticatedUser> authenticator) {
+        Optional<State> state = currentState();
+        if (!state.isPresent()) {
+            return new HashSet<>(authenticator.apply(sessionId).getGroups());
+        }
+        return state.get().userGroups.computeIfAbsent(sessionId,
+                                                      key -> new HashSet<>(getAuthenticatedUser(key,
+                                                                                                authenticator).getGroups()));
+    }
+
+    /**
+     * @return the bucket entity with the given name, or null if the loader does not find it. Missing buckets are
+     * not remembered.
+     */
+    public BucketEntity getBucket(String bucketName, Function<String, BucketEntity> bucketLoader) {
+        Optional<State> state = currentState();
+        if (!state.isPresent()) {
+            return bucketLoader.apply(bucketName);
+        }
+        return state.get().buckets.computeIfAbsent(bucketName, bucketLoader);
+    }
+
+    public void putBucket(BucketEntity bucketEntity) {
+        currentState().ifPresent(state -> state.buckets.put(bucketEntity.getBucketName(), bucketEntity));
+    }
+
+    public void evictBucket(String bucketName) {
+        currentState().ifPresent(state -> state.buckets.remove(bucketName));
+    }
+
+    public void evictAllBuckets() {
+        currentState().ifPresent(state -> state.buckets.clear());
+    }
+
+    private Optional<State> currentState() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return Optional.empty();
+        }
+        State state = (State) requestAttributes.getAttribute(REQUEST_ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+        if (state == null) {
+            state = new State();
+            requestAttributes.setAttribute(REQUEST_ATTRIBUTE_NAME, state, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.of(state);
+    }
+
+    private static class State {
+
+        private final Map<String, AuthenticatedUser> authenticatedUsers = new HashMap<>();
+
+        private final Map<String, Set<String>> userGroups = new HashMap<>();
+
+        private final Map<String, BucketEntity> buckets = new HashMap<>();
+
+    }
+
+}
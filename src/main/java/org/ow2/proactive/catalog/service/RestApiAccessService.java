@@ -25,6 +25,9 @@
  */
 package org.ow2.proactive.catalog.service;
 
+import java.util.Set;
+import java.util.function.Predicate;
+
 import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
 import org.ow2.proactive.catalog.service.model.AuthenticatedUser;
 import org.ow2.proactive.catalog.service.model.RestApiAccessResponse;
@@ -32,6 +35,9 @@ import org.ow2.proactive.microservices.common.exception.NotAuthenticatedExceptio
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
 
 /**
  * @author ActiveEon Team
@@ -46,12 +52,16 @@ public class RestApiAccessService {
 
     private final SchedulerUserAuthenticationService schedulerUserAuthenticationService;
 
+    private final RequestAccessContext requestAccessContext;
+
     @Autowired
     public RestApiAccessService(BucketService bucketService, AuthorizationService authorizationService,
-            SchedulerUserAuthenticationService schedulerUserAuthenticationService) {
+            SchedulerUserAuthenticationService schedulerUserAuthenticationService,
+            RequestAccessContext requestAccessContext) {
         this.bucketService = bucketService;
         this.authorizationService = authorizationService;
         this.schedulerUserAuthenticationService = schedulerUserAuthenticationService;
+        this.requestAccessContext = requestAccessContext;
     }
 
     public RestApiAccessResponse getUserDataFromSessionidAndCheckAccess(boolean sessionIdRequired, String sessionId,
@@ -99,6 +109,22 @@ public class RestApiAccessService {
         return true;
     }
 
+    /**
+     * Builds a predicate telling whether the user of the given session may access a bucket, given the bucket owner.
+     * The session is authenticated at most once, on the first non-public bucket tested, so the predicate can be
+     * applied to any number of buckets.
+     */
+    public Predicate<String> getBucketOwnerAccessPredicate(boolean sessionIdRequired, String sessionId) {
+        if (!sessionIdRequired) {
+            return bucketOwner -> true;
+        }
+        Supplier<Set<String>> userGroups = Suppliers.memoize(() -> requestAccessContext.getUserGroups(sessionId,
+                                                                                                     schedulerUserAuthenticationService::authenticateBySessionId));
+        return bucketOwner -> BucketService.DEFAULT_BUCKET_OWNER.equals(bucketOwner) ||
+                              authorizationService.askUserGroupsAuthorizationByBucketOwner(userGroups.get(),
+                                                                                           bucketOwner);
+    }
+
     private RestApiAccessResponse checkBucketPermission(String sessionId, String bucketName) {
         RestApiAccessResponse restApiAccessResponse = this.checkAccessBySessionForBucketToOwnerOrGroup(sessionId,
                                                                                                        bucketName);
@@ -117,14 +143,14 @@ public class RestApiAccessService {
 
     private RestApiAccessResponse checkAccessBySessionIdToOwnerOrGroup(String sessionId, String ownerOrGroup)
             throws NotAuthenticatedException {
-        AuthenticatedUser authenticatedUser = schedulerUserAuthenticationService.authenticateBySessionId(sessionId);
+        AuthenticatedUser authenticatedUser = authenticate(sessionId);
         boolean authorized = authorizationService.askUserAuthorizationByBucketOwner(authenticatedUser, ownerOrGroup);
         return RestApiAccessResponse.builder().authorized(authorized).authenticatedUser(authenticatedUser).build();
     }
 
     private AuthenticatedUser getAuthenticatedUser(boolean sessionIdRequired, String sessionId) {
         try {
-            return schedulerUserAuthenticationService.authenticateBySessionId(sessionId);
+            return authenticate(sessionId);
         } catch (NotAuthenticatedException nae) {
             if (sessionIdRequired) {
                 throw nae;
@@ -134,4 +160,9 @@ public class RestApiAccessService {
 
     }
 
+    private AuthenticatedUser authenticate(String sessionId) {
+        return requestAccessContext.getAuthenticatedUser(sessionId,
+                                                         schedulerUserAuthenticationService::authenticateBySessionId);
+    }
+
 }
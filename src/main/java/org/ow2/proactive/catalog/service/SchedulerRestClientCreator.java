@@ -25,26 +25,130 @@
  */
 package org.ow2.proactive.catalog.service;
 
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
 import org.ow2.proactive_grid_cloud_portal.scheduler.client.SchedulerRestClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
 
 
 /**
  * @author ActiveEon Team
  * @since 27/07/2017
  */
+@Log4j2
 @Component
 public class SchedulerRestClientCreator {
 
+    private static final int DEFAULT_CONNECTION_POOL_SIZE = 20;
+
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+
+    private static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+
+    private static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MS = 5000;
+
+    private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+
     @Getter(value = AccessLevel.PACKAGE)
     @Value("${pa.scheduler.rest.url}")
     private String schedulerRestUrl;
 
+    @Value("${pa.scheduler.rest.client.pool.size:" + DEFAULT_CONNECTION_POOL_SIZE + "}")
+    private int connectionPoolSize = DEFAULT_CONNECTION_POOL_SIZE;
+
+    @Value("${pa.scheduler.rest.client.connect.timeout.ms:" + DEFAULT_CONNECT_TIMEOUT_MS + "}")
+    private int connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+
+    @Value("${pa.scheduler.rest.client.read.timeout.ms:" + DEFAULT_READ_TIMEOUT_MS + "}")
+    private int readTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+
+    @Value("${pa.scheduler.rest.client.validate.after.inactivity.ms:" + DEFAULT_VALIDATE_AFTER_INACTIVITY_MS + "}")
+    private int validateAfterInactivityMs = DEFAULT_VALIDATE_AFTER_INACTIVITY_MS;
+
+    private volatile SchedulerRestClient sharedClient;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private CloseableHttpClient httpClient;
+
     public SchedulerRestClient getNewClientInitializedWithSchedulerRestUrl() {
         return new SchedulerRestClient(this.getSchedulerRestUrl());
     }
+
+    /**
+     * @return a long-lived client, shared by all callers, whose connections to the scheduler are kept alive
+     * in a bounded pool
+     */
+    public SchedulerRestClient getSharedClient() {
+        SchedulerRestClient client = sharedClient;
+        if (client == null) {
+            synchronized (this) {
+                if (sharedClient == null) {
+                    sharedClient = createPooledClient();
+                }
+                client = sharedClient;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * @return the number of leased, pending and available connections of the shared client pool,
+     * or null if the shared client was never used
+     */
+    public synchronized PoolStats getConnectionPoolStats() {
+        return connectionManager == null ? null : connectionManager.getTotalStats();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        sharedClient = null;
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (Exception e) {
+                log.warn("Could not close the scheduler rest client connection pool", e);
+            }
+            httpClient = null;
+        }
+        connectionManager = null;
+    }
+
+    private SchedulerRestClient createPooledClient() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(connectionPoolSize);
+        connectionManager.setDefaultMaxPerRoute(connectionPoolSize);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivityMs);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                                                   .setConnectTimeout(connectTimeoutMs)
+                                                   .setConnectionRequestTimeout(connectTimeoutMs)
+                                                   .setSocketTimeout(readTimeoutMs)
+                                                   .build();
+
+        httpClient = HttpClients.custom()
+                                .setConnectionManager(connectionManager)
+                                .setDefaultRequestConfig(requestConfig)
+                                .evictExpiredConnections()
+                                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                                .build();
+
+        log.info("Created scheduler rest client for {} with a pool of {} connections",
+                 getSchedulerRestUrl(),
+                 connectionPoolSize);
+        return new SchedulerRestClient(getSchedulerRestUrl(), new ApacheHttpClient4Engine(httpClient));
+    }
 }
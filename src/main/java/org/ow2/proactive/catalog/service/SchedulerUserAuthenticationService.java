@@ -26,42 +26,195 @@
 package org.ow2.proactive.catalog.service;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ow2.proactive.authentication.UserData;
 import org.ow2.proactive.catalog.service.model.AuthenticatedUser;
 import org.ow2.proactive.microservices.common.exception.NotAuthenticatedException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
 
 /**
+ * Authenticates users against the scheduler. Valid sessions are cached for a short time, and session ids
+ * rejected by the scheduler are remembered in a second, shorter-lived cache. Concurrent authentications
+ * of the same session id share a single remote call.
+ *
  * @author ActiveEon Team
  * @since 27/07/2017
  */
 @Component
 public class SchedulerUserAuthenticationService {
 
+    private static final String INVALID_SESSION_MESSAGE = "SessionId is invalid";
+
     private final SchedulerRestClientCreator schedulerRestClientCreator;
 
+    private final Cache<String, AuthenticatedUser> authenticatedSessionCache;
+
+    private final Cache<String, Boolean> invalidSessionCache;
+
+    private final ConcurrentMap<String, CompletableFuture<AuthenticatedUser>> inFlightAuthentications = new ConcurrentHashMap<>();
+
+    private final AtomicLong coalescedAuthenticationCount = new AtomicLong();
+
     @Autowired
-    public SchedulerUserAuthenticationService(SchedulerRestClientCreator schedulerRestClientCreator) {
+    public SchedulerUserAuthenticationService(SchedulerRestClientCreator schedulerRestClientCreator,
+            @Value("${pa.catalog.security.session.cache.size:10000}") long sessionCacheSize,
+            @Value("${pa.catalog.security.session.cache.ttl.seconds:60}") long sessionCacheTtlSeconds,
+            @Value("${pa.catalog.security.session.cache.invalid.ttl.seconds:10}") long invalidSessionCacheTtlSeconds) {
         this.schedulerRestClientCreator = schedulerRestClientCreator;
+        this.authenticatedSessionCache = Caffeine.newBuilder()
+                                                 .maximumSize(sessionCacheSize)
+                                                 .expireAfterWrite(sessionCacheTtlSeconds, TimeUnit.SECONDS)
+                                                 .recordStats()
+                                                 .build();
+        this.invalidSessionCache = Caffeine.newBuilder()
+                                           .maximumSize(sessionCacheSize)
+                                           .expireAfterWrite(invalidSessionCacheTtlSeconds, TimeUnit.SECONDS)
+                                           .recordStats()
+                                           .build();
     }
 
     public AuthenticatedUser authenticateBySessionId(String sessionId) throws NotAuthenticatedException {
-        UserData userData;
+        if (sessionId == null) {
+            return toAuthenticatedUser(fetchUserData(null));
+        }
+
+        AuthenticatedUser cachedUser = getCachedUser(sessionId);
+        if (cachedUser != null) {
+            return cachedUser;
+        }
+
+        CompletableFuture<AuthenticatedUser> authentication = new CompletableFuture<>();
+        CompletableFuture<AuthenticatedUser> inFlightAuthentication = inFlightAuthentications.putIfAbsent(sessionId,
+                                                                                                          authentication);
+        if (inFlightAuthentication != null) {
+            coalescedAuthenticationCount.incrementAndGet();
+            return awaitAuthentication(inFlightAuthentication);
+        }
+
         try {
-            userData = this.schedulerRestClientCreator.getNewClientInitializedWithSchedulerRestUrl()
-                                                      .getScheduler()
-                                                      .getUserDataFromSessionId(sessionId);
+            // another caller may have completed the authentication between the cache lookup and now
+            AuthenticatedUser authenticatedUser = getCachedUser(sessionId);
+            if (authenticatedUser == null) {
+                authenticatedUser = authenticateRemotely(sessionId);
+            }
+            authentication.complete(authenticatedUser);
+            return authenticatedUser;
+        } catch (Exception exception) {
+            authentication.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlightAuthentications.remove(sessionId, authentication);
+        }
+    }
+
+    /**
+     * Forgets everything known about the given session id, e.g. after a logout or a change of the user's groups.
+     */
+    public void invalidateSession(String sessionId) {
+        if (sessionId != null) {
+            authenticatedSessionCache.invalidate(sessionId);
+            invalidSessionCache.invalidate(sessionId);
+        }
+    }
+
+    public void invalidateAllSessions() {
+        authenticatedSessionCache.invalidateAll();
+        invalidSessionCache.invalidateAll();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache holding successfully authenticated sessions
+     */
+    public CacheStats getAuthenticatedSessionCacheStats() {
+        return authenticatedSessionCache.stats();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache holding session ids rejected by the scheduler
+     */
+    public CacheStats getInvalidSessionCacheStats() {
+        return invalidSessionCache.stats();
+    }
+
+    /**
+     * @return the number of authentications that waited for an identical in-flight call
+     * instead of calling the scheduler themselves
+     */
+    public long getCoalescedAuthenticationCount() {
+        return coalescedAuthenticationCount.get();
+    }
+
+    private AuthenticatedUser getCachedUser(String sessionId) throws NotAuthenticatedException {
+        AuthenticatedUser cachedUser = authenticatedSessionCache.getIfPresent(sessionId);
+        if (cachedUser == null && invalidSessionCache.getIfPresent(sessionId) != null) {
+            throw new NotAuthenticatedException(INVALID_SESSION_MESSAGE);
+        }
+        return cachedUser;
+    }
+
+    private AuthenticatedUser authenticateRemotely(String sessionId) throws NotAuthenticatedException {
+        UserData userData = fetchUserData(sessionId);
+        if (isInvalid(userData)) {
+            // the scheduler answered but does not know this session: it is safe to remember it for a while
+            invalidSessionCache.put(sessionId, Boolean.TRUE);
+        }
+        AuthenticatedUser authenticatedUser = toAuthenticatedUser(userData);
+        authenticatedSessionCache.put(sessionId, authenticatedUser);
+        return authenticatedUser;
+    }
+
+    private AuthenticatedUser awaitAuthentication(CompletableFuture<AuthenticatedUser> inFlightAuthentication)
+            throws NotAuthenticatedException {
+        try {
+            return inFlightAuthentication.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new NotAuthenticatedException("Interrupted while validating sessionId", interruptedException);
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof NotAuthenticatedException) {
+                throw (NotAuthenticatedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new NotAuthenticatedException("Could not validate sessionId, validation returned: " +
+                                                cause.getMessage(), cause);
+        }
+    }
+
+    private UserData fetchUserData(String sessionId) throws NotAuthenticatedException {
+        try {
+            return this.schedulerRestClientCreator.getSharedClient()
+                                                  .getScheduler()
+                                                  .getUserDataFromSessionId(sessionId);
         } catch (Exception exception) {
             throw new NotAuthenticatedException("Could not validate sessionId, validation returned: " +
                                                 exception.getMessage(), exception);
         }
+    }
+
+    private boolean isInvalid(UserData userData) {
+        return userData == null || StringUtils.isEmpty(userData.getUserName());
+    }
 
-        if (userData == null || StringUtils.isEmpty(userData.getUserName())) {
-            throw new NotAuthenticatedException("SessionId is invalid");
+    private AuthenticatedUser toAuthenticatedUser(UserData userData) throws NotAuthenticatedException {
+        if (isInvalid(userData)) {
+            throw new NotAuthenticatedException(INVALID_SESSION_MESSAGE);
         }
 
         return AuthenticatedUser.builder()
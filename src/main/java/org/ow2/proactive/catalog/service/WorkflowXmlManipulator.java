@@ -25,24 +25,10 @@
  */
 package org.ow2.proactive.catalog.service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.StringReader;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.ow2.proactive.catalog.service.exception.ParsingObjectException;
+import org.ow2.proactive.catalog.util.parser.StaxWorkflowProcessor;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
 
 /**
@@ -53,6 +39,8 @@ import org.xml.sax.InputSource;
 @Component
 public class WorkflowXmlManipulator {
 
+    private final StaxWorkflowProcessor staxWorkflowProcessor = new StaxWorkflowProcessor();
+
     public byte[] replaceGenericInformationJobLevel(final byte[] xmlWorkflow, Map<String, String> genericInfoMap) {
         if (xmlWorkflow == null) {
             return new byte[] {};
@@ -61,64 +49,7 @@ public class WorkflowXmlManipulator {
             return xmlWorkflow;
         }
 
-        Document doc = null;
-        try {
-            doc = DocumentBuilderFactory.newInstance()
-                                        .newDocumentBuilder()
-                                        .parse(new InputSource(new StringReader(new String(xmlWorkflow))));
-
-            Element rootElement = doc.getDocumentElement();
-            replaceOrAddGenericInfoElement(genericInfoMap, doc, rootElement);
-
-            Transformer xformer = TransformerFactory.newInstance().newTransformer();
-            xformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            ByteArrayOutputStream answer = new ByteArrayOutputStream();
-            xformer.transform(new DOMSource(doc), new StreamResult(answer));
-            return answer.toByteArray();
-        } catch (Exception e) {
-            throw new ParsingObjectException(e);
-        }
-    }
-
-    private void replaceOrAddGenericInfoElement(Map<String, String> genericInfoMap, Document doc, Element rootElement) {
-        NodeList nodes = rootElement.getChildNodes();
-        for (int idx = 0; idx < nodes.getLength(); idx++) {
-            if (nodes.item(idx).getNodeName() == "genericInformation") {
-                Element oldGenericInfoElement = (Element) nodes.item(idx);
-                rootElement.replaceChild(createGenericInfoElement(doc, genericInfoMap), oldGenericInfoElement);
-                break;
-            }
-            switch (nodes.item(idx).getNodeName()) {
-                case "genericInformation":
-                    Element oldGenericInfoElement = (Element) nodes.item(idx);
-                    rootElement.replaceChild(createGenericInfoElement(doc, genericInfoMap), oldGenericInfoElement);
-                    return;
-                case "inputSpace":
-                case "outputSpace":
-                case "globalSpace":
-                case "userSpace":
-                case "taskFlow":
-                    Element elementAfterGenericInfo = (Element) nodes.item(idx);
-                    rootElement.insertBefore(createGenericInfoElement(doc, genericInfoMap), elementAfterGenericInfo);
-                    return;
-            }
-        }
-    }
-
-    private Element createInfoElement(Document doc, String name, String value) {
-        Element infoElement = doc.createElement("info");
-        infoElement.setAttribute("name", name);
-        infoElement.setAttribute("value", value);
-        return infoElement;
-    }
-
-    private Node createGenericInfoElement(Document doc, Map<String, String> keyValueMetadataEntities) {
-        Element genericInfoElement = doc.createElement("genericInformation");
-        for (Map.Entry<String, String> entry : keyValueMetadataEntities.entrySet()) {
-            Element child = createInfoElement(doc, entry.getKey(), entry.getValue());
-            genericInfoElement.appendChild(child);
-        }
-        return genericInfoElement;
+        return staxWorkflowProcessor.parse(xmlWorkflow).replaceGenericInformation(genericInfoMap);
     }
 
 }
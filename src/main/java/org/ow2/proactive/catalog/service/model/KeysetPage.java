@@ -0,0 +1,77 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.ow2.proactive.catalog.service.exception.WrongParametersException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import lombok.Value;
+
+
+/**
+ * A page of a listing ordered by a unique key. The next page is requested with the key of the last item of this
+ * one, so that it is read from an index range instead of skipping the previous rows.
+ *
+ * @author ActiveEon Team
+ */
+@Value
+public class KeysetPage<T> {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private List<T> items;
+
+    /**
+     * Key after which the next page starts, null for the last page.
+     */
+    private String nextAfter;
+
+    /**
+     * @return a request for one item more than the limit, telling whether there is a next page
+     */
+    public static Pageable pageRequest(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new WrongParametersException("limit must be between 1 and " + MAX_LIMIT + ", got " + limit);
+        }
+        return new PageRequest(0, limit + 1);
+    }
+
+    /**
+     * @param items the items read with {@link #pageRequest(int)}
+     */
+    public static <T> KeysetPage<T> of(List<T> items, int limit, Function<T, String> keyExtractor) {
+        if (items.size() <= limit) {
+            return new KeysetPage<>(items, null);
+        }
+        List<T> pageItems = new ArrayList<>(items.subList(0, limit));
+        return new KeysetPage<>(pageItems, keyExtractor.apply(pageItems.get(limit - 1)));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service.model;
+
+import lombok.Value;
+
+
+/**
+ * Last revision of a catalog object to be written to an archive. It is read without the content of the revision,
+ * which is only loaded when its entry is written.
+ *
+ * @author ActiveEon Team
+ */
+@Value
+public class RevisionArchiveEntry {
+
+    private long revisionId;
+
+    private String name;
+
+    private String kind;
+
+    private String extension;
+
+    /**
+     * Null for the revisions committed before content hashes existed and not migrated yet
+     */
+    private String contentHash;
+
+    public RevisionArchiveEntry(Object[] columns) {
+        this((Long) columns[0], (String) columns[1], (String) columns[2], (String) columns[3], (String) columns[4]);
+    }
+
+    public RevisionArchiveEntry(long revisionId, String name, String kind, String extension, String contentHash) {
+        this.revisionId = revisionId;
+        this.name = name;
+        this.kind = kind;
+        this.extension = extension;
+        this.contentHash = contentHash;
+    }
+}
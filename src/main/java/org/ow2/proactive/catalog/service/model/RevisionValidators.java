@@ -0,0 +1,73 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service.model;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.Hashing;
+
+import lombok.Value;
+
+
+/**
+ * What the HTTP validators (ETag and Last-Modified) of a revision are derived from. It is read without the content
+ * of the revision, so that conditional requests are answered before the content is loaded.
+ *
+ * @author ActiveEon Team
+ */
+@Value
+public class RevisionValidators {
+
+    private long commitTime;
+
+    /**
+     * Null for the revisions committed before content hashes existed and not migrated yet
+     */
+    private String contentHash;
+
+    private String kind;
+
+    private String contentType;
+
+    private String extension;
+
+    /**
+     * Revisions having the same content share the entity tag of their raw content, unless the object kind,
+     * Content-Type or extension, which the raw response headers depend on, have changed.
+     */
+    public String getRawObjectETag() {
+        return eTagOf(contentHash != null ? contentHash : String.valueOf(commitTime), kind, contentType, extension);
+    }
+
+    public String getMetadataETag() {
+        return eTagOf(String.valueOf(commitTime), kind, contentType, extension);
+    }
+
+    private static String eTagOf(String... parts) {
+        return '"' + Hashing.sha256().hashString(String.join("\n", parts), StandardCharsets.UTF_8).toString() + '"';
+    }
+
+}
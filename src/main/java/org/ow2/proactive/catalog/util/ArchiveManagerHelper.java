@@ -25,58 +25,97 @@
  */
 package org.ow2.proactive.catalog.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.io.FilenameUtils;
-import org.ow2.proactive.catalog.repository.entity.CatalogObjectEntity;
-import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.ow2.proactive.catalog.service.exception.ArchiveTooLargeException;
+import org.ow2.proactive.catalog.service.exception.UnprocessableEntityException;
+import org.ow2.proactive.catalog.service.model.RevisionArchiveEntry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.zeroturnaround.zip.ByteSource;
-import org.zeroturnaround.zip.ZipEntrySource;
-import org.zeroturnaround.zip.ZipUtil;
 
 
 @Component
 public class ArchiveManagerHelper {
 
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    static final long DEFAULT_MAX_ENTRY_SIZE = 100L * 1024 * 1024;
+
+    static final long DEFAULT_MAX_TOTAL_SIZE = 1024L * 1024 * 1024;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final long COMPRESSION_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     @Autowired
     private RawObjectResponseCreator rawObjectResponseCreator;
 
-    public static class ZipArchiveContent {
+    @Value("${pa.catalog.archive.max.entries:" + DEFAULT_MAX_ENTRIES + "}")
+    protected int maxEntries = DEFAULT_MAX_ENTRIES;
 
-        private byte[] content;
+    @Value("${pa.catalog.archive.max.entry.size:" + DEFAULT_MAX_ENTRY_SIZE + "}")
+    protected long maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
 
-        private boolean partial;
+    @Value("${pa.catalog.archive.max.total.size:" + DEFAULT_MAX_TOTAL_SIZE + "}")
+    protected long maxTotalSize = DEFAULT_MAX_TOTAL_SIZE;
 
-        public ZipArchiveContent() {
-            content = null;
-            partial = false;
-        }
+    /**
+     * Number of threads deflating the entries of the archives being written, the number of available processors
+     * when 0 or less.
+     */
+    @Value("${pa.catalog.archive.compression.threads:0}")
+    protected int compressionThreads = 0;
 
-        public byte[] getContent() {
-            return content;
-        }
+    private ExecutorService compressionExecutor;
 
-        public void setContent(byte[] content) {
-            this.content = content;
+    /**
+     * Archive of catalog objects written to a stream when requested, the content of each object being loaded just
+     * before it is compressed.
+     */
+    public class StreamedZipArchive {
+
+        private final List<RevisionArchiveEntry> catalogObjectList;
+
+        private final Function<RevisionArchiveEntry, byte[]> rawObjectLoader;
+
+        StreamedZipArchive(List<RevisionArchiveEntry> catalogObjectList,
+                Function<RevisionArchiveEntry, byte[]> rawObjectLoader) {
+            this.catalogObjectList = catalogObjectList;
+            this.rawObjectLoader = rawObjectLoader;
         }
 
+        /**
+         * @return true if some of the requested catalog objects are missing from the archive
+         */
         public boolean isPartial() {
-            return partial;
+            return catalogObjectList.contains(null);
         }
 
-        public void setPartial(boolean partial) {
-            this.partial = partial;
+        public void writeTo(OutputStream outputStream) throws IOException {
+            writeZIP(catalogObjectList, rawObjectLoader, outputStream);
         }
-
     }
 
     public static class FileNameAndContent {
@@ -113,98 +152,195 @@ public class ArchiveManagerHelper {
     }
 
     /**
-     * Compress a list of CatalogObjectRevision files into a ZIP archive
-     * @param catalogObjectList the list of catalogObjects to compress
-     * @return a byte array corresponding to the archive containing the files
+     * Prepare the ZIP archive of a list of catalogObjects, to be written to a stream
+     * @param catalogObjectList the list of catalogObjects to compress, null for missing catalogObjects
+     * @param rawObjectLoader gives the content of each catalogObject
+     * @return the archive, written when requested
      */
-    public ZipArchiveContent compressZIP(List<CatalogObjectRevisionEntity> catalogObjectList) {
+    public StreamedZipArchive streamZIP(List<RevisionArchiveEntry> catalogObjectList,
+            Function<RevisionArchiveEntry, byte[]> rawObjectLoader) {
+        return new StreamedZipArchive(catalogObjectList, rawObjectLoader);
+    }
 
-        if (catalogObjectList == null) {
-            return null;
+    /**
+     * Write the ZIP archive of a list of catalogObjects to a stream. The contents are loaded one at a time in the
+     * calling thread, and deflated in parallel ahead of the entry being written.
+     * @param catalogObjectList the list of catalogObjects to compress, null for missing catalogObjects
+     * @param rawObjectLoader gives the content of each catalogObject, or null when it was deleted since the list was
+     * made, in which case it is left out of the archive
+     * @param outputStream the stream receiving the archive, which is not closed
+     */
+    public void writeZIP(List<RevisionArchiveEntry> catalogObjectList,
+            Function<RevisionArchiveEntry, byte[]> rawObjectLoader, OutputStream outputStream) throws IOException {
+        ExecutorService executor = getCompressionExecutor();
+        try (ParallelZipWriter zipWriter = new ParallelZipWriter(outputStream, executor, 2 * getCompressionThreads())) {
+            for (RevisionArchiveEntry catalogObjectRevision : catalogObjectList) {
+                if (catalogObjectRevision == null) {
+                    continue;
+                }
+                String fileNameWithExtension = rawObjectResponseCreator.getNameWithFileExtension(catalogObjectRevision.getName(),
+                                                                                                 catalogObjectRevision.getExtension(),
+                                                                                                 catalogObjectRevision.getKind());
+                byte[] rawObject = rawObjectLoader.apply(catalogObjectRevision);
+                if (rawObject == null) {
+                    continue;
+                }
+                zipWriter.addEntry(fileNameWithExtension, rawObject);
+            }
+            zipWriter.finish();
         }
+    }
 
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-
-            ZipArchiveContent zipContent = new ZipArchiveContent();
+    private int getCompressionThreads() {
+        return compressionThreads > 0 ? compressionThreads : Runtime.getRuntime().availableProcessors();
+    }
 
-            Stream<ZipEntrySource> streamSources = catalogObjectList.stream().filter(catalogObjectRevision -> {
-                if (catalogObjectRevision == null) {
-                    zipContent.setPartial(true);
-                }
-                return catalogObjectRevision != null;
-            }).map(catalogObjectRevision -> {
-                CatalogObjectEntity catalogObjectEntity = catalogObjectRevision.getCatalogObject();
-                String fileNameWithExtension = rawObjectResponseCreator.getNameWithFileExtension(catalogObjectEntity.getId()
-                                                                                                                    .getName(),
-                                                                                                 catalogObjectEntity.getExtension(),
-                                                                                                 catalogObjectEntity.getKind());
-                return new ByteSource(fileNameWithExtension, catalogObjectRevision.getRawObject());
-            });
-            ZipEntrySource[] sources = streamSources.toArray(size -> new ZipEntrySource[size]);
-            ZipUtil.pack(sources, byteArrayOutputStream);
-
-            zipContent.setContent(byteArrayOutputStream.toByteArray());
-            return zipContent;
-        } catch (IOException ioe) {
-            throw new RuntimeException(ioe);
+    private synchronized ExecutorService getCompressionExecutor() {
+        if (compressionExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "catalog-archive-compression-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(getCompressionThreads(),
+                                                                 getCompressionThreads(),
+                                                                 COMPRESSION_THREAD_KEEP_ALIVE_SECONDS,
+                                                                 TimeUnit.SECONDS,
+                                                                 new LinkedBlockingQueue<>(),
+                                                                 threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            compressionExecutor = executor;
         }
+        return compressionExecutor;
+    }
 
+    @PreDestroy
+    public synchronized void close() {
+        if (compressionExecutor != null) {
+            compressionExecutor.shutdownNow();
+            compressionExecutor = null;
+        }
     }
 
     /**
-     * Extract files from an archive
-     * @param byteArrayArchive the archive as byte array
-     * @return the list of catalogObjects byte arrays
+     * Extract files from an archive stored in a file, reading its entries from the central directory. The files are
+     * given to the consumer in batches, each batch being read once the previous one has been consumed, so that at
+     * most one batch of contents is in memory.
+     * @param archive the ZIP file
+     * @param batchSize the maximum number of files of a batch
+     * @param batchConsumer receives the files of each batch, in the order of the archive
+     * @return the number of extracted files
      */
-    public List<FileNameAndContent> extractZIP(byte[] byteArrayArchive) {
+    public int extractZIPFile(File archive, int batchSize, Consumer<List<FileNameAndContent>> batchConsumer) {
 
-        List<FileNameAndContent> filesList = new ArrayList<>();
-        if (byteArrayArchive == null) {
-            return filesList;
-        }
-
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(byteArrayArchive)) {
-            ZipUtil.iterate(byteArrayInputStream, (in, zipEntry) -> checkAndAddFileFromZip(filesList, in, zipEntry));
+        int fileCount = 0;
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            if (zipFile.size() > maxEntries) {
+                throw new ArchiveTooLargeException("The archive contains " + zipFile.size() +
+                                                   " entries, more than the maximum of " + maxEntries);
+            }
+            ExtractionLimits limits = new ExtractionLimits();
+            List<FileNameAndContent> batch = new ArrayList<>(batchSize);
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                FileNameAndContent file;
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    file = checkAndExtractFileFromZip(in, entry, limits);
+                }
+                if (file != null) {
+                    batch.add(file);
+                    fileCount++;
+                }
+                if (batch.size() >= batchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+            }
+        } catch (ZipException ze) {
+            throw new UnprocessableEntityException("Malformed archive");
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
         }
 
-        return filesList;
+        return fileCount;
     }
 
     /**
      * check the name of zip entry, exclude containing folder as extracting file
-     * @param filesList
      * @param in
      * @param entry
+     * @param limits
+     * @return the extracted file, or null for a folder
      */
-    private void checkAndAddFileFromZip(List<FileNameAndContent> filesList, InputStream in, ZipEntry entry) {
+    private FileNameAndContent checkAndExtractFileFromZip(InputStream in, ZipEntry entry, ExtractionLimits limits)
+            throws IOException {
+        limits.countEntry();
         String nameZipEntry = FilenameUtils.getName(entry.getName());
-        if (!nameZipEntry.isEmpty()) {
-            filesList.add(process(in, entry));
+        if (nameZipEntry.isEmpty()) {
+            return null;
         }
+        return process(in, entry, limits);
     }
 
     /**
      * Extract ZIP entry into a byte array
      * @param in entry content
      * @param entry ZipEntry
+     * @param limits
      * @return FileNameAndContent
      */
-    private FileNameAndContent process(InputStream in, ZipEntry entry) {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            FileNameAndContent file = new FileNameAndContent();
-            file.setName(FilenameUtils.getBaseName(entry.getName()));
-            file.setFileNameWithExtension(FilenameUtils.getName(entry.getName()));
-
-            int data = 0;
-            while ((data = in.read()) != -1) {
-                outputStream.write(data);
+    private FileNameAndContent process(InputStream in, ZipEntry entry, ExtractionLimits limits) throws IOException {
+        FileNameAndContent file = new FileNameAndContent();
+        file.setName(FilenameUtils.getBaseName(entry.getName()));
+        file.setFileNameWithExtension(FilenameUtils.getName(entry.getName()));
+
+        // The declared size is only a hint, which cannot make the buffer grow before any byte is read
+        int initialSize = entry.getSize() >= 0 ? (int) Math.min(entry.getSize(), COPY_BUFFER_SIZE)
+                                               : COPY_BUFFER_SIZE;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(initialSize);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long entrySize = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            entrySize += read;
+            if (entrySize > maxEntrySize) {
+                throw new ArchiveTooLargeException("The archive entry " + entry.getName() +
+                                                   " is larger than the maximum of " + maxEntrySize + " bytes");
+            }
+            limits.countBytes(read);
+            outputStream.write(buffer, 0, read);
+        }
+        file.setContent(outputStream.toByteArray());
+        return file;
+    }
+
+    /**
+     * Number of entries and of uncompressed bytes read so far from an archive.
+     */
+    private class ExtractionLimits {
+
+        private int entryCount;
+
+        private long totalSize;
+
+        void countEntry() {
+            if (++entryCount > maxEntries) {
+                throw new ArchiveTooLargeException("The archive contains more than the maximum of " + maxEntries +
+                                                   " entries");
+            }
+        }
+
+        void countBytes(int byteCount) {
+            totalSize += byteCount;
+            if (totalSize > maxTotalSize) {
+                throw new ArchiveTooLargeException("The uncompressed content of the archive is larger than the maximum of " +
+                                                   maxTotalSize + " bytes");
             }
-            file.setContent(outputStream.toByteArray());
-            return file;
-        } catch (IOException ioe) {
-            throw new RuntimeException(ioe);
         }
     }
 }
@@ -33,13 +33,17 @@ import java.net.URLEncoder;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.ow2.proactive.catalog.rest.controller.CatalogObjectController;
 import org.ow2.proactive.catalog.rest.controller.CatalogObjectRevisionController;
 import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
 import org.ow2.proactive.microservices.common.exception.NotAuthenticatedException;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.core.LinkBuilderSupport;
 import org.springframework.hateoas.mvc.ControllerLinkBuilder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponents;
 
 import lombok.extern.log4j.Log4j2;
@@ -139,6 +143,29 @@ public class LinkUtil {
         return link;
     }
 
+    /**
+     * Adds a <code>Link</code> header referencing the next page to the response, unless the given page is the last
+     * one. The next page URL is the current request URL, with the <code>after</code> parameter set to the key of the
+     * last item of the given page.
+     *
+     * @param response The response to the current request
+     * @param page The page returned to the current request
+     */
+    public static void addNextPageLink(HttpServletResponse response, KeysetPage<?> page) {
+        if (page.getNextAfter() == null) {
+            return;
+        }
+        try {
+            String nextPageLink = ServletUriComponentsBuilder.fromCurrentRequest()
+                                                             .replaceQueryParam("after", encodeUrl(page.getNextAfter()))
+                                                             .build(true)
+                                                             .toUriString();
+            response.addHeader("Link", new Link(nextPageLink, Link.REL_NEXT).toString());
+        } catch (UnsupportedEncodingException e) {
+            log.error("{} cannot be encoded", page.getNextAfter(), e);
+        }
+    }
+
     // ControllerLinkBuilder.linkTo has a problem: it double-URL-encodes characters!
     // e.g. ' ' (whitespace) is encoded to '%2525' instead of '%20'
     // TODO remove hack when https://github.com/spring-projects/spring-hateoas/issues/40 is resolved
@@ -0,0 +1,328 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.google.common.io.CountingOutputStream;
+
+
+/**
+ * Writes a ZIP archive to a stream while its entries are added. Entries are deflated in parallel by the given
+ * executor, at most the given number of entries ahead of the one being written, and are written in the order they
+ * were added. The stream is neither buffered in memory nor closed.
+ *
+ * The ZIP64 records are only written when the archive needs them, for 65535 entries or more or for entries starting
+ * after 4 GB. Entries themselves are held in byte arrays and never need ZIP64 sizes.
+ *
+ * @author ActiveEon Team
+ */
+public class ParallelZipWriter implements Closeable {
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int ZIP64_EXTRA_FIELD_TAG = 0x0001;
+
+    /**
+     * Size of the ZIP64 end of central directory record, without its signature and this size
+     */
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 44;
+
+    private static final int VERSION = 20;
+
+    private static final int ZIP64_VERSION = 45;
+
+    private static final int UTF8_NAMES_FLAG = 0x0800;
+
+    private static final int DEFLATED = 8;
+
+    /**
+     * Values of the offsets, sizes and counts which are too large for their field, and given by the ZIP64 records
+     */
+    private static final long ZIP64_MAGIC_SIZE = 0xFFFFFFFFL;
+
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
+    private final CountingOutputStream outputStream;
+
+    private final ExecutorService executor;
+
+    private final int maxPendingEntries;
+
+    private final Deque<Future<DeflatedEntry>> pendingEntries = new ArrayDeque<>();
+
+    private final List<CentralDirectoryEntry> centralDirectory = new ArrayList<>();
+
+    private final int dosTime;
+
+    private final int dosDate;
+
+    public ParallelZipWriter(OutputStream outputStream, ExecutorService executor, int maxPendingEntries) {
+        this.outputStream = new CountingOutputStream(outputStream);
+        this.executor = executor;
+        this.maxPendingEntries = Math.max(1, maxPendingEntries);
+        LocalDateTime now = LocalDateTime.now();
+        this.dosTime = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() / 2);
+        this.dosDate = ((now.getYear() - 1980) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+    }
+
+    /**
+     * Submits the deflation of the given entry, after writing the oldest pending entries if too many are pending.
+     */
+    public void addEntry(String name, byte[] content) throws IOException {
+        while (pendingEntries.size() >= maxPendingEntries) {
+            writeOldestPendingEntry();
+        }
+        pendingEntries.add(executor.submit(() -> deflate(name, content)));
+    }
+
+    /**
+     * Writes the pending entries and the central directory, then flushes the stream.
+     */
+    public void finish() throws IOException {
+        while (!pendingEntries.isEmpty()) {
+            writeOldestPendingEntry();
+        }
+        long centralDirectoryOffset = outputStream.getCount();
+        for (CentralDirectoryEntry entry : centralDirectory) {
+            writeCentralDirectoryHeader(entry);
+        }
+        long centralDirectorySize = outputStream.getCount() - centralDirectoryOffset;
+        int entryCount = centralDirectory.size();
+
+        boolean zip64 = entryCount >= ZIP64_MAGIC_COUNT || centralDirectorySize >= ZIP64_MAGIC_SIZE ||
+                        centralDirectoryOffset >= ZIP64_MAGIC_SIZE;
+        if (zip64) {
+            writeZip64EndOfCentralDirectory(entryCount, centralDirectorySize, centralDirectoryOffset);
+        }
+        writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entryCount, ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(entryCount, ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(centralDirectorySize, ZIP64_MAGIC_SIZE));
+        writeInt(Math.min(centralDirectoryOffset, ZIP64_MAGIC_SIZE));
+        writeShort(0);
+        outputStream.flush();
+    }
+
+    private void writeZip64EndOfCentralDirectory(int entryCount, long centralDirectorySize,
+            long centralDirectoryOffset) throws IOException {
+        long zip64EndOfCentralDirectoryOffset = outputStream.getCount();
+        writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+        writeShort(ZIP64_VERSION);
+        writeShort(ZIP64_VERSION);
+        // number of this disk and of the disk of the central directory
+        writeInt(0);
+        writeInt(0);
+        writeLong(entryCount);
+        writeLong(entryCount);
+        writeLong(centralDirectorySize);
+        writeLong(centralDirectoryOffset);
+
+        writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+        writeInt(0);
+        writeLong(zip64EndOfCentralDirectoryOffset);
+        // total number of disks
+        writeInt(1);
+    }
+
+    /**
+     * Cancels the deflation of the entries which were not written.
+     */
+    @Override
+    public void close() {
+        pendingEntries.forEach(entry -> entry.cancel(true));
+        pendingEntries.clear();
+    }
+
+    private void writeOldestPendingEntry() throws IOException {
+        DeflatedEntry entry;
+        try {
+            entry = pendingEntries.peekFirst().get();
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot deflate archive entry", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while deflating archive entries", e);
+        }
+        pendingEntries.removeFirst();
+
+        long offset = outputStream.getCount();
+        writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(UTF8_NAMES_FLAG);
+        writeShort(DEFLATED);
+        writeShort(dosTime);
+        writeShort(dosDate);
+        writeInt(entry.crc);
+        writeInt(entry.compressedContent.length);
+        writeInt(entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        outputStream.write(entry.name);
+        outputStream.write(entry.compressedContent);
+
+        centralDirectory.add(new CentralDirectoryEntry(entry.name,
+                                                       entry.crc,
+                                                       entry.compressedContent.length,
+                                                       entry.size,
+                                                       offset));
+    }
+
+    /**
+     * The offset of entries starting after 4 GB is given by a ZIP64 extra field.
+     */
+    private void writeCentralDirectoryHeader(CentralDirectoryEntry entry) throws IOException {
+        boolean zip64 = entry.offset >= ZIP64_MAGIC_SIZE;
+        int version = zip64 ? ZIP64_VERSION : VERSION;
+        writeInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+        writeShort(version);
+        writeShort(version);
+        writeShort(UTF8_NAMES_FLAG);
+        writeShort(DEFLATED);
+        writeShort(dosTime);
+        writeShort(dosDate);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+        writeShort(entry.name.length);
+        // extra field, holding the tag, the size and the offset in the ZIP64 case
+        writeShort(zip64 ? 12 : 0);
+        // comment, disk number, internal and external attributes
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(Math.min(entry.offset, ZIP64_MAGIC_SIZE));
+        outputStream.write(entry.name);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_FIELD_TAG);
+            writeShort(8);
+            writeLong(entry.offset);
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        outputStream.write(value & 0xFF);
+        outputStream.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt(value & 0xFFFFFFFFL);
+        writeInt(value >>> 32);
+    }
+
+    private static DeflatedEntry deflate(String name, byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream compressedContent = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] buffer = new byte[DEFLATE_BUFFER_SIZE];
+            while (!deflater.finished()) {
+                compressedContent.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return new DeflatedEntry(name.getBytes(StandardCharsets.UTF_8),
+                                     crc.getValue(),
+                                     content.length,
+                                     compressedContent.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static class DeflatedEntry {
+
+        private final byte[] name;
+
+        private final long crc;
+
+        private final long size;
+
+        private final byte[] compressedContent;
+
+        DeflatedEntry(byte[] name, long crc, long size, byte[] compressedContent) {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.compressedContent = compressedContent;
+        }
+    }
+
+    private static class CentralDirectoryEntry {
+
+        private final byte[] name;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long offset;
+
+        CentralDirectoryEntry(byte[] name, long crc, long compressedSize, long size, long offset) {
+            this.name = name;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
@@ -26,14 +26,32 @@
 package org.ow2.proactive.catalog.util;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.ow2.proactive.catalog.dto.CatalogRawObject;
+import org.ow2.proactive.catalog.service.exception.RawObjectStoreException;
 import org.ow2.proactive.catalog.util.parser.SupportedParserKinds;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import com.google.common.io.ByteStreams;
 
 import lombok.extern.log4j.Log4j2;
 
@@ -48,11 +66,86 @@ public class RawObjectResponseCreator {
 
     public final static String WORKFLOW_EXTENSION = ".xml";
 
+    private static final String BYTES_UNIT = "bytes";
+
+    /**
+     * Request attributes of the Tomcat sendfile support, with which the container writes a range of a file to the
+     * socket itself once the servlet returns
+     */
+    static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+    static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+    static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+    static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
     public ResponseEntity createRawObjectResponse(CatalogRawObject rawObject) {
+        return createRawObjectResponse(rawObject, null);
+    }
+
+    /**
+     * Creates the response of a raw object request, with the part of the content selected by the If-Range and Range
+     * headers of the request. The range is ignored when the If-Range header does not match the given strong ETag or
+     * the commit time of the object, as the client holds another revision.
+     */
+    public ResponseEntity createRawObjectResponse(CatalogRawObject rawObject, WebRequest webRequest, String eTag) {
+        String range = webRequest.getHeader(HttpHeaders.RANGE);
+        String ifRange = webRequest.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && ifRange != null && !matchesIfRange(ifRange, eTag, rawObject)) {
+            range = null;
+        }
+        HttpServletRequest servletRequest = null;
+        if (webRequest instanceof NativeWebRequest) {
+            servletRequest = ((NativeWebRequest) webRequest).getNativeRequest(HttpServletRequest.class);
+        }
+        return createRawObjectResponse(rawObject, range, servletRequest);
+    }
+
+    /**
+     * Creates the response of a raw object request. A single byte range is answered with 206 Partial Content, or
+     * 416 Range Not Satisfiable when it starts after the end of the content. Malformed and multiple ranges are
+     * ignored, and the whole content is sent.
+     *
+     * @param range the value of the Range header of the request, or null
+     */
+    public ResponseEntity createRawObjectResponse(CatalogRawObject rawObject, String range) {
+        return createRawObjectResponse(rawObject, range, null);
+    }
+
+    /**
+     * @param servletRequest the request, through which the container is asked to send the range of a stored file
+     * itself when it supports it, or null
+     */
+    private ResponseEntity createRawObjectResponse(CatalogRawObject rawObject, String range,
+            HttpServletRequest servletRequest) {
         String name = rawObject.getName();
-        byte[] bytes = rawObject.getRawObject();
+        long contentLength = rawObject.getContentLength();
 
-        ResponseEntity.BodyBuilder responseBodyBuilder = ResponseEntity.ok().contentLength(bytes.length);
+        long start = 0;
+        long end = contentLength - 1;
+        HttpRange httpRange = parseSingleRange(range);
+        if (httpRange != null) {
+            start = httpRange.getRangeStart(contentLength);
+            end = httpRange.getRangeEnd(contentLength);
+            if (start >= contentLength || start > end) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                                     .header(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT)
+                                     .header(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + contentLength)
+                                     .build();
+            }
+        }
+        long length = contentLength == 0 ? 0 : end - start + 1;
+
+        ResponseEntity.BodyBuilder responseBodyBuilder;
+        if (httpRange == null) {
+            responseBodyBuilder = ResponseEntity.ok();
+        } else {
+            responseBodyBuilder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                                                .header(HttpHeaders.CONTENT_RANGE,
+                                                        BYTES_UNIT + " " + start + "-" + end + "/" + contentLength);
+        }
+        responseBodyBuilder.contentLength(length).header(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
 
         try {
             String contentDispositionFileName = getNameWithFileExtension(rawObject.getName(),
@@ -73,7 +166,63 @@ public class RawObjectResponseCreator {
                      ", the contentType: " + rawObject.getContentType(), mimeEx);
         }
 
-        return responseBodyBuilder.body(new InputStreamResource(new ByteArrayInputStream(bytes)));
+        if (rawObject.getRawObjectFile() != null && length > 0 && isSendfileSupported(servletRequest)) {
+            // the body is left empty, the container transfers the range from the file without copying it in the heap
+            servletRequest.setAttribute(SENDFILE_FILENAME_ATTRIBUTE,
+                                        rawObject.getRawObjectFile().toAbsolutePath().toString());
+            servletRequest.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            servletRequest.setAttribute(SENDFILE_END_ATTRIBUTE, end + 1);
+            return responseBodyBuilder.build();
+        }
+        return responseBodyBuilder.body(new InputStreamResource(openContent(rawObject, start, length)));
+    }
+
+    private boolean isSendfileSupported(HttpServletRequest servletRequest) {
+        return servletRequest != null && Boolean.TRUE.equals(servletRequest.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE));
+    }
+
+    /**
+     * Contents kept in a file of the raw object store which the container cannot send itself are streamed from a
+     * file channel positioned at the start of the range, so that they are never entirely read in memory. The stream
+     * is closed once the response is written.
+     */
+    private InputStream openContent(CatalogRawObject rawObject, long start, long length) {
+        if (rawObject.getRawObjectFile() == null) {
+            return new ByteArrayInputStream(rawObject.getRawObject(), (int) start, (int) length);
+        }
+        try {
+            FileChannel channel = FileChannel.open(rawObject.getRawObjectFile(), StandardOpenOption.READ);
+            channel.position(start);
+            return ByteStreams.limit(Channels.newInputStream(channel), length);
+        } catch (IOException e) {
+            throw new RawObjectStoreException("Cannot read raw object " + rawObject.getRawObjectFile(), e);
+        }
+    }
+
+    private HttpRange parseSingleRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed range {}", range, e);
+            return null;
+        }
+    }
+
+    private boolean matchesIfRange(String ifRange, String eTag, CatalogRawObject rawObject) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // weak validators cannot be used in If-Range
+            return ifRange.equals(eTag);
+        }
+        try {
+            ZonedDateTime date = DateTimeFormatter.RFC_1123_DATE_TIME.parse(ifRange, ZonedDateTime::from);
+            return date.toEpochSecond() == Long.parseLong(rawObject.getCommitTimeRaw()) / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
     }
 
     /**
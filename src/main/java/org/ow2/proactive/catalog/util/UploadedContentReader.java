@@ -0,0 +1,69 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util;
+
+import java.io.IOException;
+
+import org.ow2.proactive.catalog.service.exception.CatalogObjectTooLargeException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+
+/**
+ * Reads the content of uploaded catalog objects. The multipart resolver spools large parts to disk, so the size of
+ * a part is checked before its content is read into memory, and an oversized part is never loaded at all.
+ *
+ * @author ActiveEon Team
+ */
+@Component
+public class UploadedContentReader {
+
+    private final long maxObjectSize;
+
+    /**
+     * @param maxObjectSize maximum size in bytes of an uploaded object, 0 for no limit
+     */
+    @Autowired
+    public UploadedContentReader(@Value("${pa.catalog.upload.max.object.size.bytes:104857600}") long maxObjectSize) {
+        this.maxObjectSize = maxObjectSize;
+    }
+
+    /**
+     * @throws CatalogObjectTooLargeException if the part is larger than the maximum object size
+     */
+    public byte[] read(MultipartFile file) throws IOException {
+        if (maxObjectSize > 0 && file.getSize() > maxObjectSize) {
+            throw new CatalogObjectTooLargeException("The uploaded object " + file.getOriginalFilename() + " has " +
+                                                     file.getSize() + " bytes, more than the maximum of " +
+                                                     maxObjectSize);
+        }
+        // a part spooled to disk is read once into an array of its exact size, a part in memory is not copied
+        return file.getBytes();
+    }
+
+}
@@ -42,10 +42,12 @@ public abstract class AbstractCatalogObjectParser {
     public static final String GENERAL_LABEL = "General";
 
     public List<KeyValueLabelMetadataEntity> parse(InputStream inputStream) {
+        return withMainIcon(getMetadataKeyValues(inputStream));
+    }
 
-        List<KeyValueLabelMetadataEntity> keyValueMetadataEntities = new ArrayList<>();
+    protected List<KeyValueLabelMetadataEntity> withMainIcon(List<KeyValueLabelMetadataEntity> keyValues) {
 
-        keyValueMetadataEntities.addAll(getMetadataKeyValues(inputStream));
+        List<KeyValueLabelMetadataEntity> keyValueMetadataEntities = new ArrayList<>(keyValues);
 
         keyValueMetadataEntities.add(new KeyValueLabelMetadataEntity("main.icon",
                                                                      getIconPath(keyValueMetadataEntities),
@@ -0,0 +1,177 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util.parser;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Value;
+
+
+/**
+ * Values read from a workflow in a single pass by {@link StaxWorkflowProcessor}, along with the position of its job
+ * generic information, which allows to replace them without parsing the workflow again.
+ *
+ * @author ActiveEon Team
+ */
+@Getter
+@Builder
+public class ParsedWorkflow {
+
+    @Value
+    public static class Variable {
+
+        private final String name;
+
+        private final String value;
+
+        private final String model;
+    }
+
+    private final String name;
+
+    private final String projectName;
+
+    private final String description;
+
+    private final String visualization;
+
+    private final Map<String, String> genericInformation;
+
+    private final List<Variable> variables;
+
+    private final List<Variable> taskVariables;
+
+    /**
+     * URLs of the scripts of the tasks, as written in the workflow.
+     */
+    private final List<String> scriptUrls;
+
+    private final byte[] content;
+
+    private final Charset charset;
+
+    private final String text;
+
+    private final boolean genericInformationPresent;
+
+    /**
+     * Offsets in {@link #text} of the job generic information element, or of the element before which it must be
+     * inserted, -1 when there is none.
+     */
+    private final int genericInformationStart;
+
+    private final int genericInformationEnd;
+
+    private final String genericInformationElementName;
+
+    private final String infoElementName;
+
+    /**
+     * Replaces the job generic information of the workflow.
+     *
+     * @return the original content when the generic information are unchanged, or when there is no place to add them
+     */
+    public byte[] replaceGenericInformation(Map<String, String> newGenericInformation) {
+        if (genericInformationPresent && genericInformation.equals(newGenericInformation)) {
+            return content;
+        }
+        if (genericInformationStart < 0) {
+            return content;
+        }
+
+        String indentation = indentationBefore(genericInformationStart);
+        StringBuilder result = new StringBuilder(text.length() + 64 * (newGenericInformation.size() + 1));
+        result.append(text, 0, genericInformationStart);
+        if (newGenericInformation.isEmpty()) {
+            result.append('<').append(genericInformationElementName).append("/>");
+        } else {
+            result.append('<').append(genericInformationElementName).append('>');
+            newGenericInformation.forEach((name, value) -> result.append('\n')
+                                                                 .append(indentation)
+                                                                 .append("  <")
+                                                                 .append(infoElementName)
+                                                                 .append(" name=\"")
+                                                                 .append(escapeAttribute(name))
+                                                                 .append("\" value=\"")
+                                                                 .append(escapeAttribute(value))
+                                                                 .append("\"/>"));
+            result.append('\n').append(indentation).append("</").append(genericInformationElementName).append('>');
+        }
+        if (genericInformationPresent) {
+            result.append(text, genericInformationEnd, text.length());
+        } else {
+            result.append('\n').append(indentation).append(text, genericInformationStart, text.length());
+        }
+        return result.toString().getBytes(charset);
+    }
+
+    private String indentationBefore(int offset) {
+        int lineStart = offset;
+        while (lineStart > 0 && (text.charAt(lineStart - 1) == ' ' || text.charAt(lineStart - 1) == '\t')) {
+            lineStart--;
+        }
+        return text.substring(lineStart, offset);
+    }
+
+    private static String escapeAttribute(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char character : value.toCharArray()) {
+            switch (character) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                case '\n':
+                    escaped.append("&#10;");
+                    break;
+                case '\r':
+                    escaped.append("&#13;");
+                    break;
+                case '\t':
+                    escaped.append("&#9;");
+                    break;
+                default:
+                    escaped.append(character);
+            }
+        }
+        return escaped.toString();
+    }
+}
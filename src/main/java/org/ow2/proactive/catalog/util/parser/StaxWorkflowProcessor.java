@@ -0,0 +1,322 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.ow2.proactive.catalog.service.exception.ParsingObjectException;
+
+
+/**
+ * Reads a ProActive XML workflow with a single StAX pass, whatever the schema version is. It collects the values
+ * stored as metadata of the workflow and locates its job generic information, so that they can be replaced by
+ * {@link ParsedWorkflow#replaceGenericInformation(Map)} without parsing nor serializing the rest of the workflow.
+ * The factory is shared, creating one being far more expensive than reading a workflow.
+ *
+ * When given a {@link WorkflowSchemaValidator}, the workflow is also validated against its schema during the same
+ * pass.
+ *
+ * @author ActiveEon Team
+ */
+public class StaxWorkflowProcessor {
+
+    private static final String JOB_ELEMENT = "job";
+
+    private static final String GENERIC_INFORMATION_ELEMENT = "genericInformation";
+
+    /**
+     * Children of the job which follow its generic information in the schema.
+     */
+    private static final Set<String> ELEMENTS_AFTER_GENERIC_INFORMATION = new HashSet<>(Arrays.asList("inputSpace",
+                                                                                                      "outputSpace",
+                                                                                                      "globalSpace",
+                                                                                                      "userSpace",
+                                                                                                      "taskFlow"));
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private final WorkflowSchemaValidator workflowSchemaValidator;
+
+    public StaxWorkflowProcessor() {
+        this(null);
+    }
+
+    /**
+     * @param workflowSchemaValidator validator of the workflows, or null to only check that they are well-formed
+     */
+    public StaxWorkflowProcessor(WorkflowSchemaValidator workflowSchemaValidator) {
+        this.workflowSchemaValidator = workflowSchemaValidator;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    public ParsedWorkflow parse(byte[] workflow) {
+        Charset charset = detectCharset(workflow);
+        String text = new String(workflow, charset);
+        // A byte order mark decoded as a character is not accepted before the XML declaration
+        int textStart = text.startsWith("\uFEFF") ? 1 : 0;
+
+        ParsedWorkflow.ParsedWorkflowBuilder result = ParsedWorkflow.builder()
+                                                                    .content(workflow)
+                                                                    .charset(charset)
+                                                                    .text(text);
+        Map<String, String> genericInformation = new LinkedHashMap<>();
+        List<ParsedWorkflow.Variable> variables = new ArrayList<>();
+        List<ParsedWorkflow.Variable> taskVariables = new ArrayList<>();
+        List<String> scriptUrls = new ArrayList<>();
+        boolean genericInformationPresent = false;
+        int genericInformationStart = -1;
+        int genericInformationEnd = -1;
+        String jobPrefix = "";
+        String jobNamespace = "";
+        String genericInformationPrefix = null;
+
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(text.substring(textStart)));
+            if (workflowSchemaValidator != null) {
+                reader = workflowSchemaValidator.validating(reader);
+            }
+            Deque<String> path = new ArrayDeque<>();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    String element = path.pop();
+                    if (path.size() == 1 && GENERIC_INFORMATION_ELEMENT.equals(element) &&
+                        genericInformationEnd < 0) {
+                        genericInformationEnd = endTagEnd(text,
+                                                          textStart + reader.getLocation().getCharacterOffset(),
+                                                          qualifiedName(genericInformationPrefix,
+                                                                        GENERIC_INFORMATION_ELEMENT),
+                                                          genericInformationStart);
+                    }
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                String parent = path.peek();
+                int depth = path.size();
+                if (depth == 0) {
+                    jobNamespace = nonNull(reader.getNamespaceURI());
+                }
+                // elements of other namespaces are kept qualified, so that they never match job elements
+                String element = jobNamespace.equals(nonNull(reader.getNamespaceURI())) ? reader.getLocalName()
+                                                                                        : reader.getName().toString();
+                path.push(element);
+
+                if (depth == 0) {
+                    if (!JOB_ELEMENT.equals(element)) {
+                        throw new ParsingObjectException("The root element of a workflow must be job, not " + element);
+                    }
+                    jobPrefix = reader.getPrefix();
+                    result.name(attribute(reader, "name")).projectName(attribute(reader, "projectName"));
+                } else if (depth == 1) {
+                    if (GENERIC_INFORMATION_ELEMENT.equals(element) && !genericInformationPresent) {
+                        genericInformationPresent = true;
+                        genericInformationPrefix = reader.getPrefix();
+                        genericInformationStart = startTagStart(text,
+                                                                textStart + reader.getLocation().getCharacterOffset(),
+                                                                qualifiedName(genericInformationPrefix, element));
+                    } else if (ELEMENTS_AFTER_GENERIC_INFORMATION.contains(element) && !genericInformationPresent &&
+                               genericInformationStart < 0) {
+                        genericInformationStart = startTagStart(text,
+                                                                textStart + reader.getLocation().getCharacterOffset(),
+                                                                qualifiedName(reader.getPrefix(), element));
+                    } else if ("description".equals(element)) {
+                        result.description(reader.getElementText());
+                        path.pop();
+                    }
+                } else if (depth == 2 && "variable".equals(element) && "variables".equals(parent)) {
+                    variables.add(variable(reader));
+                } else if (depth == 2 && "info".equals(element) && GENERIC_INFORMATION_ELEMENT.equals(parent)) {
+                    genericInformation.put(attribute(reader, "name"), attribute(reader, "value"));
+                } else if (depth == 2 && "visualization".equals(element) && "metadata".equals(parent)) {
+                    result.visualization(reader.getElementText());
+                    path.pop();
+                } else if (depth >= 3 && path.contains("task")) {
+                    if (depth == 4 && "variable".equals(element) && "variables".equals(parent)) {
+                        taskVariables.add(variable(reader));
+                    } else if ("file".equals(element) && "script".equals(parent)) {
+                        scriptUrls.add(attribute(reader, "url"));
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new ParsingObjectException(e.getMessage(), e);
+        } finally {
+            closeQuietly(reader);
+        }
+
+        if (genericInformationPresent && genericInformationEnd < 0) {
+            throw new ParsingObjectException("Unterminated job generic information");
+        }
+        String genericInformationElementPrefix = genericInformationPresent ? genericInformationPrefix : jobPrefix;
+        return result.genericInformation(genericInformation)
+                     .variables(variables)
+                     .taskVariables(taskVariables)
+                     .scriptUrls(scriptUrls)
+                     .genericInformationPresent(genericInformationPresent)
+                     .genericInformationStart(genericInformationStart)
+                     .genericInformationEnd(genericInformationEnd)
+                     .genericInformationElementName(qualifiedName(genericInformationElementPrefix,
+                                                                  GENERIC_INFORMATION_ELEMENT))
+                     .infoElementName(qualifiedName(genericInformationElementPrefix, "info"))
+                     .build();
+    }
+
+    /**
+     * Reads the encoding from the byte order mark or the XML declaration, UTF-8 being the default of XML.
+     */
+    private static Charset detectCharset(byte[] workflow) {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(workflow));
+            String encoding = reader.getCharacterEncodingScheme() != null ? reader.getCharacterEncodingScheme()
+                                                                          : reader.getEncoding();
+            return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            throw new ParsingObjectException(e.getMessage(), e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static ParsedWorkflow.Variable variable(XMLStreamReader reader) {
+        return new ParsedWorkflow.Variable(attribute(reader, "name"),
+                                           attribute(reader, "value"),
+                                           attribute(reader, "model"));
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * StAX implementations report either the start or the end of the current tag, the start of the tag is found
+     * from both.
+     */
+    private static int startTagStart(String text, int reportedOffset, String qualifiedName) {
+        String tagOpening = "<" + qualifiedName;
+        if (isTagAt(text, reportedOffset, tagOpening)) {
+            return reportedOffset;
+        }
+        int tagStart = text.lastIndexOf('<', reportedOffset - 1);
+        if (tagStart < 0 || !isTagAt(text, tagStart, tagOpening)) {
+            throw new ParsingObjectException("Cannot locate the element " + qualifiedName + " in the workflow");
+        }
+        return tagStart;
+    }
+
+    private static int endTagEnd(String text, int reportedOffset, String qualifiedName, int startTagStart) {
+        int startTagEnd = tagEnd(text, startTagStart);
+        if (text.charAt(startTagEnd - 1) == '/') {
+            return startTagEnd + 1;
+        }
+        String tagOpening = "</" + qualifiedName;
+        if (isTagAt(text, reportedOffset, tagOpening)) {
+            return tagEnd(text, reportedOffset) + 1;
+        }
+        int tagStart = text.lastIndexOf('<', reportedOffset - 1);
+        if (tagStart < 0 || !isTagAt(text, tagStart, tagOpening)) {
+            throw new ParsingObjectException("Cannot locate the end of the element " + qualifiedName +
+                                             " in the workflow");
+        }
+        return tagEnd(text, tagStart) + 1;
+    }
+
+    private static boolean isTagAt(String text, int offset, String tagOpening) {
+        if (offset < 0 || !text.startsWith(tagOpening, offset) || offset + tagOpening.length() >= text.length()) {
+            return false;
+        }
+        char next = text.charAt(offset + tagOpening.length());
+        return next == '>' || next == '/' || Character.isWhitespace(next);
+    }
+
+    /**
+     * @return the offset of the closing bracket of the tag starting at the given offset, brackets in quoted attribute
+     * values being skipped
+     */
+    private static int tagEnd(String text, int tagStart) {
+        char quote = 0;
+        for (int index = tagStart + 1; index < text.length(); index++) {
+            char character = text.charAt(index);
+            if (quote != 0) {
+                if (character == quote) {
+                    quote = 0;
+                }
+            } else if (character == '"' || character == '\'') {
+                quote = character;
+            } else if (character == '>') {
+                return index;
+            }
+        }
+        throw new ParsingObjectException("Unterminated tag in the workflow");
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // nothing to release, the reader being backed by memory
+            }
+        }
+    }
+}
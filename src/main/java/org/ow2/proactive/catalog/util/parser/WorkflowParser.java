@@ -25,28 +25,24 @@
  */
 package org.ow2.proactive.catalog.util.parser;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.IOUtils;
 import org.ow2.proactive.catalog.repository.entity.KeyValueLabelMetadataEntity;
 import org.ow2.proactive.catalog.service.exception.ParsingObjectException;
 import org.ow2.proactive.catalog.util.SeparatorUtility;
-import org.ow2.proactive.scheduler.common.exception.JobCreationException;
-import org.ow2.proactive.scheduler.common.job.Job;
-import org.ow2.proactive.scheduler.common.job.JobVariable;
-import org.ow2.proactive.scheduler.common.job.TaskFlowJob;
-import org.ow2.proactive.scheduler.common.job.factories.JobFactory;
-import org.ow2.proactive.scheduler.common.task.ScriptTask;
-import org.ow2.proactive.scheduler.common.task.Task;
-import org.ow2.proactive.scheduler.common.task.TaskVariable;
 import org.ow2.proactive.scheduler.core.properties.PASchedulerProperties;
 import org.springframework.stereotype.Component;
 
@@ -95,42 +91,71 @@ public final class WorkflowParser extends AbstractCatalogObjectParser {
 
     private static final Pattern PATTERN = Pattern.compile(CATALOG_OBJECT_MODEL_REGEXP);
 
+    private static final String CATALOG_REST_URL_VARIABLE = "PA_CATALOG_REST_URL";
+
+    private static final Pattern VARIABLE_REFERENCE_PATTERN = Pattern.compile("\\$\\{([^}]+)\\}");
+
     public static final String JOB_DESCRIPTION_KEY = "description";
 
     private static final String JOB_VISUALIZATION_KEY = "visualization";
 
     SeparatorUtility separatorUtility = new SeparatorUtility();
 
+    private static final WorkflowSchemaValidator WORKFLOW_SCHEMA_VALIDATOR = new WorkflowSchemaValidator();
+
+    private final StaxWorkflowProcessor staxWorkflowProcessor = new StaxWorkflowProcessor(WORKFLOW_SCHEMA_VALIDATOR);
+
     @Override
     List<KeyValueLabelMetadataEntity> getMetadataKeyValues(InputStream inputStream) {
-        TaskFlowJob job;
         try {
-            job = (TaskFlowJob) JobFactory.getFactory().createJob(inputStream);
-        } catch (JobCreationException e) {
+            return getMetadataKeyValues(parseWorkflow(IOUtils.toByteArray(inputStream)));
+        } catch (IOException e) {
             throw new ParsingObjectException(e.getMessage(), e);
         }
+    }
+
+    /**
+     * Reads and validates a workflow once, so that its generic information can be replaced from the result without
+     * parsing it again.
+     */
+    public ParsedWorkflow parseWorkflow(byte[] workflow) {
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(workflow);
+        if (parsedWorkflow.getName() == null) {
+            throw new ParsingObjectException("The workflow has no name");
+        }
+        return parsedWorkflow;
+    }
+
+    /**
+     * @return the key values of a workflow read by {@link #parseWorkflow(byte[])}, including its icon
+     */
+    public List<KeyValueLabelMetadataEntity> getKeyValues(ParsedWorkflow workflow) {
+        return withMainIcon(getMetadataKeyValues(workflow));
+    }
+
+    private List<KeyValueLabelMetadataEntity> getMetadataKeyValues(ParsedWorkflow workflow) {
         Set keyValueMapBuilder = new LinkedHashSet();
 
-        addProjectNameIfNotNullAndNotEmpty(keyValueMapBuilder, job);
-        addJobNameIfNotNull(keyValueMapBuilder, job);
-        job.getUnresolvedGenericInformation()
-           .forEach((name, value) -> addGenericInformationIfNotNull(keyValueMapBuilder, name, value));
-        job.getUnresolvedVariables()
-           .values()
-           .forEach(jobVariable -> addVariableIfNotNullAndModelIfNotEmpty(keyValueMapBuilder, jobVariable));
-        job.getTasks()
-           .forEach(task -> task.getVariables()
-                                .values()
-                                .forEach(taskVariable -> addDependsOnIfCatalogObjectModelExistOnTaskVariable(keyValueMapBuilder,
-                                                                                                             taskVariable)));
-        job.getTasks().forEach(task -> addDependsOnIfScriptUrlExistInEachTaskScripts(keyValueMapBuilder, task));
-        addJobDescriptionIfNotNullAndNotEmpty(keyValueMapBuilder, job);
-        addJobVizualisationIfNotNullAndNotEmpty(keyValueMapBuilder, job);
+        addProjectNameIfNotNullAndNotEmpty(keyValueMapBuilder, workflow);
+        addJobNameIfNotNull(keyValueMapBuilder, workflow);
+        workflow.getGenericInformation()
+                .forEach((name, value) -> addGenericInformationIfNotNull(keyValueMapBuilder, name, value));
+        workflow.getVariables()
+                .forEach(jobVariable -> addVariableIfNotNullAndModelIfNotEmpty(keyValueMapBuilder, jobVariable));
+        workflow.getTaskVariables()
+                .forEach(taskVariable -> addDependsOnIfCatalogObjectModelExistOnTaskVariable(keyValueMapBuilder,
+                                                                                             taskVariable));
+        workflow.getScriptUrls()
+                .forEach(scriptUrl -> addDependsOnIfScriptUrlIsValid(keyValueMapBuilder,
+                                                                     resolveScriptUrl(scriptUrl, workflow)));
+        addJobDescriptionIfNotNullAndNotEmpty(keyValueMapBuilder, workflow);
+        addJobVizualisationIfNotNullAndNotEmpty(keyValueMapBuilder, workflow);
 
         return new ArrayList<>(keyValueMapBuilder);
     }
 
-    private void addProjectNameIfNotNullAndNotEmpty(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, Job job) {
+    private void addProjectNameIfNotNullAndNotEmpty(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder,
+            ParsedWorkflow job) {
         String projectName = job.getProjectName();
         if (checkIfNotNull(projectName) && checkIfNotEmpty(projectName)) {
             keyValueMapBuilder.add(new KeyValueLabelMetadataEntity(PROJECT_NAME_KEY,
@@ -139,7 +164,7 @@ public final class WorkflowParser extends AbstractCatalogObjectParser {
         }
     }
 
-    private void addJobNameIfNotNull(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, Job job) {
+    private void addJobNameIfNotNull(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, ParsedWorkflow job) {
         String name = job.getName();
         if (checkIfNotNull(name)) {
             keyValueMapBuilder.add(new KeyValueLabelMetadataEntity(JOB_NAME_KEY, name, JOB_AND_PROJECT_LABEL));
@@ -154,7 +179,7 @@ public final class WorkflowParser extends AbstractCatalogObjectParser {
     }
 
     private void addVariableIfNotNullAndModelIfNotEmpty(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder,
-            JobVariable jobVariable) {
+            ParsedWorkflow.Variable jobVariable) {
         String name = jobVariable.getName();
         String value = jobVariable.getValue();
         String model = jobVariable.getModel();
@@ -168,7 +193,7 @@ public final class WorkflowParser extends AbstractCatalogObjectParser {
     }
 
     private void addDependsOnIfCatalogObjectModelExistOnTaskVariable(
-            Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, TaskVariable taskVariable) {
+            Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, ParsedWorkflow.Variable taskVariable) {
         String name = taskVariable.getName();
         String value = taskVariable.getValue();
         String model = taskVariable.getModel();
@@ -178,57 +203,38 @@ public final class WorkflowParser extends AbstractCatalogObjectParser {
 
     }
 
-    private void addDependsOnIfScriptUrlExistInEachTaskScripts(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder,
-            Task task) {
-
-        if (task.getPreScript() != null && task.getPreScript().getScriptUrl() != null &&
-            !task.getPreScript().getScriptUrl().toString().isEmpty() &&
-            isScriptUrlValid(shortScriptUrl(task.getPreScript().getScriptUrl().toString()))) {
-            addDependsOn(keyValueMapBuilder, shortScriptUrl(task.getPreScript().getScriptUrl().toString()));
-        }
-
-        if (task.getPostScript() != null && task.getPostScript().getScriptUrl() != null &&
-            !task.getPostScript().getScriptUrl().toString().isEmpty() &&
-            isScriptUrlValid(shortScriptUrl(task.getPostScript().getScriptUrl().toString()))) {
-            addDependsOn(keyValueMapBuilder, shortScriptUrl(task.getPostScript().getScriptUrl().toString()));
-        }
-
-        if (task.getFlowScript() != null && task.getFlowScript().getScriptUrl() != null &&
-            !task.getFlowScript().getScriptUrl().toString().isEmpty() &&
-            isScriptUrlValid(shortScriptUrl(task.getFlowScript().getScriptUrl().toString()))) {
-            addDependsOn(keyValueMapBuilder, shortScriptUrl(task.getFlowScript().getScriptUrl().toString()));
-        }
-
-        if (task.getCleaningScript() != null && task.getCleaningScript().getScriptUrl() != null &&
-            !task.getCleaningScript().getScriptUrl().toString().isEmpty() &&
-            isScriptUrlValid(shortScriptUrl(task.getCleaningScript().getScriptUrl().toString()))) {
-            addDependsOn(keyValueMapBuilder, shortScriptUrl(task.getCleaningScript().getScriptUrl().toString()));
+    private void addDependsOnIfScriptUrlIsValid(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder,
+            String scriptUrl) {
+        if (scriptUrl != null && !scriptUrl.isEmpty() && isScriptUrlValid(shortScriptUrl(scriptUrl))) {
+            addDependsOn(keyValueMapBuilder, shortScriptUrl(scriptUrl));
         }
+    }
 
-        if (task.getForkEnvironment() != null && task.getForkEnvironment().getEnvScript() != null &&
-            task.getForkEnvironment().getEnvScript().getScriptUrl() != null &&
-            !task.getForkEnvironment().getEnvScript().getScriptUrl().toString().isEmpty() &&
-            isScriptUrlValid(shortScriptUrl(task.getForkEnvironment().getEnvScript().getScriptUrl().toString()))) {
-            addDependsOn(keyValueMapBuilder,
-                         shortScriptUrl(task.getForkEnvironment().getEnvScript().getScriptUrl().toString()));
+    /**
+     * Replaces the references to job variables and to {@code PA_CATALOG_REST_URL} in a script URL, as done when
+     * the workflow is submitted.
+     */
+    private String resolveScriptUrl(String scriptUrl, ParsedWorkflow workflow) {
+        if (scriptUrl == null || !scriptUrl.contains("${")) {
+            return scriptUrl;
         }
-
-        if (task instanceof ScriptTask && ((ScriptTask) task).getScript() != null &&
-            ((ScriptTask) task).getScript().getScriptUrl() != null &&
-            !((ScriptTask) task).getScript().getScriptUrl().toString().isEmpty() &&
-            isScriptUrlValid(shortScriptUrl(((ScriptTask) task).getScript().getScriptUrl().toString()))) {
-            addDependsOn(keyValueMapBuilder, shortScriptUrl(((ScriptTask) task).getScript().getScriptUrl().toString()));
+        Map<String, String> replacements = new HashMap<>();
+        workflow.getVariables()
+                .stream()
+                .filter(variable -> checkIfNotNull(variable.getName(), variable.getValue()))
+                .forEach(variable -> replacements.put(variable.getName(), variable.getValue()));
+        String catalogRestUrl = PASchedulerProperties.CATALOG_REST_URL.getValueAsString();
+        if (catalogRestUrl != null) {
+            replacements.put(CATALOG_REST_URL_VARIABLE, catalogRestUrl);
         }
-
-        if (task.getSelectionScripts() != null) {
-            task.getSelectionScripts().forEach(selectionScript -> {
-                if (selectionScript.getScriptUrl() != null && !selectionScript.getScriptUrl().toString().isEmpty() &&
-                    isScriptUrlValid(shortScriptUrl(selectionScript.getScriptUrl().toString()))) {
-                    addDependsOn(keyValueMapBuilder, shortScriptUrl(selectionScript.getScriptUrl().toString()));
-                }
-            });
+        Matcher matcher = VARIABLE_REFERENCE_PATTERN.matcher(scriptUrl);
+        StringBuffer resolvedUrl = new StringBuffer();
+        while (matcher.find()) {
+            String replacement = replacements.getOrDefault(matcher.group(1), matcher.group());
+            matcher.appendReplacement(resolvedUrl, Matcher.quoteReplacement(replacement));
         }
-
+        matcher.appendTail(resolvedUrl);
+        return resolvedUrl.toString();
     }
 
     private void addDependsOn(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, String scriptUrl) {
@@ -290,14 +296,16 @@ public final class WorkflowParser extends AbstractCatalogObjectParser {
         }
     }
 
-    private void addJobDescriptionIfNotNullAndNotEmpty(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, Job job) {
+    private void addJobDescriptionIfNotNullAndNotEmpty(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder,
+            ParsedWorkflow job) {
         String description = job.getDescription();
         if (checkIfNotNull(description) && checkIfNotEmpty(description)) {
             keyValueMapBuilder.add(new KeyValueLabelMetadataEntity(JOB_DESCRIPTION_KEY, description, GENERAL_LABEL));
         }
     }
 
-    private void addJobVizualisationIfNotNullAndNotEmpty(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder, Job job) {
+    private void addJobVizualisationIfNotNullAndNotEmpty(Set<KeyValueLabelMetadataEntity> keyValueMapBuilder,
+            ParsedWorkflow job) {
         String vizualisation = job.getVisualization();
         if (checkIfNotNull(vizualisation) && checkIfNotEmpty(vizualisation)) {
             keyValueMapBuilder.add(new KeyValueLabelMetadataEntity(JOB_VISUALIZATION_KEY,
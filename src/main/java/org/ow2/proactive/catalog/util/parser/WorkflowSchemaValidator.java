@@ -0,0 +1,235 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util.parser;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+
+import org.ow2.proactive.catalog.service.exception.ParsingObjectException;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+
+/**
+ * Validates a workflow against the job descriptor schema of its namespace while it is read, the events of the
+ * StAX reader being forwarded to a {@link ValidatorHandler}. This is the validation formerly done by the scheduler
+ * job factory, without reading the workflow a second time.
+ *
+ * Schemas are read from the scheduler API and compiled once per namespace.
+ *
+ * @author ActiveEon Team
+ */
+public class WorkflowSchemaValidator {
+
+    private static final String JOB_DESCRIPTOR_NAMESPACE_PREFIX = "urn:proactive:jobdescriptor:";
+
+    private static final String SCHEMA_LOCATION = "/org/ow2/proactive/scheduler/common/xml/schemas/jobdescriptor/%s/schedulerjob.xsd";
+
+    private final Function<String, URL> schemaLocator;
+
+    private final Map<String, Schema> schemas = new ConcurrentHashMap<>();
+
+    public WorkflowSchemaValidator() {
+        this(WorkflowSchemaValidator::getSchemaResource);
+    }
+
+    /**
+     * @param schemaLocator returns the location of the schema of a namespace, or null if the namespace is unknown
+     */
+    public WorkflowSchemaValidator(Function<String, URL> schemaLocator) {
+        this.schemaLocator = schemaLocator;
+    }
+
+    /**
+     * @return a reader validating the workflow read by the given reader, which must be at the start of the document,
+     * and throwing {@link ParsingObjectException} at the first validation error
+     */
+    public XMLStreamReader validating(XMLStreamReader reader) {
+        return new ValidatingReader(reader);
+    }
+
+    private Schema getSchema(String namespace) {
+        return schemas.computeIfAbsent(namespace, this::loadSchema);
+    }
+
+    private Schema loadSchema(String namespace) {
+        URL schemaLocation = schemaLocator.apply(namespace);
+        if (schemaLocation == null) {
+            throw new ParsingObjectException("Unknown workflow namespace '" + namespace + "'");
+        }
+        try {
+            return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(schemaLocation);
+        } catch (SAXException e) {
+            throw new ParsingObjectException("Cannot load the schema of the workflow namespace " + namespace, e);
+        }
+    }
+
+    private static URL getSchemaResource(String namespace) {
+        if (!namespace.startsWith(JOB_DESCRIPTOR_NAMESPACE_PREFIX)) {
+            return null;
+        }
+        String version = namespace.substring(JOB_DESCRIPTOR_NAMESPACE_PREFIX.length());
+        return WorkflowSchemaValidator.class.getResource(String.format(SCHEMA_LOCATION, version));
+    }
+
+    /**
+     * Forwards every event, including the ones consumed by {@link #getElementText()}, to the validator handler of
+     * the schema of the root element namespace.
+     */
+    private class ValidatingReader extends StreamReaderDelegate implements Locator {
+
+        private ValidatorHandler validatorHandler;
+
+        ValidatingReader(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            try {
+                forward(event);
+            } catch (SAXException e) {
+                throw new ParsingObjectException("The workflow is not valid: " + e.getMessage(), e);
+            }
+            return event;
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            StringBuilder text = new StringBuilder();
+            int event = next();
+            while (event != XMLStreamConstants.END_ELEMENT) {
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                    event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE) {
+                    text.append(getText());
+                } else if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+                    throw new XMLStreamException("Element text expected", getLocation());
+                }
+                event = next();
+            }
+            return text.toString();
+        }
+
+        private void forward(int event) throws SAXException {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (validatorHandler == null) {
+                        validatorHandler = getSchema(nonNull(getNamespaceURI())).newValidatorHandler();
+                        validatorHandler.setDocumentLocator(this);
+                        validatorHandler.startDocument();
+                    }
+                    for (int index = 0; index < getNamespaceCount(); index++) {
+                        validatorHandler.startPrefixMapping(nonNull(getNamespacePrefix(index)),
+                                                            nonNull(getNamespaceURI(index)));
+                    }
+                    validatorHandler.startElement(nonNull(getNamespaceURI()),
+                                                  getLocalName(),
+                                                  qualifiedName(getPrefix(), getLocalName()),
+                                                  attributes());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    validatorHandler.endElement(nonNull(getNamespaceURI()),
+                                                getLocalName(),
+                                                qualifiedName(getPrefix(), getLocalName()));
+                    for (int index = 0; index < getNamespaceCount(); index++) {
+                        validatorHandler.endPrefixMapping(nonNull(getNamespacePrefix(index)));
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (validatorHandler != null) {
+                        validatorHandler.characters(getTextCharacters(), getTextStart(), getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    if (validatorHandler != null) {
+                        validatorHandler.endDocument();
+                    }
+                    break;
+                default:
+                    // comments and processing instructions are not validated
+            }
+        }
+
+        private AttributesImpl attributes() {
+            AttributesImpl attributes = new AttributesImpl();
+            for (int index = 0; index < getAttributeCount(); index++) {
+                attributes.addAttribute(nonNull(getAttributeNamespace(index)),
+                                        getAttributeLocalName(index),
+                                        qualifiedName(getAttributePrefix(index), getAttributeLocalName(index)),
+                                        "CDATA",
+                                        getAttributeValue(index));
+            }
+            return attributes;
+        }
+
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return null;
+        }
+
+        @Override
+        public int getLineNumber() {
+            Location location = getLocation();
+            return location == null ? -1 : location.getLineNumber();
+        }
+
+        @Override
+        public int getColumnNumber() {
+            Location location = getLocation();
+            return location == null ? -1 : location.getColumnNumber();
+        }
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+}
@@ -66,9 +66,12 @@ public class CatalogObjectEntityTest {
 
         assertThat(catalogObject.getLastCommitTime() == 0);
         assertThat(catalogObject.getRevisions()).hasSize(0);
+        assertThat(catalogObject.getLastRevision()).isNull();
 
         catalogObject.addRevision(catalogObjectRevision);
 
+        assertThat(catalogObject.getLastRevision()).isSameAs(catalogObjectRevision);
+
         assertThat(catalogObject.getLastCommitTime()).isEqualTo(now.atZone(ZoneId.systemDefault())
                                                                    .toInstant()
                                                                    .toEpochMilli());
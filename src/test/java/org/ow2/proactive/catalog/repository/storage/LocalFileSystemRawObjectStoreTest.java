@@ -0,0 +1,206 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.repository.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.proactive.catalog.service.exception.RawObjectStoreException;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class LocalFileSystemRawObjectStoreTest {
+
+    private static final byte[] CONTENT = "<job name=\"test\"/>".getBytes(StandardCharsets.UTF_8);
+
+    private static final Predicate<String> UNREFERENCED = key -> false;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path rootDirectory;
+
+    private LocalFileSystemRawObjectStore rawObjectStore;
+
+    @Before
+    public void setUp() throws IOException {
+        rootDirectory = temporaryFolder.newFolder("raw-objects").toPath();
+        rawObjectStore = new LocalFileSystemRawObjectStore(rootDirectory);
+    }
+
+    @Test
+    public void testThatContentIsStoredUnderItsSha256() {
+        String key = rawObjectStore.put(CONTENT);
+
+        assertThat(key).isEqualTo(ContentHashUtil.sha256Hex(CONTENT));
+        assertThat(rawObjectStore.contains(key)).isTrue();
+        assertThat(rawObjectStore.get(key)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testThatIdenticalContentIsStoredOnce() throws IOException {
+        String key = rawObjectStore.put(CONTENT);
+        String sameKey = rawObjectStore.put(CONTENT.clone());
+
+        assertThat(sameKey).isEqualTo(key);
+        assertThat(Files.list(rootDirectory.resolve(key.substring(0, 2))).count()).isEqualTo(1);
+        assertThat(Files.list(rootDirectory.resolve("tmp")).count()).isEqualTo(0);
+    }
+
+    @Test
+    public void testThatStoredContentCanBeReadFromItsFile() throws IOException {
+        String key = rawObjectStore.put(CONTENT);
+
+        Path file = rawObjectStore.getFile(key).get();
+
+        assertThat(file.getFileName().toString()).isEqualTo(key);
+        assertThat(Files.readAllBytes(file)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testThatNoFileIsReturnedForMissingContent() {
+        assertThat(rawObjectStore.getFile(ContentHashUtil.sha256Hex(CONTENT)).isPresent()).isFalse();
+    }
+
+    @Test(expected = RawObjectStoreException.class)
+    public void testThatMissingContentIsReported() {
+        rawObjectStore.get(ContentHashUtil.sha256Hex(CONTENT));
+    }
+
+    @Test(expected = RawObjectStoreException.class)
+    public void testThatKeysOutsideOfTheStoreAreRejected() {
+        rawObjectStore.get("../../etc/passwd");
+    }
+
+    @Test
+    public void testThatOnlyContentsWrittenBeforeTheGivenTimeAreListedAndDeleted() {
+        String key = rawObjectStore.put(CONTENT);
+        long now = System.currentTimeMillis();
+
+        assertThat(rawObjectStore.listKeysWrittenBefore(now - 60000)).isEmpty();
+        assertThat(rawObjectStore.deleteIfWrittenBefore(key, now - 60000, UNREFERENCED)).isFalse();
+
+        assertThat(rawObjectStore.listKeysWrittenBefore(now + 60000)).containsExactly(key);
+        assertThat(rawObjectStore.deleteIfWrittenBefore(key, now + 60000, UNREFERENCED)).isTrue();
+        assertThat(rawObjectStore.contains(key)).isFalse();
+    }
+
+    @Test
+    public void testThatReferencedContentIsNotDeleted() {
+        String key = rawObjectStore.put(CONTENT);
+
+        assertThat(rawObjectStore.deleteIfWrittenBefore(key, System.currentTimeMillis() + 60000, k -> true)).isFalse();
+        assertThat(rawObjectStore.contains(key)).isTrue();
+    }
+
+    @Test
+    public void testThatContentPutAgainAfterBeingListedIsNotDeleted() throws IOException {
+        String key = rawObjectStore.put(CONTENT);
+        Path file = rawObjectStore.getFile(key).get();
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 120000));
+        long writtenBefore = System.currentTimeMillis() - 60000;
+        assertThat(rawObjectStore.listKeysWrittenBefore(writtenBefore)).containsExactly(key);
+
+        rawObjectStore.put(CONTENT);
+
+        assertThat(rawObjectStore.deleteIfWrittenBefore(key, writtenBefore, UNREFERENCED)).isFalse();
+        assertThat(rawObjectStore.get(key)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testThatContentPutDuringItsDeletionIsWrittenAgain() throws Exception {
+        String key = rawObjectStore.put(CONTENT);
+        Path file = rawObjectStore.getFile(key).get();
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 120000));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Future<String>> concurrentPut = new ArrayList<>();
+
+        try {
+            // the content is put again while the garbage collection checks its references, before deleting it
+            boolean deleted = rawObjectStore.deleteIfWrittenBefore(key, System.currentTimeMillis() - 60000, k -> {
+                concurrentPut.add(executor.submit(() -> rawObjectStore.put(CONTENT)));
+                try {
+                    concurrentPut.get(0).get(500, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // the put waits for the deletion to complete
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+                return false;
+            });
+
+            assertThat(deleted).isTrue();
+            assertThat(concurrentPut.get(0).get(10, TimeUnit.SECONDS)).isEqualTo(key);
+            assertThat(rawObjectStore.get(key)).isEqualTo(CONTENT);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testThatContentDeletedByAnotherCatalogIsWrittenAgain() throws IOException {
+        String key = rawObjectStore.put(CONTENT);
+        Files.delete(rawObjectStore.getFile(key).get());
+
+        assertThat(rawObjectStore.put(CONTENT)).isEqualTo(key);
+        assertThat(rawObjectStore.get(key)).isEqualTo(CONTENT);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatEnabledStoreRequiresAnExplicitDirectory() {
+        new LocalFileSystemRawObjectStore(true, "");
+    }
+
+    @Test
+    public void testThatStoreWithoutDirectoryHoldsNoContent() {
+        LocalFileSystemRawObjectStore unconfiguredStore = new LocalFileSystemRawObjectStore(false, "");
+
+        assertThat(unconfiguredStore.contains(ContentHashUtil.sha256Hex(CONTENT))).isFalse();
+        assertThat(unconfiguredStore.listKeysWrittenBefore(Long.MAX_VALUE)).isEmpty();
+    }
+
+}
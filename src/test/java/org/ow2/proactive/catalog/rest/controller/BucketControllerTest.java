@@ -28,6 +28,8 @@ package org.ow2.proactive.catalog.rest.controller;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.Optional;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -71,7 +73,7 @@ public class BucketControllerTest {
 
     @Test
     public void testList() throws Exception {
-        bucketController.list(null, null, null, null, null);
+        bucketController.list(null, null, null, null, null, Optional.empty(), Optional.empty(), false, null);
         verify(bucketService, times(1)).listBuckets((String) null, null, null, null);
     }
 
@@ -27,15 +27,19 @@ package org.ow2.proactive.catalog.rest.controller;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -46,8 +50,10 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.ow2.proactive.catalog.dto.CatalogObjectMetadata;
 import org.ow2.proactive.catalog.dto.CatalogRawObject;
@@ -56,12 +62,25 @@ import org.ow2.proactive.catalog.repository.entity.BucketEntity;
 import org.ow2.proactive.catalog.service.CatalogObjectService;
 import org.ow2.proactive.catalog.service.RestApiAccessService;
 import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
+import org.ow2.proactive.catalog.service.exception.WrongParametersException;
+import org.ow2.proactive.catalog.service.model.BucketArchive;
+import org.ow2.proactive.catalog.service.model.CatalogObjectUpload;
+import org.ow2.proactive.catalog.service.model.RestApiAccessResponse;
+import org.ow2.proactive.catalog.service.model.RevisionValidators;
 import org.ow2.proactive.catalog.util.ArchiveManagerHelper;
-import org.ow2.proactive.catalog.util.ArchiveManagerHelper.ZipArchiveContent;
+import org.ow2.proactive.catalog.util.ArchiveManagerHelper.StreamedZipArchive;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
 import org.ow2.proactive.catalog.util.RawObjectResponseCreator;
+import org.ow2.proactive.catalog.util.UploadedContentReader;
 import org.ow2.proactive.microservices.common.exception.NotAuthenticatedException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 /**
@@ -70,6 +89,12 @@ import org.springframework.http.ResponseEntity;
 @RunWith(MockitoJUnitRunner.class)
 public class CatalogObjectControllerTest {
 
+    private static final RevisionValidators VALIDATORS = new RevisionValidators(1400343L,
+                                                                                ContentHashUtil.sha256Hex(new byte[0]),
+                                                                                "object",
+                                                                                "application/xml",
+                                                                                "xml");
+
     @InjectMocks
     private CatalogObjectController catalogObjectController;
 
@@ -88,6 +113,12 @@ public class CatalogObjectControllerTest {
     @Mock
     private RestApiAccessService restApiAccessService;
 
+    @Spy
+    private UploadedContentReader uploadedContentReader = new UploadedContentReader(0);
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @Test
     public void testGetCatalogObjectsAsArchive() throws IOException, NotAuthenticatedException, AccessDeniedException {
         HttpServletResponse response = mock(HttpServletResponse.class);
@@ -95,22 +126,26 @@ public class CatalogObjectControllerTest {
         when(response.getOutputStream()).thenReturn(sos);
         List<String> nameList = new ArrayList<>();
         nameList.add("workflowname");
-        ZipArchiveContent content = new ZipArchiveContent();
-        content.setContent(new byte[0]);
-        when(catalogObjectService.getCatalogObjectsAsZipArchive("bucket-name", nameList)).thenReturn(content);
+        StreamedZipArchive archive = mock(StreamedZipArchive.class);
+        when(catalogObjectService.openBucketArchive("bucket-name", nameList)).thenReturn(Optional.empty());
+        when(catalogObjectService.getCatalogObjectsAsZipArchive("bucket-name", nameList)).thenReturn(archive);
         catalogObjectController.list("",
                                      "bucket-name",
                                      Optional.empty(),
                                      Optional.empty(),
                                      Optional.empty(),
                                      Optional.of(nameList),
-                                     response);
+                                     Optional.empty(),
+                                     Optional.empty(),
+                                     false,
+                                     response,
+                                     mock(WebRequest.class));
         verify(catalogObjectService, times(1)).getCatalogObjectsAsZipArchive("bucket-name", nameList);
         verify(response, times(1)).setStatus(HttpServletResponse.SC_OK);
         verify(response, times(1)).setContentType("application/zip");
         verify(response, times(1)).addHeader(HttpHeaders.CONTENT_ENCODING, "binary");
         verify(response, times(1)).addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"archive.zip\"");
-        verify(sos, times(1)).write(any());
+        verify(archive, times(1)).writeTo(sos);
         verify(sos, times(1)).flush();
     }
 
@@ -122,19 +157,79 @@ public class CatalogObjectControllerTest {
         when(response.getOutputStream()).thenReturn(sos);
         List<String> nameList = new ArrayList<>();
         nameList.add("workflowname");
-        ZipArchiveContent content = new ZipArchiveContent();
-        content.setContent(new byte[0]);
-        content.setPartial(true);
-        when(catalogObjectService.getCatalogObjectsAsZipArchive("bucket-name", nameList)).thenReturn(content);
+        StreamedZipArchive archive = mock(StreamedZipArchive.class);
+        when(archive.isPartial()).thenReturn(true);
+        when(catalogObjectService.openBucketArchive("bucket-name", nameList)).thenReturn(Optional.empty());
+        when(catalogObjectService.getCatalogObjectsAsZipArchive("bucket-name", nameList)).thenReturn(archive);
         catalogObjectController.list("",
                                      "bucket-name",
                                      Optional.empty(),
                                      Optional.empty(),
                                      Optional.empty(),
                                      Optional.of(nameList),
-                                     response);
+                                     Optional.empty(),
+                                     Optional.empty(),
+                                     false,
+                                     response,
+                                     mock(WebRequest.class));
         verify(catalogObjectService, times(1)).getCatalogObjectsAsZipArchive("bucket-name", nameList);
         verify(response, never()).setStatus(HttpServletResponse.SC_OK);
+        verify(response, times(1)).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    }
+
+    @Test
+    public void testGetWholeBucketAsArchiveIsServedFromTheCache() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ServletOutputStream sos = mock(ServletOutputStream.class);
+        when(response.getOutputStream()).thenReturn(sos);
+        List<String> nameList = Collections.singletonList("workflowname");
+        ByteArrayInputStream bucketArchive = new ByteArrayInputStream(new byte[] { 1, 2 });
+        when(catalogObjectService.openBucketArchive("bucket-name",
+                                                    nameList)).thenReturn(Optional.of(new BucketArchive("\"1-2\"",
+                                                                                                        bucketArchive)));
+        catalogObjectController.list("",
+                                     "bucket-name",
+                                     Optional.empty(),
+                                     Optional.empty(),
+                                     Optional.empty(),
+                                     Optional.of(nameList),
+                                     Optional.empty(),
+                                     Optional.empty(),
+                                     false,
+                                     response,
+                                     mock(WebRequest.class));
+        verify(catalogObjectService, never()).getCatalogObjectsAsZipArchive(anyString(), anyList());
+        verify(response, times(1)).setStatus(HttpServletResponse.SC_OK);
+        verify(response, times(1)).setContentType("application/zip");
+        verify(sos, times(1)).write(any(byte[].class), eq(0), eq(2));
+    }
+
+    @Test
+    public void testGetWholeBucketAsArchiveNotModified() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        WebRequest webRequest = mock(WebRequest.class);
+        List<String> nameList = Collections.singletonList("workflowname");
+        InputStream bucketArchive = mock(InputStream.class);
+        when(catalogObjectService.openBucketArchive("bucket-name",
+                                                    nameList)).thenReturn(Optional.of(new BucketArchive("\"1-2\"",
+                                                                                                        bucketArchive)));
+        when(webRequest.checkNotModified("\"1-2\"")).thenReturn(true);
+
+        ResponseEntity responseEntity = catalogObjectController.list("",
+                                                                     "bucket-name",
+                                                                     Optional.empty(),
+                                                                     Optional.empty(),
+                                                                     Optional.empty(),
+                                                                     Optional.of(nameList),
+                                                                     Optional.empty(),
+                                                                     Optional.empty(),
+                                                                     false,
+                                                                     response,
+                                                                     webRequest);
+
+        assertThat(responseEntity).isNull();
+        verify(bucketArchive).close();
+        verify(response, never()).getOutputStream();
     }
 
     @Test
@@ -150,7 +245,11 @@ public class CatalogObjectControllerTest {
                                      Optional.empty(),
                                      Optional.empty(),
                                      Optional.empty(),
-                                     response);
+                                     Optional.empty(),
+                                     Optional.empty(),
+                                     false,
+                                     response,
+                                     mock(WebRequest.class));
         verify(catalogObjectService, times(1)).listCatalogObjects(anyList(),
                                                                   any(Optional.class),
                                                                   any(Optional.class),
@@ -173,15 +272,49 @@ public class CatalogObjectControllerTest {
 
         when(restApiAccessService.isAPublicBucket(anyString())).thenReturn(true);
 
+        when(catalogObjectService.getCatalogObjectValidators(anyString(), anyString())).thenReturn(VALIDATORS);
         when(catalogObjectService.getCatalogRawObject(anyString(), anyString())).thenReturn(rawObject);
-        when(rawObjectResponseCreator.createRawObjectResponse(rawObject)).thenReturn(responseEntity);
-        ResponseEntity responseEntityFromController = catalogObjectController.getRaw("", "bucket-name", "name");
+        WebRequest webRequest = mock(WebRequest.class);
+        when(rawObjectResponseCreator.createRawObjectResponse(rawObject,
+                                                              webRequest,
+                                                              VALIDATORS.getRawObjectETag())).thenReturn(responseEntity);
+        ResponseEntity responseEntityFromController = catalogObjectController.getRaw("",
+                                                                                     "bucket-name",
+                                                                                     "name",
+                                                                                     webRequest);
         verify(catalogObjectService, times(1)).getCatalogRawObject(anyString(), anyString());
-        verify(rawObjectResponseCreator, times(1)).createRawObjectResponse(rawObject);
+        verify(rawObjectResponseCreator, times(1)).createRawObjectResponse(rawObject,
+                                                                           webRequest,
+                                                                           VALIDATORS.getRawObjectETag());
         assertThat(responseEntityFromController).isNotNull();
         assertThat(responseEntityFromController).isEqualTo(responseEntity);
     }
 
+    @Test
+    public void testGetRawNotModified() throws Exception {
+        WebRequest webRequest = mock(WebRequest.class);
+        when(webRequest.checkNotModified(VALIDATORS.getRawObjectETag(), VALIDATORS.getCommitTime())).thenReturn(true);
+        when(catalogObjectService.getCatalogObjectValidators(anyString(), anyString())).thenReturn(VALIDATORS);
+
+        ResponseEntity responseEntityFromController = catalogObjectController.getRaw("",
+                                                                                     "bucket-name",
+                                                                                     "name",
+                                                                                     webRequest);
+
+        assertThat(responseEntityFromController).isNull();
+        verify(catalogObjectService, never()).getCatalogRawObject(anyString(), anyString());
+    }
+
+    @Test
+    public void testGetMetadataNotModified() throws Exception {
+        WebRequest webRequest = mock(WebRequest.class);
+        when(webRequest.checkNotModified(VALIDATORS.getMetadataETag(), VALIDATORS.getCommitTime())).thenReturn(true);
+        when(catalogObjectService.getCatalogObjectValidators(anyString(), anyString())).thenReturn(VALIDATORS);
+
+        assertThat(catalogObjectController.get("", "bucket-name", "name", webRequest)).isNull();
+        verify(catalogObjectService, never()).getCatalogObjectMetadata(anyString(), anyString());
+    }
+
     @Test
     public void testDelete() throws Exception {
         CatalogObjectMetadata mock = new CatalogObjectMetadata("bucket-name",
@@ -198,4 +331,65 @@ public class CatalogObjectControllerTest {
         assertThat(mock).isEqualTo(result);
         verify(catalogObjectService, times(1)).delete(anyString(), anyString());
     }
+
+    @Test
+    public void testCreateOrReviseBatch() throws Exception {
+        when(restApiAccessService.getUserDataFromSessionidAndCheckAccess(anyBoolean(),
+                                                                         anyString(),
+                                                                         anyString())).thenReturn(RestApiAccessResponse.EMPTY);
+        MultipartHttpServletRequest request = mock(MultipartHttpServletRequest.class);
+        MultipartFile workflow = mock(MultipartFile.class);
+        when(workflow.getOriginalFilename()).thenReturn("workflow.xml");
+        when(workflow.getBytes()).thenReturn("<job/>".getBytes());
+        when(request.getFile("part1")).thenReturn(workflow);
+        String manifest = "[{\"name\": \"new-object\", \"file\": \"part1\", \"kind\": \"workflow\", \"content_type\": \"application/xml\"}," +
+                          " {\"name\": \"existing-object\", \"file\": \"part1\", \"commit_message\": \"own message\"}]";
+
+        catalogObjectController.createOrReviseBatch("", "bucket-name", "commit message", manifest, false, request);
+
+        verify(objectMapper).readValue(eq(manifest), any(TypeReference.class));
+        ArgumentCaptor<List> uploads = ArgumentCaptor.forClass(List.class);
+        verify(catalogObjectService, times(1)).createOrReviseCatalogObjects(eq("bucket-name"),
+                                                                            uploads.capture(),
+                                                                            anyString(),
+                                                                            eq(false));
+        List<CatalogObjectUpload> capturedUploads = uploads.getValue();
+        assertThat(capturedUploads).hasSize(2);
+        assertThat(capturedUploads.get(0).getName()).isEqualTo("new-object");
+        assertThat(capturedUploads.get(0).getKind()).isEqualTo("workflow");
+        assertThat(capturedUploads.get(0).getContentType()).isEqualTo("application/xml");
+        assertThat(capturedUploads.get(0).getFileName()).isEqualTo("workflow.xml");
+        assertThat(capturedUploads.get(0).getCommitMessage()).isEqualTo("commit message");
+        assertThat(capturedUploads.get(1).getName()).isEqualTo("existing-object");
+        assertThat(capturedUploads.get(1).getCommitMessage()).isEqualTo("own message");
+    }
+
+    @Test(expected = WrongParametersException.class)
+    public void testCreateOrReviseBatchWithMissingPart() throws Exception {
+        when(restApiAccessService.getUserDataFromSessionidAndCheckAccess(anyBoolean(),
+                                                                         anyString(),
+                                                                         anyString())).thenReturn(RestApiAccessResponse.EMPTY);
+        MultipartHttpServletRequest request = mock(MultipartHttpServletRequest.class);
+
+        catalogObjectController.createOrReviseBatch("",
+                                                    "bucket-name",
+                                                    "commit message",
+                                                    "[{\"name\": \"object\", \"file\": \"missing\"}]",
+                                                    false,
+                                                    request);
+    }
+
+    @Test(expected = WrongParametersException.class)
+    public void testCreateOrReviseBatchWithInvalidManifest() throws Exception {
+        when(restApiAccessService.getUserDataFromSessionidAndCheckAccess(anyBoolean(),
+                                                                         anyString(),
+                                                                         anyString())).thenReturn(RestApiAccessResponse.EMPTY);
+
+        catalogObjectController.createOrReviseBatch("",
+                                                    "bucket-name",
+                                                    "commit message",
+                                                    "{not a manifest",
+                                                    false,
+                                                    mock(MultipartHttpServletRequest.class));
+    }
 }
@@ -28,22 +28,35 @@ package org.ow2.proactive.catalog.rest.controller;
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.ow2.proactive.catalog.dto.CatalogRawObject;
 import org.ow2.proactive.catalog.service.CatalogObjectService;
 import org.ow2.proactive.catalog.service.RestApiAccessService;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
+import org.ow2.proactive.catalog.service.model.RevisionValidators;
 import org.ow2.proactive.catalog.util.RawObjectResponseCreator;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.WebRequest;
 
 
 /**
@@ -70,10 +83,52 @@ public class CatalogObjectRevisionControllerTest {
 
     @Test
     public void testList() throws Exception {
-        catalogObjectRevisionController.list("", BUCKET_ID, "name");
+        catalogObjectRevisionController.list("", BUCKET_ID, "name", Optional.empty(), Optional.empty(), null);
         verify(catalogObjectService, times(1)).listCatalogObjectRevisions(BUCKET_ID, "name");
     }
 
+    @Test
+    public void testListPageAddsNextPageLink() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getScheme()).thenReturn("http");
+        when(request.getServerName()).thenReturn("localhost");
+        when(request.getServerPort()).thenReturn(8080);
+        when(request.getRequestURI()).thenReturn("/catalog/buckets/" + BUCKET_ID + "/resources/name/revisions");
+        when(request.getQueryString()).thenReturn("limit=1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(catalogObjectService.listCatalogObjectRevisions(BUCKET_ID,
+                                                             "name",
+                                                             Optional.empty(),
+                                                             1)).thenReturn(new KeysetPage<>(Collections.emptyList(),
+                                                                                             String.valueOf(COMMIT_TIME)));
+        try {
+            catalogObjectRevisionController.list("", BUCKET_ID, "name", Optional.of(1), Optional.empty(), response);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        ArgumentCaptor<String> linkHeader = ArgumentCaptor.forClass(String.class);
+        verify(response, times(1)).addHeader(eq("Link"), linkHeader.capture());
+        assertThat(linkHeader.getValue()).isEqualTo("<http://localhost:8080/catalog/buckets/" + BUCKET_ID +
+                                                    "/resources/name/revisions?limit=1&after=" + COMMIT_TIME +
+                                                    ">;rel=\"next\"");
+    }
+
+    @Test
+    public void testListLastPageHasNoNextPageLink() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(catalogObjectService.listCatalogObjectRevisions(BUCKET_ID,
+                                                             "name",
+                                                             Optional.of(COMMIT_TIME),
+                                                             1)).thenReturn(new KeysetPage<>(Collections.emptyList(),
+                                                                                             null));
+
+        catalogObjectRevisionController.list("", BUCKET_ID, "name", Optional.of(1), Optional.of(COMMIT_TIME), response);
+
+        verify(response, never()).addHeader(eq("Link"), anyString());
+    }
+
     @Test
     public void testGetRevisionRaw() throws Exception {
         CatalogRawObject rawObject = new CatalogRawObject("bucket-name",
@@ -93,13 +148,43 @@ public class CatalogObjectRevisionControllerTest {
         when(catalogObjectService.getCatalogObjectRevisionRaw(anyString(),
                                                               anyString(),
                                                               anyLong())).thenReturn(rawObject);
-        when(rawObjectResponseCreator.createRawObjectResponse(rawObject)).thenReturn(responseEntity);
+        when(catalogObjectService.getCatalogObjectRevisionValidators(anyString(),
+                                                                     anyString(),
+                                                                     anyLong())).thenReturn(newValidators());
+        WebRequest webRequest = mock(WebRequest.class);
+        when(rawObjectResponseCreator.createRawObjectResponse(rawObject,
+                                                              webRequest,
+                                                              newValidators().getRawObjectETag())).thenReturn(responseEntity);
         ResponseEntity responseEntityFromController = catalogObjectRevisionController.getRaw("",
                                                                                              BUCKET_ID,
                                                                                              "name",
-                                                                                             System.currentTimeMillis());
+                                                                                             System.currentTimeMillis(),
+                                                                                             webRequest);
         verify(catalogObjectService, times(1)).getCatalogObjectRevisionRaw(anyString(), anyString(), anyLong());
         assertThat(responseEntityFromController).isNotNull();
         assertThat(responseEntityFromController).isEqualTo(responseEntity);
     }
+
+    @Test
+    public void testGetRevisionRawNotModified() throws Exception {
+        RevisionValidators validators = newValidators();
+        WebRequest webRequest = mock(WebRequest.class);
+        when(webRequest.checkNotModified(validators.getRawObjectETag(), COMMIT_TIME)).thenReturn(true);
+        when(catalogObjectService.getCatalogObjectRevisionValidators(BUCKET_ID,
+                                                                     "name",
+                                                                     COMMIT_TIME)).thenReturn(validators);
+
+        ResponseEntity responseEntityFromController = catalogObjectRevisionController.getRaw("",
+                                                                                             BUCKET_ID,
+                                                                                             "name",
+                                                                                             COMMIT_TIME,
+                                                                                             webRequest);
+
+        assertThat(responseEntityFromController).isNull();
+        verify(catalogObjectService, never()).getCatalogObjectRevisionRaw(anyString(), anyString(), anyLong());
+    }
+
+    private RevisionValidators newValidators() {
+        return new RevisionValidators(COMMIT_TIME, null, "object", "application/xml", "xml");
+    }
 }
@@ -132,4 +132,18 @@ public class AuthorizationServiceTest {
                                                                           BucketService.DEFAULT_BUCKET_OWNER)).isTrue();
     }
 
+    @Test
+    public void testUserGroupsAreMatchedAgainstBucketOwnerGroup() {
+        when(ownerGroupStringHelper.extractGroupFromBucketOwnerOrGroupString(OwnerGroupStringHelper.GROUP_PREFIX +
+                                                                             "robots")).thenReturn("robots");
+
+        assertThat(authorizationService.askUserGroupsAuthorizationByBucketOwner(Arrays.asList("secret stuff",
+                                                                                              "robots"),
+                                                                                OwnerGroupStringHelper.GROUP_PREFIX +
+                                                                                                         "robots")).isTrue();
+        assertThat(authorizationService.askUserGroupsAuthorizationByBucketOwner(Arrays.asList("secret stuff"),
+                                                                                OwnerGroupStringHelper.GROUP_PREFIX +
+                                                                                                                  "robots")).isFalse();
+    }
+
 }
@@ -0,0 +1,135 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class BucketArchiveCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+
+    private BucketArchiveCache bucketArchiveCache;
+
+    private AtomicInteger writeCount = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = temporaryFolder.newFolder("bucket-archives").toPath();
+        bucketArchiveCache = new BucketArchiveCache(true, directory);
+    }
+
+    @Test
+    public void testThatArchiveIsBuiltOncePerVersionOfTheBucket() throws IOException {
+        assertThat(read(1L, 0)).isEqualTo(new byte[] { 0 });
+        assertThat(read(1L, 0)).isEqualTo(new byte[] { 0 });
+        assertThat(writeCount.get()).isEqualTo(1);
+
+        assertThat(read(1L, 1)).isEqualTo(new byte[] { 1 });
+        assertThat(writeCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testThatArchivesOfPreviousVersionsAreDeleted() throws IOException {
+        read(1L, 0);
+        read(12L, 0);
+        read(1L, 1);
+
+        assertThat(Files.exists(directory.resolve("1-0.zip"))).isFalse();
+        assertThat(Files.exists(directory.resolve("1-1.zip"))).isTrue();
+        assertThat(Files.exists(directory.resolve("12-0.zip"))).isTrue();
+        assertThat(Files.list(directory).count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testThatFailedBuildsLeaveNoArchive() throws IOException {
+        try {
+            bucketArchiveCache.openArchive(1L, 0, outputStream -> {
+                throw new IOException("failure");
+            });
+            fail("The failure of the build should be reported");
+        } catch (IOException e) {
+            assertThat(e).hasMessage("failure");
+        }
+
+        assertThat(Files.list(directory).count()).isEqualTo(0);
+    }
+
+    @Test
+    public void testThatInvalidateDeletesTheArchivesOfTheBucket() throws IOException {
+        read(1L, 0);
+        read(12L, 0);
+
+        bucketArchiveCache.invalidate(1L);
+
+        assertThat(Files.exists(directory.resolve("1-0.zip"))).isFalse();
+        assertThat(Files.exists(directory.resolve("12-0.zip"))).isTrue();
+    }
+
+    @Test
+    public void testThatInvalidateAllDeletesAllArchives() throws IOException {
+        read(1L, 0);
+        read(2L, 0);
+
+        bucketArchiveCache.invalidateAll();
+
+        assertThat(Files.list(directory).count()).isEqualTo(0);
+    }
+
+    @Test
+    public void testThatETagIdentifiesTheVersionOfTheBucket() {
+        assertThat(BucketArchiveCache.getETag(1L, 2)).isEqualTo("\"1-2\"");
+    }
+
+    private byte[] read(Long bucketId, long changeCount) throws IOException {
+        try (InputStream archive = bucketArchiveCache.openArchive(bucketId, changeCount, outputStream -> {
+            writeCount.incrementAndGet();
+            outputStream.write((int) changeCount);
+        })) {
+            return ByteStreams.toByteArray(archive);
+        }
+    }
+}
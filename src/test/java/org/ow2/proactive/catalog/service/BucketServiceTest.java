@@ -49,6 +49,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.ow2.proactive.catalog.dto.BucketMetadata;
 import org.ow2.proactive.catalog.repository.BucketRepository;
@@ -82,6 +83,15 @@ public class BucketServiceTest {
     @Mock
     private BucketNameValidator bucketNameValidator;
 
+    @Spy
+    private RequestAccessContext requestAccessContext = new RequestAccessContext();
+
+    @Spy
+    private BucketCache bucketCache = new BucketCache(100, 60);
+
+    @Mock
+    private BucketArchiveCache bucketArchiveCache;
+
     @Test
     public void testThatEmptyListIsReturnedIfListAndKindAreNull() {
         assertThat(bucketService.listBuckets((List<String>) null, null, null, null)).isEmpty();
@@ -155,6 +165,22 @@ public class BucketServiceTest {
         bucketService.getBucketMetadata("bucket-name");
     }
 
+    @Test
+    public void testGetBucketMetadataIsCachedUntilBucketOwnerIsUpdated() throws Exception {
+        BucketEntity mockedBucket = newMockedBucket(1L, "bucket-name", LocalDateTime.now());
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(mockedBucket);
+        when(bucketRepository.save(mockedBucket)).thenReturn(mockedBucket);
+
+        bucketService.getBucketMetadata("bucket-name");
+        bucketService.getBucketMetadata("bucket-name");
+        verify(bucketRepository, times(1)).findOneByBucketName("bucket-name");
+        assertThat(bucketCache.getStats().hitCount()).isEqualTo(1);
+
+        bucketService.updateOwnerByBucketName("bucket-name", DEFAULT_BUCKET_NAME);
+        bucketService.getBucketMetadata("bucket-name");
+        verify(bucketRepository, times(3)).findOneByBucketName("bucket-name");
+    }
+
     @Test
     public void testListBucketsNoOwner() throws Exception {
         listBucket(null, Optional.empty(), Optional.empty());
@@ -179,9 +205,23 @@ public class BucketServiceTest {
         BucketMetadata bucketMetadata = bucketService.deleteEmptyBucket("bucket-name");
         verify(bucketRepository, times(1)).findBucketForUpdate("bucket-name");
         verify(bucketRepository, times(1)).delete(1L);
+        verify(bucketArchiveCache, times(1)).invalidate(1L);
         assertEquals(bucketMetadata.getName(), mockedBucket.getBucketName());
     }
 
+    @Test
+    public void testCleanAllEmptyBucketsDeletesTheirArchives() {
+        BucketEntity firstBucket = newMockedBucket(1L, "first-bucket", LocalDateTime.now());
+        BucketEntity secondBucket = newMockedBucket(2L, "second-bucket", LocalDateTime.now());
+        when(bucketRepository.findEmptyBucketsForUpdate()).thenReturn(Arrays.asList(firstBucket, secondBucket));
+
+        bucketService.cleanAllEmptyBuckets();
+
+        verify(bucketRepository, times(1)).deleteInBatch(Arrays.asList(firstBucket, secondBucket));
+        verify(bucketArchiveCache, times(1)).invalidate(1L);
+        verify(bucketArchiveCache, times(1)).invalidate(2L);
+    }
+
     @Test(expected = BucketNotFoundException.class)
     public void testDeleteInvalidBucket() {
         when(bucketRepository.findOneByBucketName(anyString())).thenReturn(null);
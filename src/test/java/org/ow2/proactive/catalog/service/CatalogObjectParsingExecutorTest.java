@@ -0,0 +1,70 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.proactive.catalog.service.exception.ParsingObjectException;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class CatalogObjectParsingExecutorTest {
+
+    private CatalogObjectParsingExecutor catalogObjectParsingExecutor = new CatalogObjectParsingExecutor();
+
+    @After
+    public void tearDown() {
+        catalogObjectParsingExecutor.close();
+    }
+
+    @Test
+    public void testMapKeepsTheOrderOfTheItems() {
+        List<Integer> items = IntStream.range(0, 500).boxed().collect(Collectors.toList());
+
+        List<String> results = catalogObjectParsingExecutor.map(items, String::valueOf);
+
+        assertThat(results).isEqualTo(items.stream().map(String::valueOf).collect(Collectors.toList()));
+    }
+
+    @Test(expected = ParsingObjectException.class)
+    public void testMapRethrowsTheExceptionOfAFailedItem() {
+        catalogObjectParsingExecutor.map(Arrays.asList("valid", "invalid", "valid"), item -> {
+            if (item.equals("invalid")) {
+                throw new ParsingObjectException(new IllegalArgumentException(item));
+            }
+            return item;
+        });
+    }
+}
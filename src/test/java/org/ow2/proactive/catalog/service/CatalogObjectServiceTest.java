@@ -27,14 +27,22 @@ package org.ow2.proactive.catalog.service;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.ow2.proactive.catalog.service.CatalogObjectService.KIND_NOT_FOUND;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.Collections;
@@ -42,14 +50,22 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.ow2.proactive.catalog.dto.CatalogObjectDependencies;
+import org.ow2.proactive.catalog.dto.CatalogObjectImportResult;
 import org.ow2.proactive.catalog.dto.CatalogObjectMetadata;
+import org.ow2.proactive.catalog.dto.CatalogRawObject;
 import org.ow2.proactive.catalog.dto.DependsOnCatalogObject;
 import org.ow2.proactive.catalog.dto.Metadata;
 import org.ow2.proactive.catalog.graphql.bean.CatalogObject;
@@ -64,12 +80,22 @@ import org.ow2.proactive.catalog.service.exception.BucketNotFoundException;
 import org.ow2.proactive.catalog.service.exception.CatalogObjectNotFoundException;
 import org.ow2.proactive.catalog.service.exception.KindOrContentTypeIsNotValidException;
 import org.ow2.proactive.catalog.service.exception.RevisionNotFoundException;
+import org.ow2.proactive.catalog.service.exception.UnprocessableEntityException;
 import org.ow2.proactive.catalog.service.exception.WrongParametersException;
+import org.ow2.proactive.catalog.service.model.BucketArchive;
+import org.ow2.proactive.catalog.service.model.CatalogObjectUpload;
+import org.ow2.proactive.catalog.service.model.KeysetPage;
+import org.ow2.proactive.catalog.service.model.RevisionArchiveEntry;
+import org.ow2.proactive.catalog.util.ArchiveManagerHelper;
+import org.ow2.proactive.catalog.util.ArchiveManagerHelper.FileNameAndContent;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
 import org.ow2.proactive.catalog.util.SeparatorUtility;
 import org.ow2.proactive.catalog.util.name.validator.KindAndContentTypeValidator;
 import org.ow2.proactive.catalog.util.parser.WorkflowParser;
+import org.springframework.data.domain.Pageable;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
 
 /**
@@ -107,6 +133,9 @@ public class CatalogObjectServiceTest {
     @Mock
     private KeyValueLabelMetadataHelper keyValueLabelMetadataHelper;
 
+    @Mock
+    private ArchiveManagerHelper archiveManager;
+
     @Mock
     private GenericInformationAdder genericInformationAdder;
 
@@ -116,6 +145,33 @@ public class CatalogObjectServiceTest {
     @Mock
     private SeparatorUtility separatorUtility;
 
+    @Spy
+    private RequestAccessContext requestAccessContext = new RequestAccessContext();
+
+    @Spy
+    private BucketCache bucketCache = new BucketCache(100, 60);
+
+    @Mock
+    private RawObjectStorageService rawObjectStorageService;
+
+    @Spy
+    private CatalogObjectParsingExecutor catalogObjectParsingExecutor = new CatalogObjectParsingExecutor();
+
+    @Spy
+    private PreparedRawObjectCache preparedRawObjectCache = new PreparedRawObjectCache(0);
+
+    @Spy
+    private RawObjectCache rawObjectCache = new RawObjectCache(1024 * 1024, 1024 * 1024, 60);
+
+    @Mock
+    private BucketChangeCounter bucketChangeCounter;
+
+    @Mock
+    private BucketArchiveCache bucketArchiveCache;
+
+    @Mock
+    private EntityManager entityManager;
+
     @Test(expected = BucketNotFoundException.class)
     public void testCreateCatalogObjectWithInvalidBucket() {
         when(kindAndContentTypeValidator.isValid(anyString())).thenReturn(true);
@@ -195,6 +251,246 @@ public class CatalogObjectServiceTest {
         assertThat(catalogObject.getMetadataList()).hasSize(1);
     }
 
+    @Test
+    public void testCreateCatalogObjectsResolvesExistingObjectsInOneQuery() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        CatalogObjectEntity existingObject = newCatalogObjectRevisionEntity(bucketEntity,
+                                                                            System.currentTimeMillis()).getCatalogObject();
+        when(kindAndContentTypeValidator.isValid(anyString())).thenReturn(true);
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(bucketRepository.findOne(anyLong())).thenReturn(bucketEntity);
+        stubArchiveEntries(newFileNameAndContent("catalog"), newFileNameAndContent("new-object"));
+        when(catalogObjectRepository.findByBucketIdAndNameIn(any(),
+                                                             anyList())).thenReturn(Collections.singletonList(existingObject));
+        when(catalogObjectRevisionRepository.save(any(CatalogObjectRevisionEntity.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(genericInformationAdder.addGenericInformationToRawObjectIfWorkflow(any(),
+                                                                                any(),
+                                                                                any())).thenReturn(new byte[] {});
+
+        List<CatalogObjectImportResult> results = catalogObjectService.createCatalogObjects("bucket",
+                                                                                            OBJECT,
+                                                                                            COMMIT_MESSAGE,
+                                                                                            USERNAME,
+                                                                                            new File("archive.zip"),
+                                                                                            false);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getName()).isEqualTo("catalog");
+        assertThat(results.get(0).getStatus()).isEqualTo(CatalogObjectImportResult.Status.REVISED);
+        assertThat(results.get(1).getName()).isEqualTo("new-object");
+        assertThat(results.get(1).getFileName()).isEqualTo("new-object.xml");
+        assertThat(results.get(1).getStatus()).isEqualTo(CatalogObjectImportResult.Status.CREATED);
+        assertThat(results.get(1).getMetadata().getKind()).isEqualTo(OBJECT);
+        verify(catalogObjectRepository, times(1)).findByBucketIdAndNameIn(any(), anyList());
+        verify(catalogObjectRepository, times(0)).findOne(any(CatalogObjectEntity.CatalogObjectEntityKey.class));
+        verify(catalogObjectRevisionRepository, times(2)).save(any(CatalogObjectRevisionEntity.class));
+    }
+
+    @Test
+    public void testCreateCatalogObjectsPersistsEachBatchOfEntriesBeforeReadingTheNextOne() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        doReturn(1).when(catalogObjectParsingExecutor).getThreadCount();
+        when(kindAndContentTypeValidator.isValid(anyString())).thenReturn(true);
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(bucketRepository.findOne(anyLong())).thenReturn(bucketEntity);
+        stubArchiveEntries(newFileNameAndContent("first"),
+                           newFileNameAndContent("second"),
+                           newFileNameAndContent("first"));
+        CatalogObjectEntity firstObject = CatalogObjectEntity.builder()
+                                                             .id(new CatalogObjectEntity.CatalogObjectEntityKey(1L,
+                                                                                                                "first"))
+                                                             .kind(OBJECT)
+                                                             .bucket(bucketEntity)
+                                                             .build();
+        // the object created by the first batch is found by the query of the third one, once persisted
+        when(catalogObjectRepository.findByBucketIdAndNameIn(any(),
+                                                             anyList())).thenReturn(Collections.emptyList(),
+                                                                                    Collections.emptyList(),
+                                                                                    Collections.singletonList(firstObject));
+        when(catalogObjectRevisionRepository.save(any(CatalogObjectRevisionEntity.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(genericInformationAdder.addGenericInformationToRawObjectIfWorkflow(any(),
+                                                                                any(),
+                                                                                any())).thenReturn(new byte[] {});
+
+        List<CatalogObjectImportResult> results = catalogObjectService.createCatalogObjects("bucket",
+                                                                                            OBJECT,
+                                                                                            COMMIT_MESSAGE,
+                                                                                            USERNAME,
+                                                                                            new File("archive.zip"),
+                                                                                            false);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getStatus()).isEqualTo(CatalogObjectImportResult.Status.CREATED);
+        assertThat(results.get(1).getStatus()).isEqualTo(CatalogObjectImportResult.Status.CREATED);
+        assertThat(results.get(2).getStatus()).isEqualTo(CatalogObjectImportResult.Status.REVISED);
+        verify(catalogObjectRepository, times(3)).findByBucketIdAndNameIn(any(), anyList());
+        verify(catalogObjectRevisionRepository, times(3)).flush();
+        verify(entityManager, times(3)).clear();
+    }
+
+    @Test(expected = UnprocessableEntityException.class)
+    public void testCreateCatalogObjectsFromArchiveWithoutFile() {
+        when(kindAndContentTypeValidator.isValid(anyString())).thenReturn(true);
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(new BucketEntity("bucket", "toto"));
+        stubArchiveEntries();
+
+        catalogObjectService.createCatalogObjects("bucket",
+                                                  OBJECT,
+                                                  COMMIT_MESSAGE,
+                                                  USERNAME,
+                                                  new File("archive.zip"),
+                                                  false);
+    }
+
+    @Test
+    public void testCreateCatalogObjectsSkipsUnchangedEntries() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        CatalogObjectRevisionEntity lastRevision = newCatalogObjectRevisionEntity(bucketEntity,
+                                                                                  System.currentTimeMillis());
+        lastRevision.setContentHash(ContentHashUtil.sha256Hex(new byte[] {}));
+        when(kindAndContentTypeValidator.isValid(anyString())).thenReturn(true);
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(bucketRepository.findOne(anyLong())).thenReturn(bucketEntity);
+        stubArchiveEntries(newFileNameAndContent("catalog"), newFileNameAndContent("new-object"));
+        when(catalogObjectRepository.findByBucketIdAndNameIn(any(),
+                                                             anyList())).thenReturn(Collections.singletonList(lastRevision.getCatalogObject()));
+        when(catalogObjectRevisionRepository.save(any(CatalogObjectRevisionEntity.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(genericInformationAdder.addGenericInformationToRawObjectIfWorkflow(any(),
+                                                                                any(),
+                                                                                any())).thenReturn(new byte[] {});
+
+        List<CatalogObjectImportResult> results = catalogObjectService.createCatalogObjects("bucket",
+                                                                                            OBJECT,
+                                                                                            COMMIT_MESSAGE,
+                                                                                            USERNAME,
+                                                                                            new File("archive.zip"),
+                                                                                            true);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getStatus()).isEqualTo(CatalogObjectImportResult.Status.UNCHANGED);
+        assertThat(results.get(0).getMetadata().getCommitTimeRaw()).isEqualTo(String.valueOf(lastRevision.getCommitTime()));
+        assertThat(results.get(1).getStatus()).isEqualTo(CatalogObjectImportResult.Status.CREATED);
+        verify(catalogObjectRevisionRepository, times(1)).save(any(CatalogObjectRevisionEntity.class));
+    }
+
+    @Test
+    public void testCreateOrReviseCatalogObjects() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        CatalogObjectEntity existingObject = newCatalogObjectRevisionEntity(bucketEntity,
+                                                                            System.currentTimeMillis()).getCatalogObject();
+        when(kindAndContentTypeValidator.isValid(anyString())).thenReturn(true);
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(catalogObjectRepository.findByBucketIdAndNameIn(any(),
+                                                             anyList())).thenReturn(Collections.singletonList(existingObject));
+        when(catalogObjectRevisionRepository.save(any(CatalogObjectRevisionEntity.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(genericInformationAdder.addGenericInformationToRawObjectIfWorkflow(any(),
+                                                                                any(),
+                                                                                any())).thenReturn(new byte[] {});
+
+        List<CatalogObjectImportResult> results = catalogObjectService.createOrReviseCatalogObjects("bucket",
+                                                                                                    Arrays.asList(new CatalogObjectUpload("new-object",
+                                                                                                                                          "new-object.json",
+                                                                                                                                          "my-kind",
+                                                                                                                                          "application/json",
+                                                                                                                                          "creation",
+                                                                                                                                          new byte[] {}),
+                                                                                                                  new CatalogObjectUpload("catalog",
+                                                                                                                                          "catalog.xml",
+                                                                                                                                          null,
+                                                                                                                                          null,
+                                                                                                                                          "revision",
+                                                                                                                                          new byte[] {})),
+                                                                                                    USERNAME,
+                                                                                                    false);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getStatus()).isEqualTo(CatalogObjectImportResult.Status.CREATED);
+        assertThat(results.get(0).getMetadata().getKind()).isEqualTo("my-kind");
+        assertThat(results.get(0).getMetadata().getContentType()).isEqualTo("application/json");
+        assertThat(results.get(0).getMetadata().getCommitMessage()).isEqualTo("creation");
+        assertThat(results.get(1).getStatus()).isEqualTo(CatalogObjectImportResult.Status.REVISED);
+        assertThat(results.get(1).getMetadata().getKind()).isEqualTo(OBJECT);
+        assertThat(results.get(1).getMetadata().getCommitMessage()).isEqualTo("revision");
+        verify(catalogObjectRepository, times(1)).findByBucketIdAndNameIn(any(), anyList());
+        verify(catalogObjectRevisionRepository, times(2)).save(any(CatalogObjectRevisionEntity.class));
+    }
+
+    @Test(expected = KindOrContentTypeIsNotValidException.class)
+    public void testCreateOrReviseCatalogObjectsRequiresTheKindOfNewObjects() {
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(new BucketEntity("bucket", "toto"));
+        when(catalogObjectRepository.findByBucketIdAndNameIn(any(), anyList())).thenReturn(Collections.emptyList());
+
+        catalogObjectService.createOrReviseCatalogObjects("bucket",
+                                                          Collections.singletonList(new CatalogObjectUpload("new-object",
+                                                                                                            "new-object.xml",
+                                                                                                            null,
+                                                                                                            null,
+                                                                                                            "creation",
+                                                                                                            new byte[] {})),
+                                                          USERNAME,
+                                                          false);
+    }
+
+    @Test
+    public void testCreateCatalogObjectRevisionSkippedIfUnchanged() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "owner");
+        CatalogObjectRevisionEntity lastRevision = newCatalogObjectRevisionEntity(bucketEntity,
+                                                                                  System.currentTimeMillis());
+        byte[] rawObject = "content".getBytes();
+        lastRevision.setContentHash(ContentHashUtil.sha256Hex(rawObject));
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(catalogObjectRepository.findOne(any(CatalogObjectEntity.CatalogObjectEntityKey.class))).thenReturn(lastRevision.getCatalogObject());
+        when(genericInformationAdder.addGenericInformationToRawObjectIfWorkflow(any(),
+                                                                                any(),
+                                                                                any())).thenReturn(rawObject);
+
+        CatalogObjectImportResult unchanged = catalogObjectService.createCatalogObjectRevision("bucket",
+                                                                                               NAME,
+                                                                                               COMMIT_MESSAGE,
+                                                                                               USERNAME,
+                                                                                               rawObject,
+                                                                                               true);
+
+        assertThat(unchanged.getStatus()).isEqualTo(CatalogObjectImportResult.Status.UNCHANGED);
+        verify(catalogObjectRevisionRepository, times(0)).save(any(CatalogObjectRevisionEntity.class));
+
+        when(catalogObjectRevisionRepository.save(any(CatalogObjectRevisionEntity.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(genericInformationAdder.addGenericInformationToRawObjectIfWorkflow(any(),
+                                                                                any(),
+                                                                                any())).thenReturn("other content".getBytes());
+
+        CatalogObjectImportResult revised = catalogObjectService.createCatalogObjectRevision("bucket",
+                                                                                             NAME,
+                                                                                             COMMIT_MESSAGE,
+                                                                                             USERNAME,
+                                                                                             "other content".getBytes(),
+                                                                                             true);
+
+        assertThat(revised.getStatus()).isEqualTo(CatalogObjectImportResult.Status.REVISED);
+        verify(catalogObjectRevisionRepository, times(1)).save(any(CatalogObjectRevisionEntity.class));
+    }
+
+    /**
+     * Makes the archive manager give the files in batches of the requested size.
+     */
+    @SuppressWarnings("unchecked")
+    private void stubArchiveEntries(FileNameAndContent... files) {
+        when(archiveManager.extractZIPFile(any(File.class), anyInt(), any())).thenAnswer(invocation -> {
+            int batchSize = (int) invocation.getArguments()[1];
+            Consumer<List<FileNameAndContent>> batchConsumer = (Consumer<List<FileNameAndContent>>) invocation.getArguments()[2];
+            Lists.partition(Arrays.asList(files), batchSize).forEach(batchConsumer);
+            return files.length;
+        });
+    }
+
+    private FileNameAndContent newFileNameAndContent(String name) {
+        FileNameAndContent file = new FileNameAndContent();
+        file.setName(name);
+        file.setFileNameWithExtension(name + ".xml");
+        file.setContent("<object/>".getBytes());
+        return file;
+    }
+
     @Test(expected = WrongParametersException.class)
     public void testUpdateObjectMetadataWithoutGivenParameters() {
         long now = System.currentTimeMillis();
@@ -247,12 +543,181 @@ public class CatalogObjectServiceTest {
                                                                                         Optional.of("updated-contentType"));
     }
 
+    @Test
+    public void testGetCatalogRawObjectIsCachedUntilTheObjectIsUpdated() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        CatalogObjectRevisionEntity lastRevision = newCatalogObjectRevisionEntity(bucketEntity,
+                                                                                  System.currentTimeMillis());
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(catalogObjectRevisionRepository.findDefaultCatalogObjectByNameInBucket(anyList(),
+                                                                                    anyString())).thenReturn(lastRevision);
+        when(rawObjectStorageService.getRawObjectFileToStream(lastRevision)).thenReturn(Optional.empty());
+        when(rawObjectStorageService.getRawObject(lastRevision)).thenReturn("content".getBytes());
+        when(kindAndContentTypeValidator.isValid(anyString())).thenReturn(true);
+
+        catalogObjectService.getCatalogRawObject("bucket", "catalog");
+        CatalogRawObject rawObject = catalogObjectService.getCatalogRawObject("bucket", "catalog");
+
+        assertThat(rawObject.getRawObject()).isEqualTo("content".getBytes());
+        verify(catalogObjectRevisionRepository, times(1)).findDefaultCatalogObjectByNameInBucket(anyList(),
+                                                                                                 anyString());
+
+        catalogObjectService.updateObjectMetadata("bucket", "catalog", Optional.of("updated-kind"), Optional.empty());
+        rawObject = catalogObjectService.getCatalogRawObject("bucket", "catalog");
+
+        assertThat(rawObject.getKind()).isEqualTo("updated-kind");
+        verify(catalogObjectRevisionRepository, times(3)).findDefaultCatalogObjectByNameInBucket(anyList(),
+                                                                                                 anyString());
+    }
+
     @Test(expected = BucketNotFoundException.class)
     public void testGetCatalogObjectWithInvalidBucket() {
         when(bucketRepository.findOneByBucketName(anyString())).thenReturn(null);
         catalogObjectService.listCatalogObjects(Arrays.asList("wrong-bucket"));
     }
 
+    @Test(expected = BucketNotFoundException.class)
+    public void testGetCatalogObjectValidatorsWithInvalidBucket() {
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(null);
+        catalogObjectService.getCatalogObjectValidators("wrong-bucket", "catalog");
+    }
+
+    @Test(expected = CatalogObjectNotFoundException.class)
+    public void testGetCatalogObjectValidatorsOfMissingObject() {
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(new BucketEntity("bucket", "toto"));
+        catalogObjectService.getCatalogObjectValidators("bucket", "missing");
+    }
+
+    @Test
+    public void testGetCatalogObjectsAsZipArchiveFetchesAllObjectsAtOnce() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(catalogObjectRevisionRepository.findDefaultCatalogObjectsArchiveEntriesByNamesInBucket("bucket",
+                                                                                                    Arrays.asList("missing",
+                                                                                                                  "catalog"))).thenReturn(Collections.singletonList(new Object[] { 1L,
+                                                                                                                                                                                   "catalog",
+                                                                                                                                                                                   "workflow",
+                                                                                                                                                                                   "xml",
+                                                                                                                                                                                   "hash" }));
+
+        catalogObjectService.getCatalogObjectsAsZipArchive("bucket", Arrays.asList("missing", "catalog", "missing"));
+
+        RevisionArchiveEntry revision = new RevisionArchiveEntry(1L, "catalog", "workflow", "xml", "hash");
+        verify(archiveManager).streamZIP(eq(Arrays.asList(null, revision, null)), any());
+        verify(catalogObjectRevisionRepository, never()).findDefaultCatalogObjectByNameInBucket(anyList(),
+                                                                                                anyString());
+    }
+
+    @Test
+    public void testGetCatalogObjectsAsZipArchiveLoadsEachContentWhenItIsWritten() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(catalogObjectRevisionRepository.findDefaultCatalogObjectsArchiveEntriesByNamesInBucket("bucket",
+                                                                                                    Collections.singletonList("catalog"))).thenReturn(Collections.singletonList(new Object[] { 1L,
+                                                                                                                                                                                               "catalog",
+                                                                                                                                                                                               "workflow",
+                                                                                                                                                                                               "xml",
+                                                                                                                                                                                               "hash" }));
+        when(rawObjectStorageService.getRawObject(1L, "hash")).thenReturn("content".getBytes());
+
+        catalogObjectService.getCatalogObjectsAsZipArchive("bucket", Collections.singletonList("catalog"));
+
+        ArgumentCaptor<List> revisionsCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Function> rawObjectLoaderCaptor = ArgumentCaptor.forClass(Function.class);
+        verify(archiveManager).streamZIP(revisionsCaptor.capture(), rawObjectLoaderCaptor.capture());
+        verify(rawObjectStorageService, never()).getRawObject(anyLong(), anyString());
+
+        assertThat((byte[]) rawObjectLoaderCaptor.getValue()
+                                                 .apply(revisionsCaptor.getValue()
+                                                                       .get(0))).isEqualTo("content".getBytes());
+        verify(rawObjectStorageService).getRawObject(1L, "hash");
+    }
+
+    @Test
+    public void testOpenBucketArchiveWritesTheObjectsOfTheBucketWithoutLoadingTheirEntities() throws IOException {
+        mockBucketWithOneObject();
+        when(bucketChangeCounter.getChangeCount(1L)).thenReturn(3L);
+
+        Optional<BucketArchive> bucketArchive = catalogObjectService.openBucketArchive("bucket",
+                                                                                       Collections.singletonList("catalog"));
+
+        assertThat(bucketArchive.get().getETag()).isEqualTo("\"1-3\"");
+        ArgumentCaptor<BucketArchiveCache.ArchiveWriter> writerCaptor = ArgumentCaptor.forClass(BucketArchiveCache.ArchiveWriter.class);
+        verify(bucketArchiveCache).openArchive(eq(1L), eq(3L), writerCaptor.capture());
+        OutputStream outputStream = new ByteArrayOutputStream();
+        writerCaptor.getValue().write(outputStream);
+
+        verify(archiveManager).writeZIP(eq(Collections.singletonList(new RevisionArchiveEntry(2L,
+                                                                                              "catalog",
+                                                                                              "workflow",
+                                                                                              "xml",
+                                                                                              "hash"))),
+                                        any(),
+                                        eq(outputStream));
+        verify(catalogObjectRevisionRepository, never()).findDefaultCatalogObjectsInBucket(anyList());
+    }
+
+    @Test
+    public void testOpenBucketArchiveOfSomeObjectsOfTheBucket() throws IOException {
+        mockBucketWithOneObject();
+
+        assertThat(catalogObjectService.openBucketArchive("bucket", Arrays.asList("catalog", "other"))).isEqualTo(Optional.empty());
+        verify(bucketArchiveCache, never()).openArchive(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void testOpenBucketArchiveReadsTheNamesAgainWhenTheBucketChangedWhileTheyWereRead() throws IOException {
+        mockBucketWithOneObject();
+        when(bucketChangeCounter.getChangeCount(1L)).thenReturn(3L, 4L);
+
+        Optional<BucketArchive> bucketArchive = catalogObjectService.openBucketArchive("bucket",
+                                                                                       Collections.singletonList("catalog"));
+
+        assertThat(bucketArchive.get().getETag()).isEqualTo("\"1-4\"");
+        verify(catalogObjectRepository, times(2)).findNamesByBucketId(1L);
+        verify(bucketArchiveCache, never()).openArchive(eq(1L), eq(3L), any());
+    }
+
+    @Test
+    public void testOpenBucketArchiveIsNotBuiltFromAnotherVersionOfTheBucket() throws IOException {
+        mockBucketWithOneObject();
+        // changed after the entries of the first build are listed
+        when(bucketChangeCounter.getChangeCount(1L)).thenReturn(3L, 3L, 4L);
+        when(bucketArchiveCache.openArchive(eq(1L), anyLong(), any())).thenAnswer(invocation -> {
+            ((BucketArchiveCache.ArchiveWriter) invocation.getArguments()[2]).write(new ByteArrayOutputStream());
+            return null;
+        });
+
+        Optional<BucketArchive> bucketArchive = catalogObjectService.openBucketArchive("bucket",
+                                                                                       Collections.singletonList("catalog"));
+
+        assertThat(bucketArchive.get().getETag()).isEqualTo("\"1-4\"");
+        verify(archiveManager, times(1)).writeZIP(anyList(), any(), any());
+    }
+
+    @Test
+    public void testOpenBucketArchiveIsGivenUpWhenTheBucketKeepsChanging() throws IOException {
+        mockBucketWithOneObject();
+        when(bucketChangeCounter.getChangeCount(1L)).thenReturn(3L, 4L, 5L, 6L, 7L, 8L);
+
+        assertThat(catalogObjectService.openBucketArchive("bucket",
+                                                          Collections.singletonList("catalog"))).isEqualTo(Optional.empty());
+        verify(bucketArchiveCache, never()).openArchive(anyLong(), anyLong(), any());
+    }
+
+    private void mockBucketWithOneObject() {
+        BucketEntity bucketEntity = new BucketEntity("bucket", "toto");
+        bucketEntity.setId(1L);
+        when(bucketRepository.findOneByBucketName(anyString())).thenReturn(bucketEntity);
+        when(bucketArchiveCache.isEnabled()).thenReturn(true);
+        when(catalogObjectRepository.findNamesByBucketId(1L)).thenReturn(Collections.singleton("catalog"));
+        when(catalogObjectRevisionRepository.findDefaultCatalogObjectsArchiveEntriesInBucket(1L)).thenReturn(Collections.singletonList(new Object[] { 2L,
+                                                                                                                                                     "catalog",
+                                                                                                                                                     "workflow",
+                                                                                                                                                     "xml",
+                                                                                                                                                     "hash" }));
+    }
+
     @Test
     public void testUpdateObjectMetadata() {
         long now = System.currentTimeMillis();
@@ -278,6 +743,7 @@ public class CatalogObjectServiceTest {
         assertThat(catalogObject.getMetadataList()).isNotEmpty();
         assertThat(catalogObject.getMetadataList()).hasSize(1);
         assertThat(catalogObject.getCommitTimeRaw()).isEqualTo(String.valueOf(now));
+        verify(bucketChangeCounter).markChanged(1L);
     }
 
     @Test
@@ -443,6 +909,82 @@ public class CatalogObjectServiceTest {
         return catalogObjectEntity;
     }
 
+    @Test
+    public void testListSelectedCatalogObjectsUsesMetadataProjection() {
+        BucketEntity bucketEntity = new BucketEntity(BUCKET, "toto");
+        when(bucketRepository.findOneByBucketName(BUCKET)).thenReturn(bucketEntity);
+        Object[] first = { 1L, BUCKET, "first", "workflow", APPLICATION_XML, "xml", REVISION_COMMIT_TIME,
+                           COMMIT_MESSAGE, USERNAME };
+        Object[] second = { 2L, BUCKET, "second", "script", "text/x-groovy", "groovy", REVISION_COMMIT_TIME,
+                            COMMIT_MESSAGE, USERNAME };
+        when(catalogObjectRevisionRepository.findDefaultCatalogObjectsMetadataByNamesInBucket(anyString(),
+                                                                                             any())).thenReturn(Arrays.asList(first,
+                                                                                                                              second));
+        when(catalogObjectRevisionRepository.findKeyValueMetadataOfRevisions(any())).thenReturn(Collections.singletonList(new Object[] { 2L,
+                                                                                                                                        "key",
+                                                                                                                                        "value",
+                                                                                                                                        "label" }));
+
+        List<CatalogObjectMetadata> catalogObjects = catalogObjectService.listSelectedCatalogObjects(BUCKET,
+                                                                                                     Arrays.asList("second",
+                                                                                                                   "missing",
+                                                                                                                   "first"));
+
+        assertThat(catalogObjects).hasSize(2);
+        assertThat(catalogObjects.get(0).getName()).isEqualTo("second");
+        assertThat(catalogObjects.get(0).getKind()).isEqualTo("script");
+        assertThat(catalogObjects.get(0).getExtension()).isEqualTo("groovy");
+        assertThat(catalogObjects.get(0).getMetadataList()).containsExactly(new Metadata("key", "value", "label"));
+        assertThat(catalogObjects.get(1).getName()).isEqualTo("first");
+        assertThat(catalogObjects.get(1).getMetadataList()).isEmpty();
+        assertThat(catalogObjects.get(1).getCommitTimeRaw()).isEqualTo(String.valueOf(REVISION_COMMIT_TIME));
+        verify(catalogObjectRevisionRepository, times(1)).findKeyValueMetadataOfRevisions(any());
+    }
+
+    @Test
+    public void testListCatalogObjectsPage() {
+        when(bucketRepository.findOneByBucketName(BUCKET)).thenReturn(new BucketEntity(BUCKET, "toto"));
+        List<Object[]> rows = Arrays.asList(newMetadataColumns(1L, "a"),
+                                            newMetadataColumns(2L, "b"),
+                                            newMetadataColumns(3L, "c"));
+        when(catalogObjectRevisionRepository.findDefaultCatalogObjectsMetadataInBucketAfterName(any(),
+                                                                                               anyString(),
+                                                                                               any())).thenReturn(rows);
+
+        KeysetPage<CatalogObjectMetadata> page = catalogObjectService.listCatalogObjects(BUCKET,
+                                                                                         Optional.empty(),
+                                                                                         Optional.empty(),
+                                                                                         Optional.empty(),
+                                                                                         Optional.of("0"),
+                                                                                         2);
+
+        assertThat(page.getItems()).hasSize(2);
+        assertThat(page.getItems().get(1).getName()).isEqualTo("b");
+        assertThat(page.getNextAfter()).isEqualTo("b");
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(catalogObjectRevisionRepository).findDefaultCatalogObjectsMetadataInBucketAfterName(any(),
+                                                                                                  eq("0"),
+                                                                                                  pageable.capture());
+        assertThat(pageable.getValue().getOffset()).isEqualTo(0);
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(3);
+    }
+
+    @Test(expected = WrongParametersException.class)
+    public void testListCatalogObjectsPageWithInvalidLimit() {
+        when(bucketRepository.findOneByBucketName(BUCKET)).thenReturn(new BucketEntity(BUCKET, "toto"));
+        catalogObjectService.listCatalogObjects(BUCKET,
+                                                Optional.empty(),
+                                                Optional.empty(),
+                                                Optional.empty(),
+                                                Optional.empty(),
+                                                0);
+    }
+
+    private Object[] newMetadataColumns(long revisionId, String name) {
+        return new Object[] { revisionId, BUCKET, name, "workflow", APPLICATION_XML, "xml", REVISION_COMMIT_TIME,
+                              COMMIT_MESSAGE, USERNAME };
+    }
+
     private CatalogObjectRevisionEntity newCatalogObjectRevisionEntity(BucketEntity bucketEntity, long now) {
         CatalogObjectEntity catalogObjectEntity = CatalogObjectEntity.builder()
                                                                      .id(new CatalogObjectEntity.CatalogObjectEntityKey(1L,
@@ -0,0 +1,118 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.ow2.proactive.catalog.dto.Metadata;
+import org.ow2.proactive.catalog.repository.entity.KeyValueLabelMetadataEntity;
+import org.ow2.proactive.catalog.service.model.GenericInfoBucketData;
+import org.ow2.proactive.catalog.service.model.PreparedRawObject;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class PreparedRawObjectCacheTest {
+
+    private static final byte[] RAW_OBJECT = "<job name=\"workflow\"/>".getBytes();
+
+    private static final GenericInfoBucketData BUCKET_DATA = GenericInfoBucketData.builder()
+                                                                                  .bucketName("bucket")
+                                                                                  .group("group")
+                                                                                  .build();
+
+    private final AtomicInteger preparations = new AtomicInteger();
+
+    private final Supplier<PreparedRawObject> preparation = () -> {
+        preparations.incrementAndGet();
+        return new PreparedRawObject(Collections.singletonList(new KeyValueLabelMetadataEntity("name",
+                                                                                               "workflow",
+                                                                                               "job_information")),
+                                     RAW_OBJECT);
+    };
+
+    @Test
+    public void testSameContentIsPreparedOnce() {
+        PreparedRawObjectCache cache = new PreparedRawObjectCache(1024 * 1024);
+
+        PreparedRawObject first = cache.get("workflow", BUCKET_DATA, Collections.emptyList(), RAW_OBJECT, preparation);
+        PreparedRawObject second = cache.get("workflow",
+                                             BUCKET_DATA,
+                                             Collections.emptyList(),
+                                             RAW_OBJECT.clone(),
+                                             preparation);
+
+        assertThat(preparations.get()).isEqualTo(1);
+        assertThat(cache.getStats().hitCount()).isEqualTo(1);
+        assertThat(second.getRawObject()).isEqualTo(first.getRawObject());
+        List<KeyValueLabelMetadataEntity> keyValues = second.getKeyValues();
+        assertThat(keyValues).hasSize(1);
+        assertThat(keyValues.get(0)).isNotSameAs(first.getKeyValues().get(0));
+        assertThat(keyValues.get(0).getLabel()).isEqualTo("job_information");
+    }
+
+    @Test
+    public void testContentIsPreparedAgainForAnotherBucketOrOtherMetadata() {
+        PreparedRawObjectCache cache = new PreparedRawObjectCache(1024 * 1024);
+
+        cache.get("workflow", BUCKET_DATA, Collections.emptyList(), RAW_OBJECT, preparation);
+        cache.get("workflow",
+                  GenericInfoBucketData.builder().bucketName("other-bucket").group("group").build(),
+                  Collections.emptyList(),
+                  RAW_OBJECT,
+                  preparation);
+        cache.get("workflow",
+                  BUCKET_DATA,
+                  Collections.singletonList(new Metadata("name", "workflow", "job_information")),
+                  RAW_OBJECT,
+                  preparation);
+        cache.get("workflow",
+                  BUCKET_DATA,
+                  Collections.singletonList(new Metadata("name", "workflow", "variable")),
+                  RAW_OBJECT,
+                  preparation);
+
+        assertThat(preparations.get()).isEqualTo(4);
+        assertThat(cache.getStats().hitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysPrepares() {
+        PreparedRawObjectCache cache = new PreparedRawObjectCache(0);
+
+        cache.get("workflow", BUCKET_DATA, Collections.emptyList(), RAW_OBJECT, preparation);
+        cache.get("workflow", BUCKET_DATA, Collections.emptyList(), RAW_OBJECT, preparation);
+
+        assertThat(preparations.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.ow2.proactive.catalog.dto.CatalogRawObject;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class RawObjectCacheTest {
+
+    private static final long COMMIT_TIME = 1400343L;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Supplier<CatalogRawObject> loader = () -> {
+        loads.incrementAndGet();
+        return new CatalogRawObject("bucket",
+                                    "script",
+                                    "Script/task",
+                                    "text/x-groovy",
+                                    COMMIT_TIME,
+                                    "commit message",
+                                    "username",
+                                    Collections.emptyList(),
+                                    "println 'hello'".getBytes(),
+                                    "groovy");
+    };
+
+    @Test
+    public void testLastRevisionIsLoadedOnceUntilInvalidated() {
+        RawObjectCache cache = new RawObjectCache(1024 * 1024, 1024 * 1024, 60);
+
+        CatalogRawObject first = cache.getLastRevision("bucket", "script", loader);
+        CatalogRawObject second = cache.getLastRevision("bucket", "script", loader);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getRawObject()).isEqualTo(first.getRawObject());
+        assertThat(second.getCommitTimeRaw()).isEqualTo(String.valueOf(COMMIT_TIME));
+
+        cache.invalidateLastRevision("bucket", "script");
+        cache.getLastRevision("bucket", "script", loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRevisionsAreKeptWhenARevisionIsAdded() {
+        RawObjectCache cache = new RawObjectCache(1024 * 1024, 1024 * 1024, 60);
+        cache.getRevision("bucket", "script", COMMIT_TIME, loader);
+
+        cache.invalidateLastRevision("bucket", "script");
+        cache.getRevision("bucket", "script", COMMIT_TIME, loader);
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAllEntriesOfAnObjectAreInvalidated() {
+        RawObjectCache cache = new RawObjectCache(1024 * 1024, 1024 * 1024, 60);
+        cache.getLastRevision("bucket", "script", loader);
+        cache.getRevision("bucket", "script", COMMIT_TIME, loader);
+        cache.getRevision("bucket", "other", COMMIT_TIME, loader);
+
+        cache.invalidate("bucket", "script");
+        cache.getLastRevision("bucket", "script", loader);
+        cache.getRevision("bucket", "script", COMMIT_TIME, loader);
+        cache.getRevision("bucket", "other", COMMIT_TIME, loader);
+
+        assertThat(loads.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        RawObjectCache cache = new RawObjectCache(1024 * 1024, 1024 * 1024, 60);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<CatalogRawObject> slowLoader = () -> {
+            loading.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loader.get();
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<CatalogRawObject> first = executor.submit(() -> cache.getLastRevision("bucket",
+                                                                                         "script",
+                                                                                         slowLoader));
+            loading.await(10, TimeUnit.SECONDS);
+            Future<CatalogRawObject> second = executor.submit(() -> cache.getLastRevision("bucket",
+                                                                                          "script",
+                                                                                          slowLoader));
+            release.countDown();
+
+            assertThat(first.get(10, TimeUnit.SECONDS).getRawObject()).isEqualTo(second.get(10, TimeUnit.SECONDS)
+                                                                                       .getRawObject());
+            assertThat(loads.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysLoads() {
+        RawObjectCache cache = new RawObjectCache(0, 0, 60);
+
+        cache.getLastRevision("bucket", "script", loader);
+        cache.getLastRevision("bucket", "script", loader);
+        cache.getRevision("bucket", "script", COMMIT_TIME, loader);
+
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+}
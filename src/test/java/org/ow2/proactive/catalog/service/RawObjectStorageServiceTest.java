@@ -0,0 +1,258 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.ow2.proactive.catalog.repository.CatalogObjectRevisionRepository;
+import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.ow2.proactive.catalog.repository.storage.RawObjectStore;
+import org.ow2.proactive.catalog.service.exception.RawObjectStoreException;
+import org.ow2.proactive.catalog.util.ContentHashUtil;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+
+/**
+ * @author ActiveEon Team
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RawObjectStorageServiceTest {
+
+    private static final byte[] CONTENT = new byte[] { 1, 2, 3 };
+
+    private static final String KEY = ContentHashUtil.sha256Hex(CONTENT);
+
+    @InjectMocks
+    private RawObjectStorageService rawObjectStorageService;
+
+    @Mock
+    private RawObjectStore rawObjectStore;
+
+    @Mock
+    private CatalogObjectRevisionRepository catalogObjectRevisionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    public void setUp() {
+        rawObjectStorageService.rawObjectStoreEnabled = true;
+        rawObjectStorageService.migrateExistingRawObjects = false;
+        rawObjectStorageService.garbageCollectionGracePeriodSeconds = 3600;
+        rawObjectStorageService.streamThresholdBytes = 3;
+    }
+
+    @Test
+    public void testThatRevisionOnlyKeepsHashAndSizeOfStoredContent() {
+        when(rawObjectStore.put(CONTENT)).thenReturn(KEY);
+        CatalogObjectRevisionEntity revision = new CatalogObjectRevisionEntity();
+
+        rawObjectStorageService.setRawObject(revision, CONTENT);
+
+        assertThat(revision.getRawObject()).isNull();
+        assertThat(revision.getContentHash()).isEqualTo(KEY);
+        assertThat(revision.getContentSize()).isEqualTo(3L);
+        verify(rawObjectStore, never()).get(KEY);
+    }
+
+    @Test
+    public void testThatContentIsKeptInRevisionWhenStoreIsDisabled() {
+        rawObjectStorageService.rawObjectStoreEnabled = false;
+        CatalogObjectRevisionEntity revision = new CatalogObjectRevisionEntity();
+
+        rawObjectStorageService.setRawObject(revision, CONTENT);
+
+        assertThat(revision.getRawObject()).isEqualTo(CONTENT);
+        assertThat(revision.getContentHash()).isEqualTo(KEY);
+        verify(rawObjectStore, never()).put(CONTENT);
+    }
+
+    @Test
+    public void testThatContentOfRevisionsWithoutContentHashIsReadFromTheRevision() {
+        CatalogObjectRevisionEntity revision = new CatalogObjectRevisionEntity();
+        revision.setRawObject(CONTENT);
+
+        assertThat(rawObjectStorageService.getRawObject(revision)).isEqualTo(CONTENT);
+        verify(rawObjectStore, never()).get(KEY);
+    }
+
+    @Test
+    public void testThatStoredContentIsReadFromTheStore() {
+        when(rawObjectStore.get(KEY)).thenReturn(CONTENT);
+        CatalogObjectRevisionEntity revision = new CatalogObjectRevisionEntity();
+        revision.setContentHash(KEY);
+
+        assertThat(rawObjectStorageService.getRawObject(revision)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testThatContentOfNotLoadedRevisionIsReadAloneFromTheDatabaseWhenNotStored() {
+        when(catalogObjectRevisionRepository.findRawObjectById(1L)).thenReturn(CONTENT);
+
+        assertThat(rawObjectStorageService.getRawObject(1L, KEY)).isEqualTo(CONTENT);
+        verify(rawObjectStore, never()).get(KEY);
+    }
+
+    @Test
+    public void testThatStoredContentOfNotLoadedRevisionIsReadFromTheStore() {
+        when(rawObjectStore.get(KEY)).thenReturn(CONTENT);
+
+        assertThat(rawObjectStorageService.getRawObject(1L, KEY)).isEqualTo(CONTENT);
+        verify(catalogObjectRevisionRepository).findRawObjectById(1L);
+    }
+
+    @Test
+    public void testThatOnlyStoredContentsReachingTheThresholdAreStreamedFromTheirFile() {
+        Path file = Paths.get("raw-objects", KEY.substring(0, 2), KEY);
+        when(rawObjectStore.getFile(KEY)).thenReturn(Optional.of(file));
+        CatalogObjectRevisionEntity revision = new CatalogObjectRevisionEntity();
+        revision.setContentHash(KEY);
+        revision.setContentSize(3L);
+
+        assertThat(rawObjectStorageService.getRawObjectFileToStream(revision)).isEqualTo(Optional.of(file));
+
+        revision.setContentSize(2L);
+        assertThat(rawObjectStorageService.getRawObjectFileToStream(revision)).isEqualTo(Optional.empty());
+
+        revision.setContentSize(3L);
+        revision.setRawObject(CONTENT);
+        assertThat(rawObjectStorageService.getRawObjectFileToStream(revision)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void testThatGarbageCollectionOnlyDeletesUnreferencedContents() {
+        when(rawObjectStore.listKeysWrittenBefore(anyLong())).thenReturn(new HashSet<>(Arrays.asList(KEY,
+                                                                                                     "unreferenced")));
+        when(catalogObjectRevisionRepository.findAllContentHashes()).thenReturn(Collections.singletonList(KEY));
+        when(rawObjectStore.deleteIfWrittenBefore(eq("unreferenced"), anyLong(), any())).thenReturn(true);
+
+        assertThat(rawObjectStorageService.collectGarbage()).isEqualTo(1);
+        verify(rawObjectStore, never()).deleteIfWrittenBefore(eq(KEY), anyLong(), any());
+    }
+
+    @Test
+    public void testThatGarbageCollectionChecksReferencesAgainBeforeDeleting() {
+        when(rawObjectStore.listKeysWrittenBefore(anyLong())).thenReturn(new HashSet<>(Collections.singletonList(KEY)));
+        when(catalogObjectRevisionRepository.findAllContentHashes()).thenReturn(Collections.emptyList());
+        when(catalogObjectRevisionRepository.countByContentHash(KEY)).thenReturn(1L);
+        when(rawObjectStore.deleteIfWrittenBefore(eq(KEY), anyLong(), any())).then(invocation -> {
+            Predicate<String> isReferenced = (Predicate<String>) invocation.getArguments()[2];
+            return !isReferenced.test(KEY);
+        });
+
+        assertThat(rawObjectStorageService.collectGarbage()).isEqualTo(0);
+    }
+
+    @Test
+    public void testThatExistingRevisionsKeepTheirContentInTheDatabaseUnlessMigrationIsRequested() {
+        CatalogObjectRevisionEntity revision = createExistingRevision();
+        when(catalogObjectRevisionRepository.findRevisionsWithoutContentHash(eq(0L),
+                                                                             any(Pageable.class))).thenReturn(Collections.singletonList(revision));
+
+        rawObjectStorageService.migrateExistingRevisions();
+
+        assertThat(revision.getRawObject()).isEqualTo(CONTENT);
+        assertThat(revision.getContentHash()).isEqualTo(KEY);
+        assertThat(revision.getContentSize()).isEqualTo(3L);
+        verify(rawObjectStore, never()).put(CONTENT);
+        verify(catalogObjectRevisionRepository, never()).findRevisionsWithRawObject(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testThatRequestedMigrationMovesContentsReadBackFromTheStore() {
+        rawObjectStorageService.migrateExistingRawObjects = true;
+        CatalogObjectRevisionEntity revision = createExistingRevision();
+        List<CatalogObjectRevisionEntity> revisions = Collections.singletonList(revision);
+        when(catalogObjectRevisionRepository.findRevisionsWithRawObject(eq(0L),
+                                                                         any(Pageable.class))).thenReturn(revisions);
+        when(rawObjectStore.put(CONTENT)).thenReturn(KEY);
+        when(rawObjectStore.get(KEY)).thenReturn(CONTENT.clone());
+
+        rawObjectStorageService.migrateExistingRevisions();
+
+        assertThat(revision.getRawObject()).isNull();
+        assertThat(revision.getContentHash()).isEqualTo(KEY);
+        verify(catalogObjectRevisionRepository).save(revisions);
+    }
+
+    @Test
+    public void testThatMigrationKeepsContentsWhichDifferOnceReadBackFromTheStore() {
+        rawObjectStorageService.migrateExistingRawObjects = true;
+        CatalogObjectRevisionEntity revision = createExistingRevision();
+        when(catalogObjectRevisionRepository.findRevisionsWithRawObject(eq(0L),
+                                                                         any(Pageable.class))).thenReturn(Collections.singletonList(revision));
+        when(rawObjectStore.put(CONTENT)).thenReturn(KEY);
+        when(rawObjectStore.get(KEY)).thenReturn(new byte[] { 1, 2 });
+
+        rawObjectStorageService.migrateExistingRevisions();
+
+        assertThat(revision.getRawObject()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testThatMigrationKeepsContentsWhichCannotBeReadBackFromTheStore() {
+        rawObjectStorageService.migrateExistingRawObjects = true;
+        CatalogObjectRevisionEntity revision = createExistingRevision();
+        when(catalogObjectRevisionRepository.findRevisionsWithRawObject(eq(0L),
+                                                                         any(Pageable.class))).thenReturn(Collections.singletonList(revision));
+        when(rawObjectStore.put(CONTENT)).thenReturn(KEY);
+        when(rawObjectStore.get(KEY)).thenThrow(new RawObjectStoreException("Raw object " + KEY + " is missing"));
+
+        rawObjectStorageService.migrateExistingRevisions();
+
+        assertThat(revision.getRawObject()).isEqualTo(CONTENT);
+    }
+
+    private CatalogObjectRevisionEntity createExistingRevision() {
+        CatalogObjectRevisionEntity revision = new CatalogObjectRevisionEntity();
+        revision.setId(1L);
+        revision.setRawObject(CONTENT);
+        return revision;
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.service;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.catalog.repository.entity.BucketEntity;
+import org.ow2.proactive.catalog.service.model.AuthenticatedUser;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class RequestAccessContextTest {
+
+    private RequestAccessContext requestAccessContext;
+
+    private Function<String, AuthenticatedUser> authenticator;
+
+    private Function<String, BucketEntity> bucketLoader;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        requestAccessContext = new RequestAccessContext();
+        authenticator = mock(Function.class);
+        bucketLoader = mock(Function.class);
+        when(authenticator.apply("sessionId")).thenReturn(AuthenticatedUser.builder()
+                                                                           .name("user")
+                                                                           .groups(Arrays.asList("group1",
+                                                                                                 "group2"))
+                                                                           .build());
+        when(bucketLoader.apply("bucket-name")).thenReturn(new BucketEntity("bucket-name", "owner"));
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testThatResolutionsAreSharedWithinARequest() {
+        startRequest();
+
+        AuthenticatedUser authenticatedUser = requestAccessContext.getAuthenticatedUser("sessionId", authenticator);
+        assertThat(requestAccessContext.getAuthenticatedUser("sessionId", authenticator)).isSameAs(authenticatedUser);
+        assertThat(requestAccessContext.getUserGroups("sessionId", authenticator)).containsExactly("group1",
+                                                                                                   "group2");
+        verify(authenticator, times(1)).apply("sessionId");
+
+        BucketEntity bucketEntity = requestAccessContext.getBucket("bucket-name", bucketLoader);
+        assertThat(requestAccessContext.getBucket("bucket-name", bucketLoader)).isSameAs(bucketEntity);
+        verify(bucketLoader, times(1)).apply("bucket-name");
+    }
+
+    @Test
+    public void testThatEvictedBucketIsLoadedAgain() {
+        startRequest();
+
+        requestAccessContext.getBucket("bucket-name", bucketLoader);
+        requestAccessContext.evictBucket("bucket-name");
+        requestAccessContext.getBucket("bucket-name", bucketLoader);
+
+        verify(bucketLoader, times(2)).apply("bucket-name");
+    }
+
+    @Test
+    public void testThatMissingBucketIsNotRemembered() {
+        startRequest();
+
+        assertThat(requestAccessContext.getBucket("missing", bucketLoader)).isNull();
+        requestAccessContext.getBucket("missing", bucketLoader);
+
+        verify(bucketLoader, times(2)).apply("missing");
+    }
+
+    @Test
+    public void testThatNothingIsKeptOutsideOfARequest() {
+        requestAccessContext.getAuthenticatedUser("sessionId", authenticator);
+        requestAccessContext.getAuthenticatedUser("sessionId", authenticator);
+        requestAccessContext.getBucket("bucket-name", bucketLoader);
+        requestAccessContext.getBucket("bucket-name", bucketLoader);
+
+        verify(authenticator, times(2)).apply("sessionId");
+        verify(bucketLoader, times(2)).apply("bucket-name");
+    }
+
+    private void startRequest() {
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getAttribute(anyString())).then(invocation -> attributes.get(invocation.getArguments()[0]));
+        doAnswer(invocation -> attributes.put((String) invocation.getArguments()[0],
+                                              invocation.getArguments()[1])).when(request)
+                                                                            .setAttribute(anyString(), any());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+}
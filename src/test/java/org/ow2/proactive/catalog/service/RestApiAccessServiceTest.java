@@ -25,15 +25,23 @@
  */
 package org.ow2.proactive.catalog.service;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.function.Predicate;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.ow2.proactive.catalog.dto.BucketMetadata;
 import org.ow2.proactive.catalog.service.exception.AccessDeniedException;
@@ -60,6 +68,9 @@ public class RestApiAccessServiceTest {
     @Mock
     private BucketService bucketService;
 
+    @Spy
+    private RequestAccessContext requestAccessContext = new RequestAccessContext();
+
     @Test
     public void testSessionIdIsHandedToAuthenticationService() throws NotAuthenticatedException, AccessDeniedException {
 
@@ -142,4 +153,38 @@ public class RestApiAccessServiceTest {
 
     }
 
+    @Test
+    public void testThatBucketOwnerAccessPredicateAuthenticatesOnlyOnce() {
+        AuthenticatedUser authenticatedUser = AuthenticatedUser.builder()
+                                                               .name("user")
+                                                               .groups(Arrays.asList("group1", "group2"))
+                                                               .build();
+
+        when(schedulerUserAuthenticationService.authenticateBySessionId("testSessionId")).thenReturn(authenticatedUser);
+
+        when(authorizationService.askUserGroupsAuthorizationByBucketOwner(any(), eq("GROUP:group1"))).thenReturn(true);
+
+        Predicate<String> isBucketOwnerAccessible = restApiAccessService.getBucketOwnerAccessPredicate(true,
+                                                                                                       "testSessionId");
+
+        assertThat(isBucketOwnerAccessible.test(BucketService.DEFAULT_BUCKET_OWNER)).isTrue();
+        assertThat(isBucketOwnerAccessible.test("GROUP:group1")).isTrue();
+        assertThat(isBucketOwnerAccessible.test("GROUP:group3")).isFalse();
+
+        verify(schedulerUserAuthenticationService, times(1)).authenticateBySessionId("testSessionId");
+        verify(authorizationService, times(2)).askUserGroupsAuthorizationByBucketOwner(eq(new HashSet<>(Arrays.asList("group1",
+                                                                                                                      "group2"))),
+                                                                                       any());
+        verify(bucketService, never()).getBucketMetadata(any());
+    }
+
+    @Test
+    public void testThatBucketOwnerAccessPredicateDoesNotAuthenticateWhenSessionIdIsNotRequired() {
+        Predicate<String> isBucketOwnerAccessible = restApiAccessService.getBucketOwnerAccessPredicate(false, null);
+
+        assertThat(isBucketOwnerAccessible.test("GROUP:group1")).isTrue();
+
+        verify(schedulerUserAuthenticationService, never()).authenticateBySessionId(any());
+    }
+
 }
@@ -33,6 +33,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.ow2.proactive_grid_cloud_portal.scheduler.client.SchedulerRestClient;
 
 
 /**
@@ -60,4 +61,16 @@ public class SchedulerRestClientCreatorTest {
 
         assertThat(schedulerRestClientCreator.getNewClientInitializedWithSchedulerRestUrl()).isNotNull();
     }
+
+    @Test
+    public void testThatSharedClientIsReused() {
+        when(schedulerRestClientCreator.getSchedulerRestUrl()).thenReturn("http://testUrl");
+
+        SchedulerRestClient client = schedulerRestClientCreator.getSharedClient();
+
+        assertThat(client).isNotNull();
+        assertThat(schedulerRestClientCreator.getSharedClient()).isSameAs(client);
+        assertThat(schedulerRestClientCreator.getConnectionPoolStats().getMax()).isGreaterThan(0);
+        schedulerRestClientCreator.close();
+    }
 }
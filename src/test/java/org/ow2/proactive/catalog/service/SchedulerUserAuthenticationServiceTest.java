@@ -27,15 +27,22 @@ package org.ow2.proactive.catalog.service;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.ow2.proactive.authentication.UserData;
@@ -52,7 +59,6 @@ import org.ow2.proactive_grid_cloud_portal.scheduler.client.SchedulerRestClient;
 @RunWith(MockitoJUnitRunner.class)
 public class SchedulerUserAuthenticationServiceTest {
 
-    @InjectMocks
     SchedulerUserAuthenticationService schedulerUserAuthenticationService;
 
     @Mock
@@ -71,7 +77,11 @@ public class SchedulerUserAuthenticationServiceTest {
         userData.setGroups(new HashSet<>(Arrays.asList("user", "technical")));
         when(schedulerRestInterfaceMock.getUserDataFromSessionId(any())).thenReturn(userData);
         when(schedulerRestClientMock.getScheduler()).thenReturn(schedulerRestInterfaceMock);
-        when(schedulerRestClientCreator.getNewClientInitializedWithSchedulerRestUrl()).thenReturn(schedulerRestClientMock);
+        when(schedulerRestClientCreator.getSharedClient()).thenReturn(schedulerRestClientMock);
+        schedulerUserAuthenticationService = new SchedulerUserAuthenticationService(schedulerRestClientCreator,
+                                                                                    100,
+                                                                                    60,
+                                                                                    10);
     }
 
     @Test(expected = NotAuthenticatedException.class)
@@ -100,4 +110,89 @@ public class SchedulerUserAuthenticationServiceTest {
         assertThat(authenticatedUser.getGroups()).containsExactly("user", "technical");
     }
 
+    @Test
+    public void testThatValidSessionIsAuthenticatedRemotelyOnlyOnce() throws NotAuthenticatedException {
+        schedulerUserAuthenticationService.authenticateBySessionId("session");
+        AuthenticatedUser authenticatedUser = schedulerUserAuthenticationService.authenticateBySessionId("session");
+
+        assertThat(authenticatedUser.getName()).isEqualTo("testUser");
+        verify(schedulerRestInterfaceMock, times(1)).getUserDataFromSessionId("session");
+        assertThat(schedulerUserAuthenticationService.getAuthenticatedSessionCacheStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testThatInvalidSessionIsRememberedAsInvalid() {
+        when(schedulerRestInterfaceMock.getUserDataFromSessionId(any())).thenReturn(null);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                schedulerUserAuthenticationService.authenticateBySessionId("invalid");
+            } catch (NotAuthenticatedException e) {
+                // expected
+            }
+        }
+
+        verify(schedulerRestInterfaceMock, times(1)).getUserDataFromSessionId("invalid");
+    }
+
+    @Test
+    public void testThatCommunicationFailureIsNotCached() {
+        when(schedulerRestInterfaceMock.getUserDataFromSessionId(any())).thenThrow(NullPointerException.class);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                schedulerUserAuthenticationService.authenticateBySessionId("any");
+            } catch (NotAuthenticatedException e) {
+                // expected
+            }
+        }
+
+        verify(schedulerRestInterfaceMock, times(2)).getUserDataFromSessionId("any");
+    }
+
+    @Test
+    public void testThatInvalidatedSessionIsAuthenticatedAgain() throws NotAuthenticatedException {
+        schedulerUserAuthenticationService.authenticateBySessionId("session");
+        schedulerUserAuthenticationService.invalidateSession("session");
+        schedulerUserAuthenticationService.authenticateBySessionId("session");
+
+        verify(schedulerRestInterfaceMock, times(2)).getUserDataFromSessionId("session");
+    }
+
+    @Test
+    public void testThatConcurrentAuthenticationsOfSameSessionShareOneRemoteCall() throws Exception {
+        UserData userData = new UserData();
+        userData.setUserName("testUser");
+        userData.setGroups(new HashSet<>(Arrays.asList("user")));
+        CountDownLatch remoteCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseRemoteCall = new CountDownLatch(1);
+        when(schedulerRestInterfaceMock.getUserDataFromSessionId("session")).thenAnswer(invocation -> {
+            remoteCallStarted.countDown();
+            releaseRemoteCall.await();
+            return userData;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<AuthenticatedUser>> results = new ArrayList<>();
+            results.add(executor.submit(() -> schedulerUserAuthenticationService.authenticateBySessionId("session")));
+            remoteCallStarted.await();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> schedulerUserAuthenticationService.authenticateBySessionId("session")));
+            }
+            while (schedulerUserAuthenticationService.getCoalescedAuthenticationCount() < 3) {
+                Thread.sleep(10);
+            }
+            releaseRemoteCall.countDown();
+
+            for (Future<AuthenticatedUser> result : results) {
+                assertThat(result.get().getName()).isEqualTo("testUser");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(schedulerRestInterfaceMock, times(1)).getUserDataFromSessionId("session");
+    }
+
 }
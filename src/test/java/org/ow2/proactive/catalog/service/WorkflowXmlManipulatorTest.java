@@ -274,6 +274,27 @@ public class WorkflowXmlManipulatorTest {
         assertThat(genericInfoInTaskFlow).doesNotContain("value=\"secondTestValue\"");
     }
 
+    @Test
+    public void testThatWorkflowIsNotRewrittenIfGenericInfoIsUnchanged() {
+        Map<String, String> sameGenericInfo = new HashMap<>();
+        sameGenericInfo.put("first", "value1");
+        sameGenericInfo.put("second", "value2");
+
+        byte[] workflow = workflowXmlManipulator.replaceGenericInformationJobLevel(simpleWorkflowWithGenericInfo,
+                                                                                   sameGenericInfo);
+        assertThat(workflow).isSameAs(simpleWorkflowWithGenericInfo);
+    }
+
+    @Test
+    public void testThatOnlyGenericInfoIsRewritten() {
+        String genericInfoReplaced = new String(workflowXmlManipulator.replaceGenericInformationJobLevel(simpleWorkflowWithGenericInfo,
+                                                                                                         this.getTwoSimpleEntries()));
+        String original = new String(simpleWorkflowWithGenericInfo);
+        assertThat(genericInfoReplaced).startsWith(original.substring(0, original.indexOf("<genericInformation>")));
+        assertThat(genericInfoReplaced).endsWith(original.substring(original.indexOf("</genericInformation>") +
+                                                                    "</genericInformation>".length()));
+    }
+
     @Test
     public void testThatWorkflowHasGenericAllGenericInfoAddedIfItWasNotThereBefore() {
         String emptyGenericInfo = new String(workflowXmlManipulator.replaceGenericInformationJobLevel(simpleWorkflowWithoutGenericInfo,
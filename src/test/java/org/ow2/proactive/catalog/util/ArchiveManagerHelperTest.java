@@ -26,32 +26,40 @@
 package org.ow2.proactive.catalog.util;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.ow2.proactive.catalog.repository.entity.CatalogObjectEntity;
-import org.ow2.proactive.catalog.repository.entity.CatalogObjectEntity.CatalogObjectEntityKey;
-import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.ow2.proactive.catalog.service.exception.ArchiveTooLargeException;
+import org.ow2.proactive.catalog.service.model.RevisionArchiveEntry;
 import org.ow2.proactive.catalog.util.ArchiveManagerHelper.FileNameAndContent;
-import org.ow2.proactive.catalog.util.ArchiveManagerHelper.ZipArchiveContent;
+import org.ow2.proactive.catalog.util.ArchiveManagerHelper.StreamedZipArchive;
+
+import com.google.common.collect.ImmutableMap;
 
 
 public class ArchiveManagerHelperTest {
@@ -66,6 +74,9 @@ public class ArchiveManagerHelperTest {
 
     private static URI ZIP_FILE_DIFF_TYPES;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Mock
     private RawObjectResponseCreator rawObjectResponseCreator;
 
@@ -86,35 +97,27 @@ public class ArchiveManagerHelperTest {
         ZIP_FILE_DIFF_TYPES = ArchiveManagerHelperTest.class.getResource("/archives/archiveDiffTypes.zip").toURI();
     }
 
-    private CatalogObjectRevisionEntity getCatalogObjectRevisionEntity(String name, byte[] fileContent,
-            String extension) throws IOException {
-        CatalogObjectEntity object = new CatalogObjectEntity();
-        object.setId(new CatalogObjectEntityKey(1L, name));
-        object.setExtension(extension);
-
-        CatalogObjectRevisionEntity revision = new CatalogObjectRevisionEntity();
-        revision.setCatalogObject(object);
-        revision.setRawObject(fileContent);
-
-        return revision;
+    private RevisionArchiveEntry getRevisionArchiveEntry(long revisionId, String name, String extension) {
+        return new RevisionArchiveEntry(revisionId, name, null, extension, null);
     }
 
     @Test
-    public void testCompressZipWithDifferentFileTypes() throws IOException {
-
-        assertNull(archiveManager.compressZIP(null));
-
+    public void testWriteZipWithDifferentFileTypes() throws IOException {
         byte[] workflowByteArray0 = convertFromURIToByteArray(XML_FILE_0);
         byte[] jsonByteArray1 = convertFromURIToByteArray(XML_FILE_1);
         when(rawObjectResponseCreator.getNameWithFileExtension("workflow_0", "xml", null)).thenReturn("workflow_0.xml");
         when(rawObjectResponseCreator.getNameWithFileExtension("array", "json", null)).thenReturn("array.json");
-        List<CatalogObjectRevisionEntity> expectedFiles = new ArrayList<>();
-        expectedFiles.add(getCatalogObjectRevisionEntity("workflow_0", workflowByteArray0, "xml"));
-        expectedFiles.add(getCatalogObjectRevisionEntity("array", jsonByteArray1, "json"));
+        List<RevisionArchiveEntry> expectedFiles = new ArrayList<>();
+        expectedFiles.add(getRevisionArchiveEntry(1L, "workflow_0", "xml"));
+        expectedFiles.add(getRevisionArchiveEntry(2L, "array", "json"));
+        Map<Long, byte[]> contents = ImmutableMap.of(1L, workflowByteArray0, 2L, jsonByteArray1);
         //Compress
-        ZipArchiveContent archive = archiveManager.compressZIP(expectedFiles);
+        File archive = temporaryFolder.newFile("archive.zip");
+        try (OutputStream outputStream = new FileOutputStream(archive)) {
+            archiveManager.writeZIP(expectedFiles, revision -> contents.get(revision.getRevisionId()), outputStream);
+        }
         //Then extract
-        List<FileNameAndContent> actualFiles = archiveManager.extractZIP(archive.getContent());
+        List<FileNameAndContent> actualFiles = extractZIPFile(archive);
         assertEquals(2, actualFiles.size());
 
         compare(workflowByteArray0, actualFiles.get(0).getContent());
@@ -124,21 +127,25 @@ public class ArchiveManagerHelperTest {
     }
 
     @Test
-    public void testCompressZip() throws IOException {
-
-        assertNull(archiveManager.compressZIP(null));
-
+    public void testStreamZip() throws IOException {
         byte[] workflowByteArray0 = convertFromURIToByteArray(XML_FILE_0);
         byte[] workflowByteArray1 = convertFromURIToByteArray(XML_FILE_1);
-        List<CatalogObjectRevisionEntity> expectedFiles = new ArrayList<>();
-        expectedFiles.add(getCatalogObjectRevisionEntity("workflow_0", workflowByteArray0, "xml"));
-        expectedFiles.add(getCatalogObjectRevisionEntity("workflow_1", workflowByteArray1, "xml"));
+        List<RevisionArchiveEntry> expectedFiles = new ArrayList<>();
+        expectedFiles.add(getRevisionArchiveEntry(1L, "workflow_0", "xml"));
+        expectedFiles.add(getRevisionArchiveEntry(2L, "workflow_1", "xml"));
+        Map<Long, byte[]> contents = ImmutableMap.of(1L, workflowByteArray0, 2L, workflowByteArray1);
         when(rawObjectResponseCreator.getNameWithFileExtension("workflow_0", "xml", null)).thenReturn("workflow_0.xml");
         when(rawObjectResponseCreator.getNameWithFileExtension("workflow_1", "xml", null)).thenReturn("workflow_1.xml");
         //Compress
-        ZipArchiveContent archive = archiveManager.compressZIP(expectedFiles);
+        StreamedZipArchive streamedArchive = archiveManager.streamZIP(expectedFiles,
+                                                                      revision -> contents.get(revision.getRevisionId()));
+        assertFalse(streamedArchive.isPartial());
+        File archive = temporaryFolder.newFile("archive.zip");
+        try (OutputStream outputStream = new FileOutputStream(archive)) {
+            streamedArchive.writeTo(outputStream);
+        }
         //Then extract
-        List<FileNameAndContent> actualFiles = archiveManager.extractZIP(archive.getContent());
+        List<FileNameAndContent> actualFiles = extractZIPFile(archive);
         assertEquals(2, actualFiles.size());
 
         compare(workflowByteArray0, actualFiles.get(0).getContent());
@@ -148,25 +155,100 @@ public class ArchiveManagerHelperTest {
     }
 
     @Test
-    public void testExtractZip() throws IOException {
-        assertTrue(archiveManager.extractZIP(null).isEmpty());
-        List<FileNameAndContent> files = archiveManager.extractZIP(convertFromURIToByteArray(ZIP_FILE));
-        assertEquals(2, files.size());
+    public void testStreamZipWithMissingObject() throws IOException {
+        byte[] workflowByteArray0 = convertFromURIToByteArray(XML_FILE_0);
+        when(rawObjectResponseCreator.getNameWithFileExtension("workflow_0", "xml", null)).thenReturn("workflow_0.xml");
+        StreamedZipArchive streamedArchive = archiveManager.streamZIP(Arrays.asList(null,
+                                                                                    getRevisionArchiveEntry(1L,
+                                                                                                            "workflow_0",
+                                                                                                            "xml")),
+                                                                      revision -> workflowByteArray0);
+        assertTrue(streamedArchive.isPartial());
+        File archive = temporaryFolder.newFile("archive.zip");
+        try (OutputStream outputStream = new FileOutputStream(archive)) {
+            streamedArchive.writeTo(outputStream);
+        }
 
-        compare(convertFromURIToByteArray(XML_FILE_0), files.get(0).getContent());
-        compare(convertFromURIToByteArray(XML_FILE_1), files.get(1).getContent());
+        List<FileNameAndContent> actualFiles = extractZIPFile(archive);
+        assertEquals(1, actualFiles.size());
+        compare(workflowByteArray0, actualFiles.get(0).getContent());
     }
 
     @Test
-    public void testExtractZipWithDiffTypes() throws IOException {
-        assertTrue(archiveManager.extractZIP(null).isEmpty());
-        List<FileNameAndContent> files = archiveManager.extractZIP(convertFromURIToByteArray(ZIP_FILE_DIFF_TYPES));
+    public void testWriteZipSkipsObjectsDeletedSinceTheyWereListed() throws IOException {
+        byte[] workflowByteArray0 = convertFromURIToByteArray(XML_FILE_0);
+        when(rawObjectResponseCreator.getNameWithFileExtension("workflow_0", "xml", null)).thenReturn("workflow_0.xml");
+        when(rawObjectResponseCreator.getNameWithFileExtension("deleted", "xml", null)).thenReturn("deleted.xml");
+        File archive = temporaryFolder.newFile("archive.zip");
+        try (OutputStream outputStream = new FileOutputStream(archive)) {
+            archiveManager.writeZIP(Arrays.asList(getRevisionArchiveEntry(1L, "deleted", "xml"),
+                                                  getRevisionArchiveEntry(2L, "workflow_0", "xml")),
+                                    revision -> revision.getRevisionId() == 1L ? null : workflowByteArray0,
+                                    outputStream);
+        }
+
+        List<FileNameAndContent> actualFiles = extractZIPFile(archive);
+        assertEquals(1, actualFiles.size());
+        assertEquals("workflow_0.xml", actualFiles.get(0).getFileNameWithExtension());
+    }
+
+    @Test
+    public void testExtractZipFileWithDiffTypes() throws IOException {
+        List<FileNameAndContent> files = extractZIPFile(Paths.get(ZIP_FILE_DIFF_TYPES).toFile());
         assertEquals(2, files.size());
 
         compare(convertFromURIToByteArray(JSON_FILE_1), files.get(0).getContent());
         compare(convertFromURIToByteArray(XML_FILE_0), files.get(1).getContent());
     }
 
+    @Test
+    public void testExtractZipFile() throws IOException {
+        List<FileNameAndContent> files = extractZIPFile(Paths.get(ZIP_FILE).toFile());
+        assertEquals(2, files.size());
+
+        compare(convertFromURIToByteArray(XML_FILE_0), files.get(0).getContent());
+        compare(convertFromURIToByteArray(XML_FILE_1), files.get(1).getContent());
+    }
+
+    @Test
+    public void testExtractZipFileHandsEntriesOverInBatches() throws IOException {
+        List<List<FileNameAndContent>> batches = new ArrayList<>();
+        assertEquals(2,
+                     archiveManager.extractZIPFile(Paths.get(ZIP_FILE).toFile(),
+                                                   1,
+                                                   batch -> batches.add(new ArrayList<>(batch))));
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(0).size());
+        assertEquals(1, batches.get(1).size());
+
+        compare(convertFromURIToByteArray(XML_FILE_0), batches.get(0).get(0).getContent());
+        compare(convertFromURIToByteArray(XML_FILE_1), batches.get(1).get(0).getContent());
+    }
+
+    @Test(expected = ArchiveTooLargeException.class)
+    public void testExtractZipFileWithTooManyEntries() {
+        archiveManager.maxEntries = 1;
+        extractZIPFile(Paths.get(ZIP_FILE).toFile());
+    }
+
+    @Test(expected = ArchiveTooLargeException.class)
+    public void testExtractZipFileWithTooLargeEntry() throws IOException {
+        archiveManager.maxEntrySize = 10;
+        extractZIPFile(Paths.get(ZIP_FILE).toFile());
+    }
+
+    @Test(expected = ArchiveTooLargeException.class)
+    public void testExtractZipFileWithTooLargeContent() throws IOException {
+        archiveManager.maxTotalSize = convertFromURIToByteArray(XML_FILE_0).length;
+        extractZIPFile(Paths.get(ZIP_FILE).toFile());
+    }
+
+    private List<FileNameAndContent> extractZIPFile(File archive) {
+        List<FileNameAndContent> files = new ArrayList<>();
+        assertEquals(archiveManager.extractZIPFile(archive, 10, files::addAll), files.size());
+        return files;
+    }
+
     /**
      * Compares 2 files as byte arrays
      * @param expectedFile first file to compare
@@ -0,0 +1,127 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.ow2.proactive.catalog.dto.BucketMetadata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * @author ActiveEon Team
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class JsonArrayStreamWriterTest {
+
+    @InjectMocks
+    private JsonArrayStreamWriter jsonArrayStreamWriter;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private ByteArrayOutputStream output;
+
+    private HttpServletResponse response;
+
+    @Before
+    public void setUp() throws IOException {
+        output = new ByteArrayOutputStream();
+        response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                output.write(b);
+            }
+        });
+    }
+
+    @Test
+    public void testWriteProducesTheSameArrayAsTheObjectMapper() throws IOException {
+        BucketMetadata first = new BucketMetadata("first", "owner", 1);
+        BucketMetadata second = new BucketMetadata("second", "owner", 2);
+
+        jsonArrayStreamWriter.<BucketMetadata> write(response, consumer -> {
+            consumer.accept(first);
+            consumer.accept(second);
+        });
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertThat(new String(output.toByteArray(),
+                              StandardCharsets.UTF_8)).isEqualTo(objectMapper.writeValueAsString(Arrays.asList(first,
+                                                                                                                 second)));
+    }
+
+    @Test
+    public void testWriteEmptyArray() throws IOException {
+        jsonArrayStreamWriter.write(response, consumer -> {
+        });
+
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("[]");
+    }
+
+    @Test
+    public void testNothingIsWrittenWhenTheProducerFailsBeforeFillingTheBuffer() throws IOException {
+        try {
+            jsonArrayStreamWriter.<BucketMetadata> write(response, consumer -> {
+                consumer.accept(new BucketMetadata("first", "owner", 1));
+                throw new IllegalStateException("failure");
+            });
+        } catch (IllegalStateException e) {
+            assertThat(output.size()).isEqualTo(0);
+            return;
+        }
+        throw new AssertionError("The producer failure was not propagated");
+    }
+}
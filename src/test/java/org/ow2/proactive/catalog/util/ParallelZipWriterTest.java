@@ -0,0 +1,155 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class ParallelZipWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testThatEntriesAreWrittenInTheOrderTheyWereAdded() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            entries.put("workflow_" + i + ".xml",
+                        String.join("", Collections.nCopies(i * 100, "<task/>")).getBytes(StandardCharsets.UTF_8));
+        }
+        entries.put("wf n:$ %ae.myextension", "content".getBytes(StandardCharsets.UTF_8));
+
+        byte[] archive = write(entries, 3);
+
+        Map<String, byte[]> actualEntries = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                actualEntries.put(entry.getName(), ByteStreams.toByteArray(zipInputStream));
+            }
+        }
+        assertThat(actualEntries.keySet()).containsExactlyElementsIn(entries.keySet()).inOrder();
+        entries.forEach((name, content) -> assertThat(actualEntries.get(name)).isEqualTo(content));
+    }
+
+    @Test
+    public void testThatCentralDirectoryListsTheEntries() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("empty.txt", new byte[0]);
+        entries.put("\u00e9t\u00e9.json", "[1, 2, 3]".getBytes(StandardCharsets.UTF_8));
+        Path file = temporaryFolder.newFile("archive.zip").toPath();
+        Files.write(file, write(entries, 1));
+
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(2);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry zipEntry = zipFile.getEntry(entry.getKey());
+                assertThat(zipEntry.getSize()).isEqualTo(entry.getValue().length);
+                try (InputStream in = zipFile.getInputStream(zipEntry)) {
+                    assertThat(ByteStreams.toByteArray(in)).isEqualTo(entry.getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThatAnEmptyArchiveIsValid() throws IOException {
+        Path file = temporaryFolder.newFile("empty.zip").toPath();
+        Files.write(file, write(Collections.emptyMap(), 2));
+
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testThatArchivesWithMoreEntriesThanTheZipLimitAreWrittenInZip64() throws IOException {
+        int entryCount = 70000;
+        Path file = temporaryFolder.newFile("large.zip").toPath();
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file));
+                ParallelZipWriter zipWriter = new ParallelZipWriter(outputStream, executor, 4)) {
+            for (int i = 0; i < entryCount; i++) {
+                zipWriter.addEntry("entry_" + i + ".txt", String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+            }
+            zipWriter.finish();
+        }
+
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(entryCount);
+            ZipEntry lastEntry = zipFile.getEntry("entry_" + (entryCount - 1) + ".txt");
+            try (InputStream in = zipFile.getInputStream(lastEntry)) {
+                assertThat(new String(ByteStreams.toByteArray(in),
+                                      StandardCharsets.UTF_8)).isEqualTo(String.valueOf(entryCount - 1));
+            }
+        }
+    }
+
+    private byte[] write(Map<String, byte[]> entries, int maxPendingEntries) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ParallelZipWriter zipWriter = new ParallelZipWriter(outputStream, executor, maxPendingEntries)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zipWriter.addEntry(entry.getKey(), entry.getValue());
+            }
+            zipWriter.finish();
+        }
+        return outputStream.toByteArray();
+    }
+}
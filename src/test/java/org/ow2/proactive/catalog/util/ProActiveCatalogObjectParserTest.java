@@ -145,9 +145,32 @@ public class ProActiveCatalogObjectParserTest {
 
     }
 
-    @Test(expected = Exception.class)
+    @Test
     public void testParseWorkflowContainingWrongScriptUrl() throws Exception {
-        parseWorkflow("workflow-with_wrong_script_url.xml");
+        PASchedulerProperties.CATALOG_REST_URL.updateProperty("http://localhost:8080/catalog");
+        List<KeyValueLabelMetadataEntity> result = parseWorkflow("workflow_with_wrong_script_url.xml");
+        List<String> dependsOnKeys = findKeysForDependsOnLabel(result, WorkflowParser.ATTRIBUTE_DEPENDS_ON_LABEL);
+
+        // the script URL lacks the resources path segment, only the catalog object variable is a dependency
+        assertThat(dependsOnKeys).containsExactly("basic-examples/Native_Task");
+    }
+
+    @Test
+    public void testParseWorkflowContainingForkEnvironmentAndSelectionScriptUrlsWithVariables() throws Exception {
+        PASchedulerProperties.CATALOG_REST_URL.updateProperty("http://localhost:8080/catalog");
+        List<KeyValueLabelMetadataEntity> result = parseWorkflow("workflow_with_fork_and_selection_script_url.xml");
+
+        assertThat(findKeysForDependsOnLabel(result,
+                                             WorkflowParser.ATTRIBUTE_DEPENDS_ON_LABEL)).containsExactly("scripts/Check_Linux",
+                                                                                                         "scripts/Fork_Environment");
+        assertThat(findRevisionsForDependsOnLabel(result,
+                                                  WorkflowParser.ATTRIBUTE_DEPENDS_ON_LABEL)).containsExactly(WorkflowParser.LATEST_VERSION,
+                                                                                                              "1777683355837");
+    }
+
+    @Test(expected = ParsingObjectException.class)
+    public void testParseWorkflowNotValidAgainstItsSchema() throws Exception {
+        parseWorkflow("workflow-not-valid.xml");
     }
 
     @Test(expected = ParsingObjectException.class)
@@ -26,15 +26,37 @@
 package org.ow2.proactive.catalog.util;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.ow2.proactive.catalog.dto.CatalogRawObject;
+import org.ow2.proactive.catalog.repository.entity.BucketEntity;
+import org.ow2.proactive.catalog.repository.entity.CatalogObjectEntity;
+import org.ow2.proactive.catalog.repository.entity.CatalogObjectRevisionEntity;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import com.google.common.io.ByteStreams;
 
 
 /**
@@ -43,6 +65,13 @@ import org.springframework.http.ResponseEntity;
  */
 public class RawObjectResponseCreatorTest {
 
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    private static final String ETAG = "\"etag\"";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private RawObjectResponseCreator rawObjectResponseCreator = new RawObjectResponseCreator();
 
     @Test
@@ -187,4 +216,150 @@ public class RawObjectResponseCreatorTest {
         assertThat(responseEntity.getHeaders().getContentType()).isNull();
     }
 
+    @Test
+    public void testCreateRawObjectResponseAcceptsRanges() {
+        ResponseEntity responseEntity = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT));
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseEntity.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+    }
+
+    @Test
+    public void testCreateRawObjectResponseWithRange() throws IOException {
+        ResponseEntity responseEntity = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT),
+                                                                                         "bytes=2-5");
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+        assertThat(responseEntity.getHeaders().getContentLength()).isEqualTo(4L);
+        assertThat(readBody(responseEntity)).isEqualTo("2345");
+    }
+
+    @Test
+    public void testCreateRawObjectResponseWithSuffixRange() throws IOException {
+        ResponseEntity responseEntity = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT),
+                                                                                         "bytes=-3");
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 7-9/10");
+        assertThat(readBody(responseEntity)).isEqualTo("789");
+    }
+
+    @Test
+    public void testCreateRawObjectResponseWithUnsatisfiableRange() {
+        ResponseEntity responseEntity = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT),
+                                                                                         "bytes=10-");
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertThat(responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+    }
+
+    @Test
+    public void testCreateRawObjectResponseIgnoresMultipleAndMalformedRanges() throws IOException {
+        ResponseEntity multipleRanges = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT),
+                                                                                         "bytes=0-1,4-5");
+        ResponseEntity malformedRange = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT),
+                                                                                         "lines=0-1");
+
+        assertThat(multipleRanges.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(readBody(multipleRanges)).isEqualTo("0123456789");
+        assertThat(malformedRange.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void testCreateRawObjectResponseIgnoresRangeOfAnotherRevision() {
+        WebRequest webRequest = mock(WebRequest.class);
+        when(webRequest.getHeader(HttpHeaders.RANGE)).thenReturn("bytes=2-5");
+        when(webRequest.getHeader(HttpHeaders.IF_RANGE)).thenReturn("\"other-etag\"");
+
+        ResponseEntity otherRevision = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT),
+                                                                                        webRequest,
+                                                                                        ETAG);
+        when(webRequest.getHeader(HttpHeaders.IF_RANGE)).thenReturn(ETAG);
+        ResponseEntity sameRevision = rawObjectResponseCreator.createRawObjectResponse(newRawObject(CONTENT),
+                                                                                       webRequest,
+                                                                                       ETAG);
+
+        assertThat(otherRevision.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(sameRevision.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+    }
+
+    @Test
+    public void testCreateRawObjectResponseWithRangeOfFile() throws IOException {
+        ResponseEntity responseEntity = rawObjectResponseCreator.createRawObjectResponse(newFileRawObject(),
+                                                                                         "bytes=3-");
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 3-9/10");
+        assertThat(readBody(responseEntity)).isEqualTo("3456789");
+    }
+
+    @Test
+    public void testCreateRawObjectResponseLetsTheContainerSendTheRangeOfFile() throws IOException {
+        CatalogRawObject rawObject = newFileRawObject();
+        HttpServletRequest servletRequest = mock(HttpServletRequest.class);
+        when(servletRequest.getHeader(HttpHeaders.RANGE)).thenReturn("bytes=3-");
+        when(servletRequest.getAttribute(RawObjectResponseCreator.SENDFILE_SUPPORT_ATTRIBUTE)).thenReturn(Boolean.TRUE);
+
+        ResponseEntity responseEntity = rawObjectResponseCreator.createRawObjectResponse(rawObject,
+                                                                                         new ServletWebRequest(servletRequest),
+                                                                                         ETAG);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(responseEntity.getHeaders().getContentLength()).isEqualTo(7L);
+        assertThat(responseEntity.getBody()).isNull();
+        verify(servletRequest).setAttribute(RawObjectResponseCreator.SENDFILE_FILENAME_ATTRIBUTE,
+                                            rawObject.getRawObjectFile().toAbsolutePath().toString());
+        verify(servletRequest).setAttribute(RawObjectResponseCreator.SENDFILE_START_ATTRIBUTE, 3L);
+        verify(servletRequest).setAttribute(RawObjectResponseCreator.SENDFILE_END_ATTRIBUTE, 10L);
+    }
+
+    @Test
+    public void testCreateRawObjectResponseStreamsTheFileWhenTheContainerCannotSendIt() throws IOException {
+        HttpServletRequest servletRequest = mock(HttpServletRequest.class);
+
+        ResponseEntity responseEntity = rawObjectResponseCreator.createRawObjectResponse(newFileRawObject(),
+                                                                                         new ServletWebRequest(servletRequest),
+                                                                                         ETAG);
+
+        assertThat(readBody(responseEntity)).isEqualTo("0123456789");
+        verify(servletRequest, never()).setAttribute(eq(RawObjectResponseCreator.SENDFILE_FILENAME_ATTRIBUTE), any());
+    }
+
+    private CatalogRawObject newFileRawObject() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, CONTENT);
+        CatalogObjectEntity catalogObject = CatalogObjectEntity.builder()
+                                                               .id(new CatalogObjectEntity.CatalogObjectEntityKey(1L,
+                                                                                                                  "name"))
+                                                               .bucket(new BucketEntity("bucket-name", "owner"))
+                                                               .kind("object")
+                                                               .contentType("text/plain")
+                                                               .build();
+        CatalogObjectRevisionEntity revision = CatalogObjectRevisionEntity.builder()
+                                                                          .catalogObject(catalogObject)
+                                                                          .commitTime(1400343L)
+                                                                          .contentSize((long) CONTENT.length)
+                                                                          .build();
+        return new CatalogRawObject(revision, file);
+    }
+
+    private CatalogRawObject newRawObject(byte[] content) {
+        return new CatalogRawObject("bucket-name",
+                                    "name",
+                                    "object",
+                                    "text/plain",
+                                    1400343L,
+                                    "commit message",
+                                    "username",
+                                    Collections.emptyList(),
+                                    content,
+                                    "txt");
+    }
+
+    private String readBody(ResponseEntity responseEntity) throws IOException {
+        InputStreamResource body = (InputStreamResource) responseEntity.getBody();
+        return new String(ByteStreams.toByteArray(body.getInputStream()), StandardCharsets.UTF_8);
+    }
+
 }
@@ -0,0 +1,233 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.ow2.proactive.catalog.service.exception.ParsingObjectException;
+import org.ow2.proactive.catalog.util.parser.ParsedWorkflow;
+import org.ow2.proactive.catalog.util.parser.StaxWorkflowProcessor;
+
+
+/**
+ * Unit tests associated to {@link StaxWorkflowProcessor}.
+ *
+ * @author ActiveEon Team
+ */
+public class StaxWorkflowProcessorTest {
+
+    private static final String NAMESPACE = "urn:proactive:jobdescriptor:3.11";
+
+    private static final String TASK_FLOW = "  <taskFlow>\n" + "    <task name=\"Task1\">\n" +
+                                            "      <scriptExecutable>\n" + "        <script>\n" +
+                                            "          <code language=\"groovy\"><![CDATA[println '\u00e9']]></code>\n" +
+                                            "        </script>\n" + "      </scriptExecutable>\n" + "    </task>\n" +
+                                            "  </taskFlow>\n";
+
+    private final StaxWorkflowProcessor staxWorkflowProcessor = new StaxWorkflowProcessor();
+
+    @Test
+    public void testThatGenericInformationWithNamespacePrefixAreReadAndReplaced() {
+        String workflow = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<pa:job xmlns:pa=\"" + NAMESPACE +
+                          "\" name=\"prefixed\">\n" + "  <pa:genericInformation>\n" +
+                          "    <pa:info name=\"gi1\" value=\"v1\"/>\n" + "  </pa:genericInformation>\n" +
+                          TASK_FLOW.replace("<", "<pa:").replace("<pa:/", "</pa:").replace("<pa:!", "<!") +
+                          "</pa:job>";
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(utf8(workflow));
+
+        assertThat(parsedWorkflow.getName()).isEqualTo("prefixed");
+        assertThat(parsedWorkflow.getGenericInformation()).containsExactly("gi1", "v1");
+
+        String replaced = new String(parsedWorkflow.replaceGenericInformation(Collections.singletonMap("gi2", "v2")),
+                                     StandardCharsets.UTF_8);
+        assertThat(replaced).contains("<pa:genericInformation>\n    <pa:info name=\"gi2\" value=\"v2\"/>\n  </pa:genericInformation>");
+        assertThat(replaced).doesNotContain("gi1");
+        assertThat(staxWorkflowProcessor.parse(utf8(replaced)).getGenericInformation()).containsExactly("gi2", "v2");
+    }
+
+    @Test
+    public void testThatGenericInformationOfAnotherNamespaceAreIgnored() {
+        String workflow = "<job xmlns=\"" + NAMESPACE + "\" xmlns:other=\"urn:other\" name=\"namespaced\">\n" +
+                          "  <other:genericInformation>\n" + "    <other:info name=\"foreign\" value=\"v\"/>\n" +
+                          "  </other:genericInformation>\n" + "  <genericInformation>\n" +
+                          "    <info name=\"gi1\" value=\"v1\"/>\n" + "  </genericInformation>\n" + TASK_FLOW +
+                          "</job>";
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(utf8(workflow));
+
+        assertThat(parsedWorkflow.getGenericInformation()).containsExactly("gi1", "v1");
+        String replaced = new String(parsedWorkflow.replaceGenericInformation(Collections.singletonMap("gi2", "v2")),
+                                     StandardCharsets.UTF_8);
+        assertThat(replaced).contains("<other:info name=\"foreign\" value=\"v\"/>");
+        assertThat(staxWorkflowProcessor.parse(utf8(replaced)).getGenericInformation()).containsExactly("gi2", "v2");
+    }
+
+    @Test
+    public void testThatSelfClosingGenericInformationAreReplaced() {
+        String workflow = "<job xmlns=\"" + NAMESPACE + "\" name=\"selfClosing\">\n" +
+                          "  <genericInformation/>\n" + TASK_FLOW + "</job>";
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(utf8(workflow));
+
+        assertThat(parsedWorkflow.isGenericInformationPresent()).isTrue();
+        assertThat(parsedWorkflow.getGenericInformation()).isEmpty();
+        assertThat(parsedWorkflow.replaceGenericInformation(Collections.emptyMap())).isEqualTo(utf8(workflow));
+
+        Map<String, String> genericInformation = new LinkedHashMap<>();
+        genericInformation.put("gi1", "v1");
+        genericInformation.put("gi2", "a \"quoted\" & <escaped> value");
+        String replaced = new String(parsedWorkflow.replaceGenericInformation(genericInformation),
+                                     StandardCharsets.UTF_8);
+
+        assertThat(replaced).doesNotContain("<genericInformation/>");
+        assertThat(replaced).contains(TASK_FLOW);
+        assertThat(staxWorkflowProcessor.parse(utf8(replaced)).getGenericInformation()).isEqualTo(genericInformation);
+    }
+
+    @Test
+    public void testThatGenericInformationAreInsertedBeforeTheTaskFlow() {
+        String workflow = "<job xmlns=\"" + NAMESPACE + "\" name=\"noGenericInformation\">\n" + TASK_FLOW +
+                          "</job>";
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(utf8(workflow));
+        String replaced = new String(parsedWorkflow.replaceGenericInformation(Collections.singletonMap("gi1", "v1")),
+                                     StandardCharsets.UTF_8);
+
+        assertThat(replaced).contains("  <genericInformation>\n    <info name=\"gi1\" value=\"v1\"/>\n  </genericInformation>\n  <taskFlow>");
+    }
+
+    @Test
+    public void testThatUtf8WorkflowWithByteOrderMarkIsRead() {
+        byte[] workflow = concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF },
+                                 utf8("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<job xmlns=\"" + NAMESPACE +
+                                      "\" name=\"withBom\">\n" + "  <genericInformation>\n" +
+                                      "    <info name=\"gi1\" value=\"v1\"/>\n" + "  </genericInformation>\n" +
+                                      TASK_FLOW + "</job>"));
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(workflow);
+
+        assertThat(parsedWorkflow.getName()).isEqualTo("withBom");
+        assertThat(parsedWorkflow.getGenericInformation()).containsExactly("gi1", "v1");
+        byte[] replaced = parsedWorkflow.replaceGenericInformation(Collections.singletonMap("gi2", "v2"));
+        assertThat(replaced[0]).isEqualTo((byte) 0xEF);
+        assertThat(staxWorkflowProcessor.parse(replaced).getGenericInformation()).containsExactly("gi2", "v2");
+    }
+
+    @Test
+    public void testThatWorkflowInDeclaredEncodingIsReadAndReplacedInTheSameEncoding() {
+        Charset latin1 = StandardCharsets.ISO_8859_1;
+        byte[] workflow = ("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" + "<job xmlns=\"" + NAMESPACE +
+                           "\" name=\"\u00c9l\u00e9ment\" projectName=\"Donn\u00e9es\">\n" + "  <genericInformation>\n" +
+                           "    <info name=\"cl\u00e9\" value=\"\u00e9t\u00e9\"/>\n" + "  </genericInformation>\n" + TASK_FLOW +
+                           "</job>").getBytes(latin1);
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(workflow);
+
+        assertThat(parsedWorkflow.getName()).isEqualTo("\u00c9l\u00e9ment");
+        assertThat(parsedWorkflow.getProjectName()).isEqualTo("Donn\u00e9es");
+        assertThat(parsedWorkflow.getGenericInformation()).containsExactly("cl\u00e9", "\u00e9t\u00e9");
+        byte[] replaced = parsedWorkflow.replaceGenericInformation(Collections.singletonMap("cl\u00e9", "hiver"));
+        assertThat(new String(replaced, latin1)).contains("<info name=\"cl\u00e9\" value=\"hiver\"/>");
+        assertThat(new String(replaced, latin1)).contains("println '\u00e9'");
+    }
+
+    @Test
+    public void testThatUtf16WorkflowIsRead() {
+        byte[] workflow = ("<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n" + "<job xmlns=\"" + NAMESPACE +
+                           "\" name=\"utf16\">\n" + "  <genericInformation>\n" +
+                           "    <info name=\"gi1\" value=\"v1\"/>\n" + "  </genericInformation>\n" + TASK_FLOW +
+                           "</job>").getBytes(StandardCharsets.UTF_16);
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(workflow);
+
+        assertThat(parsedWorkflow.getName()).isEqualTo("utf16");
+        byte[] replaced = parsedWorkflow.replaceGenericInformation(Collections.singletonMap("gi2", "v2"));
+        ParsedWorkflow replacedWorkflow = staxWorkflowProcessor.parse(replaced);
+        assertThat(replacedWorkflow.getName()).isEqualTo("utf16");
+        assertThat(replacedWorkflow.getGenericInformation()).containsExactly("gi2", "v2");
+    }
+
+    @Test
+    public void testThatScriptUrlsOfAllTaskScriptsAreRead() {
+        String workflow = "<job xmlns=\"" + NAMESPACE + "\" name=\"scripts\">\n" + "  <taskFlow>\n" +
+                          "    <task name=\"Task1\">\n" + "      <selection>\n" +
+                          "        <script type=\"static\"><file url=\"${PA_CATALOG_REST_URL}/buckets/b/resources/selection/raw\" language=\"groovy\"/></script>\n" +
+                          "      </selection>\n" + "      <forkEnvironment>\n" + "        <envScript>\n" +
+                          "          <script><file url=\"${PA_CATALOG_REST_URL}/buckets/b/resources/fork/raw\" language=\"groovy\"/></script>\n" +
+                          "        </envScript>\n" + "      </forkEnvironment>\n" + "      <pre>\n" +
+                          "        <script><file url=\"pre-url\" language=\"groovy\"/></script>\n" +
+                          "      </pre>\n" + "      <scriptExecutable>\n" +
+                          "        <script><file url=\"main-url\" language=\"groovy\"/></script>\n" +
+                          "      </scriptExecutable>\n" + "      <controlFlow>\n" +
+                          "        <if target=\"Task2\" else=\"Task3\"><script><file url=\"flow-url\" language=\"groovy\"/></script></if>\n" +
+                          "      </controlFlow>\n" + "      <post>\n" +
+                          "        <script><file url=\"post-url\" language=\"groovy\"/></script>\n" +
+                          "      </post>\n" + "      <cleaning>\n" +
+                          "        <script><file url=\"cleaning-url\" language=\"groovy\"/></script>\n" +
+                          "      </cleaning>\n" + "    </task>\n" + "  </taskFlow>\n" + "</job>";
+
+        ParsedWorkflow parsedWorkflow = staxWorkflowProcessor.parse(utf8(workflow));
+
+        assertThat(parsedWorkflow.getScriptUrls()).containsExactly("${PA_CATALOG_REST_URL}/buckets/b/resources/selection/raw",
+                                                                   "${PA_CATALOG_REST_URL}/buckets/b/resources/fork/raw",
+                                                                   "pre-url",
+                                                                   "main-url",
+                                                                   "flow-url",
+                                                                   "post-url",
+                                                                   "cleaning-url")
+                                                  .inOrder();
+    }
+
+    @Test(expected = ParsingObjectException.class)
+    public void testThatWorkflowWhoseRootIsNotAJobIsRejected() {
+        staxWorkflowProcessor.parse(utf8("<task xmlns=\"" + NAMESPACE + "\" name=\"Task1\"/>"));
+    }
+
+    @Test(expected = ParsingObjectException.class)
+    public void testThatMalformedWorkflowIsRejected() {
+        staxWorkflowProcessor.parse(utf8("<job xmlns=\"" + NAMESPACE + "\" name=\"malformed\"><taskFlow></job>"));
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.ow2.proactive.catalog.service.exception.CatalogObjectTooLargeException;
+import org.springframework.web.multipart.MultipartFile;
+
+
+/**
+ * @author ActiveEon Team
+ */
+public class UploadedContentReaderTest {
+
+    @Test
+    public void testReadWithinTheMaximumSize() throws IOException {
+        MultipartFile file = newMultipartFile("content".getBytes());
+
+        assertThat(new UploadedContentReader(7).read(file)).isEqualTo("content".getBytes());
+    }
+
+    @Test
+    public void testReadWithoutLimit() throws IOException {
+        MultipartFile file = newMultipartFile(new byte[1024]);
+
+        assertThat(new UploadedContentReader(0).read(file)).hasLength(1024);
+    }
+
+    @Test
+    public void testOversizedContentIsNotRead() throws IOException {
+        MultipartFile file = newMultipartFile("content".getBytes());
+
+        try {
+            new UploadedContentReader(6).read(file);
+            throw new AssertionError("The content should have been rejected");
+        } catch (CatalogObjectTooLargeException e) {
+            verify(file, never()).getBytes();
+        }
+    }
+
+    private MultipartFile newMultipartFile(byte[] content) throws IOException {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn("object.txt");
+        when(file.getSize()).thenReturn((long) content.length);
+        when(file.getBytes()).thenReturn(content);
+        return file;
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.catalog.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.proactive.catalog.service.exception.ParsingObjectException;
+import org.ow2.proactive.catalog.util.parser.ParsedWorkflow;
+import org.ow2.proactive.catalog.util.parser.StaxWorkflowProcessor;
+import org.ow2.proactive.catalog.util.parser.WorkflowSchemaValidator;
+
+
+/**
+ * Unit tests associated to {@link WorkflowSchemaValidator}, with a simplified job schema.
+ *
+ * @author ActiveEon Team
+ */
+public class WorkflowSchemaValidatorTest {
+
+    private static final String NAMESPACE = "urn:proactive:jobdescriptor:test";
+
+    private static final String SCHEMA = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"" +
+                                         " targetNamespace=\"" + NAMESPACE + "\" xmlns=\"" + NAMESPACE +
+                                         "\" elementFormDefault=\"qualified\">\n" + "  <xs:element name=\"job\">\n" +
+                                         "    <xs:complexType>\n" + "      <xs:sequence>\n" +
+                                         "        <xs:element name=\"description\" type=\"xs:string\" minOccurs=\"0\"/>\n" +
+                                         "        <xs:element name=\"genericInformation\" minOccurs=\"0\">\n" +
+                                         "          <xs:complexType><xs:sequence>\n" +
+                                         "            <xs:element name=\"info\" maxOccurs=\"unbounded\">\n" +
+                                         "              <xs:complexType>\n" +
+                                         "                <xs:attribute name=\"name\" type=\"xs:string\" use=\"required\"/>\n" +
+                                         "                <xs:attribute name=\"value\" type=\"xs:string\" use=\"required\"/>\n" +
+                                         "              </xs:complexType>\n" + "            </xs:element>\n" +
+                                         "          </xs:sequence></xs:complexType>\n" + "        </xs:element>\n" +
+                                         "        <xs:element name=\"taskFlow\" type=\"xs:string\"/>\n" +
+                                         "      </xs:sequence>\n" +
+                                         "      <xs:attribute name=\"name\" type=\"xs:string\" use=\"required\"/>\n" +
+                                         "      <xs:attribute name=\"priority\" type=\"xs:string\"/>\n" +
+                                         "    </xs:complexType>\n" + "  </xs:element>\n" + "</xs:schema>";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StaxWorkflowProcessor staxWorkflowProcessor;
+
+    @Before
+    public void setUp() throws IOException {
+        File schema = temporaryFolder.newFile("schedulerjob.xsd");
+        Files.write(schema.toPath(), SCHEMA.getBytes(StandardCharsets.UTF_8));
+        staxWorkflowProcessor = new StaxWorkflowProcessor(new WorkflowSchemaValidator(namespace -> {
+            try {
+                return NAMESPACE.equals(namespace) ? schema.toURI().toURL() : null;
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+    }
+
+    @Test
+    public void testThatValidWorkflowIsReadWhileValidated() {
+        ParsedWorkflow parsedWorkflow = parse("<pa:job xmlns:pa=\"" + NAMESPACE + "\" name=\"valid\">\n" +
+                                              "  <pa:description><![CDATA[a <valid> workflow]]></pa:description>\n" +
+                                              "  <pa:genericInformation><pa:info name=\"gi1\" value=\"v1\"/></pa:genericInformation>\n" +
+                                              "  <pa:taskFlow/>\n" + "</pa:job>");
+
+        assertThat(parsedWorkflow.getName()).isEqualTo("valid");
+        assertThat(parsedWorkflow.getDescription()).isEqualTo("a <valid> workflow");
+        assertThat(parsedWorkflow.getGenericInformation()).containsExactly("gi1", "v1");
+    }
+
+    @Test
+    public void testThatWellFormedWorkflowViolatingTheSchemaIsRejected() {
+        assertRejected("<job xmlns=\"" + NAMESPACE + "\" name=\"unexpectedElement\">\n" + "  <taskFlow/>\n" +
+                       "  <unexpected/>\n" + "</job>", "unexpected");
+    }
+
+    @Test
+    public void testThatElementsOutOfOrderAreRejected() {
+        assertRejected("<job xmlns=\"" + NAMESPACE + "\" name=\"outOfOrder\">\n" + "  <taskFlow/>\n" +
+                       "  <genericInformation><info name=\"gi1\" value=\"v1\"/></genericInformation>\n" + "</job>",
+                       "genericInformation");
+    }
+
+    @Test
+    public void testThatMissingRequiredAttributeIsRejected() {
+        assertRejected("<job xmlns=\"" + NAMESPACE + "\" name=\"missingAttribute\">\n" +
+                       "  <genericInformation><info name=\"gi1\"/></genericInformation>\n" + "  <taskFlow/>\n" +
+                       "</job>", "value");
+    }
+
+    @Test
+    public void testThatWorkflowOfUnknownNamespaceIsRejected() {
+        assertRejected("<job xmlns=\"urn:proactive:jobdescriptor:0.0\" name=\"unknown\"><taskFlow/></job>",
+                       "urn:proactive:jobdescriptor:0.0");
+    }
+
+    @Test
+    public void testThatWorkflowWithoutNamespaceIsRejected() {
+        assertRejected("<job name=\"noNamespace\"><taskFlow/></job>", "Unknown workflow namespace");
+    }
+
+    private ParsedWorkflow parse(String workflow) {
+        return staxWorkflowProcessor.parse(workflow.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void assertRejected(String workflow, String expectedMessagePart) {
+        try {
+            parse(workflow);
+            fail("The workflow should have been rejected");
+        } catch (ParsingObjectException e) {
+            assertThat(e.getMessage()).contains(expectedMessagePart);
+        }
+    }
+
+}